@@ -0,0 +1,25 @@
+package io.mitallast.benchmarks;
+
+import org.openjdk.jmh.Main;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Entry point of the benchmarks jar, same as the JMH one except that
+ * results are written as JSON (`jmh-result.json`) unless another
+ * result format is requested, so runs can be compared commit to commit.
+ */
+public final class BenchmarkMain {
+    private BenchmarkMain() {
+    }
+
+    public static void main(String... args) throws Exception {
+        var list = new ArrayList<>(Arrays.asList(args));
+        if (!list.contains("-rf")) {
+            list.add("-rf");
+            list.add("json");
+        }
+        Main.main(list.toArray(new String[0]));
+    }
+}
@@ -0,0 +1,81 @@
+package io.mitallast.benchmarks;
+
+import io.mitallast.data.Chain;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChainBenchmark {
+    @Param({"10000"})
+    public int size;
+
+    private Chain<Integer> chain;
+
+    @Setup
+    public void setup() {
+        chain = Chain.empty();
+        for (int i = 0; i < size; i++) {
+            chain = chain.append(i);
+        }
+    }
+
+    @Benchmark
+    public Chain<Integer> append() {
+        Chain<Integer> c = Chain.empty();
+        for (int i = 0; i < size; i++) {
+            c = c.append(i);
+        }
+        return c;
+    }
+
+    @Benchmark
+    public Chain<Integer> prepend() {
+        Chain<Integer> c = Chain.empty();
+        for (int i = 0; i < size; i++) {
+            c = c.prepend(i);
+        }
+        return c;
+    }
+
+    @Benchmark
+    public Chain<Integer> concat() {
+        Chain<Integer> c = Chain.empty();
+        for (int i = 0; i < size; i++) {
+            c = c.append(Chain.one(i));
+        }
+        return c;
+    }
+
+    @Benchmark
+    public long iterator() {
+        long sum = 0;
+        var it = chain.iterator();
+        while (it.hasNext()) {
+            sum += it.next();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long foldLeft() {
+        return chain.foldLeft(0L, (acc, i) -> acc + i);
+    }
+
+    @Benchmark
+    public long uncons() {
+        long sum = 0;
+        var c = chain;
+        var next = c.uncons();
+        while (next.isDefined()) {
+            sum += next.get().t1();
+            next = next.get().t2().uncons();
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,124 @@
+package io.mitallast.benchmarks;
+
+import io.mitallast.io.IO;
+import io.mitallast.stream.Chunk;
+import io.mitallast.stream.Stream;
+import io.mitallast.stream.compress.Compression;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compresses and decompresses `size` bytes of text-like data, given in
+ * chunks of `chunkSize` bytes, compared with the gzip streams of the JDK.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompressionBenchmark {
+    @Param({"16777216"})
+    public int size;
+
+    @Param({"65536"})
+    public int chunkSize;
+
+    private ArrayList<Chunk<Byte>> chunks;
+    private ArrayList<Chunk<Byte>> gzipped;
+    private byte[] data;
+    private byte[] gzippedData;
+    private Stream.Compiler<IO, IO> compiler;
+
+    @Setup
+    public void setup() throws IOException {
+        var random = new Random(0);
+        var words = new String[]{"stream", "chunk", "scope", "fiber", "effect", "resource", "pull", "bracket"};
+        var text = new StringBuilder(size);
+        while (text.length() < size) {
+            text.append(words[random.nextInt(words.length)]).append(random.nextInt(1000)).append(' ');
+        }
+        data = text.substring(0, size).getBytes();
+        var out = new ByteArrayOutputStream();
+        try (var gzip = new GZIPOutputStream(out, chunkSize)) {
+            gzip.write(data);
+        }
+        gzippedData = out.toByteArray();
+        chunks = split(data);
+        gzipped = split(gzippedData);
+        compiler = Stream.Compiler.io();
+    }
+
+    private ArrayList<Chunk<Byte>> split(byte[] bytes) {
+        var result = new ArrayList<Chunk<Byte>>();
+        for (int i = 0; i < bytes.length; i += chunkSize) {
+            result.add(Chunk.bytes(bytes, i, Math.min(chunkSize, bytes.length - i)));
+        }
+        return result;
+    }
+
+    @Benchmark
+    public long gzip() {
+        return count(input(chunks).through(Compression.gzip(-1, chunkSize, IO.effect())));
+    }
+
+    @Benchmark
+    public long gzipOutputStream() throws IOException {
+        var out = new CountingOutputStream();
+        try (var gzip = new GZIPOutputStream(out, chunkSize)) {
+            for (int i = 0; i < data.length; i += chunkSize) {
+                gzip.write(data, i, Math.min(chunkSize, data.length - i));
+            }
+        }
+        return out.count;
+    }
+
+    @Benchmark
+    public long gunzip() {
+        return count(input(gzipped).through(Compression.gunzip(chunkSize, IO.effect())));
+    }
+
+    @Benchmark
+    public long gzipInputStream() throws IOException {
+        var buffer = new byte[chunkSize];
+        var count = 0L;
+        try (var gzip = new GZIPInputStream(new ByteArrayInputStream(gzippedData), chunkSize)) {
+            int n;
+            while ((n = gzip.read(buffer)) >= 0) {
+                count += n;
+            }
+        }
+        return count;
+    }
+
+    private Stream<IO, Byte> input(ArrayList<Chunk<Byte>> chunks) {
+        return Stream.<IO, Chunk<Byte>>emits(chunks).flatMap(Stream::chunk);
+    }
+
+    private long count(Stream<IO, Byte> bytes) {
+        return ((IO<Long>) bytes.chunks().compile(compiler).fold(0L, (n, c) -> n + c.size())).unsafeRunSync();
+    }
+
+    private static final class CountingOutputStream extends OutputStream {
+        private long count = 0;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
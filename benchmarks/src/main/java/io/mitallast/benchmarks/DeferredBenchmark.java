@@ -0,0 +1,67 @@
+package io.mitallast.benchmarks;
+
+import io.mitallast.concurrent.Deferred;
+import io.mitallast.concurrent.ExecutionContext;
+import io.mitallast.io.ConcurrentEffect;
+import io.mitallast.io.ContextShift;
+import io.mitallast.io.IO;
+import io.mitallast.kernel.Unit;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Many readers waiting on a single [[Deferred]], which is the
+ * worst case for the registration of waiters.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DeferredBenchmark {
+    @Param({"10000"})
+    public int size;
+
+    private ContextShift<IO> cs;
+    private ConcurrentEffect<IO> F;
+
+    @Setup
+    public void setup() {
+        cs = IO.contextShift(ExecutionContext.global);
+        F = IO.concurrentEffect(cs);
+    }
+
+    /**
+     * Registers `size` concurrent `get`, then completes.
+     */
+    @Benchmark
+    public int getComplete() {
+        var d = Deferred.<IO, Integer>unsafe(F);
+        var get = (IO<Integer>) d.get();
+        var fibers = IO.<Unit>unit();
+        for (int i = 0; i < size; i++) {
+            fibers = fibers.flatMap(u -> get.start(cs).map(f -> Unit.unit()));
+        }
+        return fibers.flatMap(u -> (IO<Unit>) d.complete(1))
+            .flatMap(u -> get)
+            .unsafeRunSync();
+    }
+
+    /**
+     * Registers and cancels `size` `get`, then completes.
+     */
+    @Benchmark
+    public int getCancel() {
+        var d = Deferred.<IO, Integer>unsafe(F);
+        var get = (IO<Integer>) d.get();
+        var fibers = IO.<Unit>unit();
+        for (int i = 0; i < size; i++) {
+            fibers = fibers.flatMap(u -> get.start(cs).flatMap(f -> (IO<Unit>) f.cancel()));
+        }
+        return fibers.flatMap(u -> (IO<Unit>) d.complete(1))
+            .flatMap(u -> get)
+            .unsafeRunSync();
+    }
+}
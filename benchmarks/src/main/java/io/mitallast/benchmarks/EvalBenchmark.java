@@ -0,0 +1,45 @@
+package io.mitallast.benchmarks;
+
+import io.mitallast.kernel.Eval;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EvalBenchmark {
+    @Param({"10000"})
+    public int size;
+
+    @Benchmark
+    public int deepFlatMap() {
+        return loop(0).value();
+    }
+
+    private Eval<Integer> loop(int i) {
+        if (i < size) return Eval.now(i + 1).flatMap(this::loop);
+        else return Eval.now(i);
+    }
+
+    @Benchmark
+    public int leftBind() {
+        var eval = Eval.now(0);
+        for (int i = 0; i < size; i++) {
+            eval = eval.flatMap(x -> Eval.now(x + 1));
+        }
+        return eval.value();
+    }
+
+    @Benchmark
+    public int map() {
+        var eval = Eval.always(() -> 0);
+        for (int i = 0; i < size; i++) {
+            eval = eval.map(x -> x + 1);
+        }
+        return eval.value();
+    }
+}
@@ -0,0 +1,79 @@
+package io.mitallast.benchmarks;
+
+import io.mitallast.concurrent.ExecutionContext;
+import io.mitallast.io.ContextShift;
+import io.mitallast.io.IO;
+import io.mitallast.stream.Chunk;
+import io.mitallast.stream.Stream;
+import io.mitallast.stream.io.file.FileStreams;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads a file of `size` bytes and sums its bytes, chunk by chunk.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FileBenchmark {
+    @Param({"67108864"})
+    public int size;
+
+    @Param({"65536", "4194304"})
+    public int chunkSize;
+
+    private Path path;
+    private ExecutorService blockingPool;
+    private ExecutionContext blocker;
+    private ContextShift<IO> cs;
+    private Stream.Compiler<IO, IO> compiler;
+
+    @Setup
+    public void setup() throws IOException {
+        var bytes = new byte[size];
+        new Random(0).nextBytes(bytes);
+        path = Files.createTempFile("file-benchmark", ".bin");
+        Files.write(path, bytes);
+        blockingPool = Executors.newCachedThreadPool();
+        blocker = ExecutionContext.fromExecutor(blockingPool);
+        cs = IO.contextShift(ExecutionContext.global);
+        compiler = Stream.Compiler.io();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        blockingPool.shutdown();
+        Files.delete(path);
+    }
+
+    @Benchmark
+    public long readAll() {
+        return sum(FileStreams.readAll(path, blocker, chunkSize, IO.effect(), cs));
+    }
+
+    @Benchmark
+    public long mmap() {
+        return sum(Stream.mmap(path, blocker, chunkSize, IO.effect(), cs));
+    }
+
+    private long sum(Stream<IO, Byte> bytes) {
+        return ((IO<Long>) bytes.chunks().map(c -> {
+            var buffer = Chunk.asByteBuffer(c);
+            var s = 0L;
+            while (buffer.hasRemaining()) {
+                s += buffer.get();
+            }
+            return s;
+        }).compile(compiler).fold(0L, Long::sum)).unsafeRunSync();
+    }
+}
@@ -0,0 +1,46 @@
+package io.mitallast.benchmarks;
+
+import io.mitallast.arrow.FunctionK;
+import io.mitallast.free.Free;
+import io.mitallast.higher.Higher;
+import io.mitallast.kernel.Id;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FreeBenchmark {
+    @Param({"10000"})
+    public int size;
+
+    static final class Inc implements Higher<Inc, Integer> {
+        final int value;
+
+        Inc(int value) {
+            this.value = value;
+        }
+    }
+
+    private final FunctionK<Inc, Id> interpreter = new FunctionK<>() {
+        @Override
+        @SuppressWarnings("unchecked")
+        public <A> Id<A> apply(Higher<Inc, A> fa) {
+            return Id.apply((A) (Integer) (((Inc) fa).value + 1));
+        }
+    };
+
+    private Free<Inc, Integer> program(int i) {
+        if (i < size) return Free.<Inc, Integer>liftF(new Inc(i)).flatMap(this::program);
+        else return Free.pure(i);
+    }
+
+    @Benchmark
+    public int foldMap() {
+        return ((Id<Integer>) program(0).foldMap(interpreter, Id.instances())).value();
+    }
+}
@@ -0,0 +1,173 @@
+package io.mitallast.benchmarks;
+
+import io.mitallast.concurrent.ExecutionContext;
+import io.mitallast.io.ContextShift;
+import io.mitallast.io.IO;
+import io.mitallast.kernel.Unit;
+import io.mitallast.vector.Vector;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IOBenchmark {
+    @Param({"10000"})
+    public int size;
+
+    private ContextShift<IO> cs;
+    private Vector<Integer> elements;
+
+    @Setup
+    public void setup() {
+        cs = IO.contextShift(ExecutionContext.global);
+        elements = Vector.empty();
+        for (int i = 0; i < size; i++) {
+            elements = elements.append(i);
+        }
+    }
+
+    @Benchmark
+    public int pure() {
+        return loopPure(0).unsafeRunSync();
+    }
+
+    private IO<Integer> loopPure(int i) {
+        if (i < size) return IO.pure(i + 1).flatMap(this::loopPure);
+        else return IO.pure(i);
+    }
+
+    @Benchmark
+    public int delay() {
+        return loopDelay(0).unsafeRunSync();
+    }
+
+    private IO<Integer> loopDelay(int i) {
+        if (i < size) return IO.delay(() -> i + 1).flatMap(this::loopDelay);
+        else return IO.pure(i);
+    }
+
+    @Benchmark
+    public int map() {
+        var io = IO.pure(0);
+        for (int i = 0; i < size; i++) {
+            io = io.map(x -> x + 1);
+        }
+        return io.unsafeRunSync();
+    }
+
+    @Benchmark
+    public int deepLeftBind() {
+        var io = IO.pure(0);
+        for (int i = 0; i < size; i++) {
+            io = io.flatMap(x -> IO.pure(x + 1));
+        }
+        return io.unsafeRunSync();
+    }
+
+    @Benchmark
+    public int attempt() {
+        return loopAttempt(0).unsafeRunSync();
+    }
+
+    private IO<Integer> loopAttempt(int i) {
+        if (i < size) return IO.pure(i + 1).attempt().flatMap(e -> e.fold(IO::raiseError, this::loopAttempt));
+        else return IO.pure(i);
+    }
+
+    @Benchmark
+    public int handleErrorWith() {
+        return loopHandleErrorWith(0).unsafeRunSync();
+    }
+
+    private IO<Integer> loopHandleErrorWith(int i) {
+        if (i < size) {
+            return IO.<Integer>raiseError(new RuntimeException())
+                .handleErrorWith(e -> IO.pure(i + 1))
+                .flatMap(this::loopHandleErrorWith);
+        } else return IO.pure(i);
+    }
+
+    @Benchmark
+    public int shift() {
+        return loopShift(0).unsafeRunSync();
+    }
+
+    private IO<Integer> loopShift(int i) {
+        if (i < size) return IO.shift(cs).flatMap(u -> loopShift(i + 1));
+        else return IO.pure(i);
+    }
+
+    @Benchmark
+    public int race() {
+        return loopRace(0).unsafeRunSync();
+    }
+
+    private IO<Integer> loopRace(int i) {
+        if (i < size) {
+            return IO.race(IO.pure(i + 1), IO.<Integer>async(cb -> {
+            }), cs)
+                .flatMap(e -> loopRace(e.left().get()));
+        } else return IO.pure(i);
+    }
+
+    @Benchmark
+    public int startJoin() {
+        return loopStartJoin(0).unsafeRunSync();
+    }
+
+    private IO<Integer> loopStartJoin(int i) {
+        if (i < size) {
+            return IO.pure(i + 1).start(cs)
+                .flatMap(fiber -> (IO<Integer>) fiber.join())
+                .flatMap(this::loopStartJoin);
+        } else return IO.pure(i);
+    }
+
+    @Benchmark
+    public int bracket() {
+        return loopBracket(0).unsafeRunSync();
+    }
+
+    /**
+     * Same as [[bracket]], but on a cancelable connection,
+     * where every bracket pushes and pops its release token.
+     */
+    @Benchmark
+    public int cancelableBracket() {
+        return loopBracket(0).start(cs).flatMap(fiber -> (IO<Integer>) fiber.join()).unsafeRunSync();
+    }
+
+    private IO<Integer> loopBracket(int i) {
+        if (i < size) {
+            return IO.pure(i)
+                .bracket(a -> IO.pure(a + 1), a -> IO.unit())
+                .flatMap(this::loopBracket);
+        } else return IO.pure(i);
+    }
+
+    @Benchmark
+    public Unit cede() {
+        var io = IO.shift(cs);
+        for (int i = 0; i < size; i++) {
+            io = io.flatMap(u -> IO.cede());
+        }
+        return io.unsafeRunSync();
+    }
+
+    @Benchmark
+    public int parTraverse() {
+        var io = IO.parTraverse(elements, (Integer i) -> IO.delay(() -> i + 1), Vector.instances(), cs);
+        return ((Vector<Integer>) io.unsafeRunSync()).size();
+    }
+
+    @Benchmark
+    public int parTraverseN() {
+        var io = IO.parTraverseN(elements, 8, (Integer i) -> IO.delay(() -> i + 1), Vector.instances(), cs);
+        return ((Vector<Integer>) io.unsafeRunSync()).size();
+    }
+}
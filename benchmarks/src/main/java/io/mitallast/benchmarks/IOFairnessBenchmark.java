@@ -0,0 +1,64 @@
+package io.mitallast.benchmarks;
+
+import io.mitallast.concurrent.ExecutionContext;
+import io.mitallast.io.ContextShift;
+import io.mitallast.io.IO;
+import io.mitallast.kernel.Unit;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the latency of a shifted task while every worker of the
+ * global pool is busy running long synchronous `flatMap` loops.
+ * Look at the p0.99 percentile of both variants to see the effect
+ * of auto-yielding.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class IOFairnessBenchmark {
+    @Param({"100000"})
+    public int hogSteps;
+
+    private ContextShift<IO> cs;
+    private volatile boolean running;
+
+    @Setup
+    public void setup() {
+        cs = IO.contextShift(ExecutionContext.global);
+        running = true;
+        var hogs = Runtime.getRuntime().availableProcessors();
+        for (int i = 0; i < hogs; i++) {
+            hog().unsafeRunAsyncAndForget();
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        running = false;
+    }
+
+    private IO<Unit> hog() {
+        return IO.shift(cs).flatMap(u -> spin(hogSteps)).flatMap(u -> running ? hog() : IO.unit());
+    }
+
+    private IO<Unit> spin(int n) {
+        if (n == 0) return IO.unit();
+        else return IO.unit().flatMap(u -> spin(n - 1));
+    }
+
+    @Benchmark
+    @Fork(1)
+    public Unit autoYield() {
+        return IO.shift(cs).unsafeRunSync();
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = "-Dcats.effect.autoYieldThreshold=0")
+    public Unit noAutoYield() {
+        return IO.shift(cs).unsafeRunSync();
+    }
+}
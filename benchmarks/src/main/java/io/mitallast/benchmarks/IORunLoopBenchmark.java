@@ -0,0 +1,48 @@
+package io.mitallast.benchmarks;
+
+import io.mitallast.io.IO;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Exercises the run-loop dispatch on long chains of a single node type.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IORunLoopBenchmark {
+    @Param({"10000"})
+    public int size;
+
+    @Benchmark
+    public int deepFlatMap() {
+        return loop(0).unsafeRunSync();
+    }
+
+    private IO<Integer> loop(int i) {
+        if (i < size) return IO.suspend(() -> IO.pure(i + 1)).flatMap(this::loop);
+        else return IO.pure(i);
+    }
+
+    @Benchmark
+    public int mapFusion() {
+        var io = IO.delay(() -> 0);
+        for (int i = 0; i < size; i++) {
+            io = io.map(x -> x + 1);
+        }
+        return io.unsafeRunSync();
+    }
+
+    @Benchmark
+    public int attemptChain() {
+        var io = IO.pure(0);
+        for (int i = 0; i < size; i++) {
+            io = io.attempt().map(e -> e.right().get() + 1);
+        }
+        return io.unsafeRunSync();
+    }
+}
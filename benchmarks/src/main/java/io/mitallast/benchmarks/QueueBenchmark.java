@@ -0,0 +1,70 @@
+package io.mitallast.benchmarks;
+
+import io.mitallast.concurrent.ExecutionContext;
+import io.mitallast.concurrent.Queue;
+import io.mitallast.io.ConcurrentEffect;
+import io.mitallast.io.ContextShift;
+import io.mitallast.io.IO;
+import io.mitallast.kernel.Unit;
+import io.mitallast.stream.Chunk;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One producer and one consumer fiber passing `size` elements.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QueueBenchmark {
+    @Param({"10000"})
+    public int size;
+
+    @Param({"16", "1024"})
+    public int capacity;
+
+    private ContextShift<IO> cs;
+    private ConcurrentEffect<IO> F;
+
+    @Setup
+    public void setup() {
+        cs = IO.contextShift(ExecutionContext.global);
+        F = IO.concurrentEffect(cs);
+    }
+
+    @Benchmark
+    public int bounded() {
+        return run(Queue.unsafeBounded(capacity, F), 1);
+    }
+
+    @Benchmark
+    public int unbounded() {
+        return run(Queue.unsafeUnbounded(F), 1);
+    }
+
+    @Benchmark
+    public int boundedBatch() {
+        return run(Queue.unsafeBounded(capacity, F), capacity);
+    }
+
+    private int run(Queue<IO, Integer> q, int batch) {
+        var producer = offerLoop(q, 0);
+        var consumer = takeLoop(q, 0, batch);
+        return IO.parMap2(producer, consumer, (u, n) -> n, cs).unsafeRunSync();
+    }
+
+    private IO<Unit> offerLoop(Queue<IO, Integer> q, int i) {
+        if (i < size) return ((IO<Unit>) q.offer(i)).flatMap(u -> offerLoop(q, i + 1));
+        else return IO.unit();
+    }
+
+    private IO<Integer> takeLoop(Queue<IO, Integer> q, int n, int batch) {
+        if (n >= size) return IO.pure(n);
+        else if (batch == 1) return ((IO<Integer>) q.take()).flatMap(a -> takeLoop(q, n + 1, batch));
+        else return ((IO<Chunk<Integer>>) q.takeBatch(batch)).flatMap(as -> takeLoop(q, n + as.size(), batch));
+    }
+}
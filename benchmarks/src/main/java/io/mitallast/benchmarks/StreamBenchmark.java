@@ -0,0 +1,77 @@
+package io.mitallast.benchmarks;
+
+import io.mitallast.io.IO;
+import io.mitallast.kernel.Unit;
+import io.mitallast.stream.Stream;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StreamBenchmark {
+    @Param({"100000"})
+    public int size;
+
+    @Param({"sync", "io"})
+    public String interpreter;
+
+    private Stream.Compiler<IO, IO> compiler;
+
+    @Setup
+    public void setup() {
+        if (interpreter.equals("io")) {
+            compiler = Stream.Compiler.io();
+        } else {
+            compiler = Stream.Compiler.sync(IO.effect());
+        }
+    }
+
+    private Unit drain(Stream<IO, ?> stream) {
+        return ((IO<Unit>) stream.compile(compiler).drain()).unsafeRunSync();
+    }
+
+    @Benchmark
+    public Unit rangeDrain() {
+        return drain(Stream.<IO>range(0, size));
+    }
+
+    @Benchmark
+    public Unit rangeDrainSingletons() {
+        return drain(Stream.<IO>range(0, size, 1, 1));
+    }
+
+    @Benchmark
+    public Unit map() {
+        return drain(Stream.<IO>range(0, size).map(i -> i + 1));
+    }
+
+    @Benchmark
+    public Unit flatMap() {
+        return drain(Stream.<IO>range(0, size).flatMap(i -> Stream.emit(i + 1)));
+    }
+
+    @Benchmark
+    public Unit evalMap() {
+        return drain(Stream.<IO>range(0, size).evalMap(i -> IO.pure(i + 1)));
+    }
+
+    @Benchmark
+    public Unit handleErrorWith() {
+        return drain(Stream.<IO>range(0, size).flatMap(i -> Stream.<IO, Integer>emit(i).handleErrorWith(e -> Stream.empty())));
+    }
+
+    @Benchmark
+    public Unit chunks() {
+        return drain(Stream.<IO>range(0, size).chunks());
+    }
+
+    @Benchmark
+    public Unit constantTake() {
+        return drain(Stream.<IO, Integer>constant(1).take(size));
+    }
+}
@@ -0,0 +1,101 @@
+package io.mitallast.benchmarks;
+
+import io.mitallast.concurrent.ExecutionContext;
+import io.mitallast.io.ContextShift;
+import io.mitallast.io.IO;
+import io.mitallast.stream.Stream;
+import io.mitallast.stream.io.file.FileStreams;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads a log file of about `size` bytes line by line and sums the lengths
+ * of the lines, compared with a [[java.io.BufferedReader]].
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 3)
+@Fork(1)
+public class TextBenchmark {
+    @Param({"1073741824"})
+    public long size;
+
+    @Param({"65536"})
+    public int chunkSize;
+
+    private Path path;
+    private ExecutorService blockingPool;
+    private ExecutionContext blocker;
+    private ContextShift<IO> cs;
+    private Stream.Compiler<IO, IO> compiler;
+
+    @Setup
+    public void setup() throws IOException {
+        path = Files.createTempFile("text-benchmark", ".log");
+        var random = new Random(0);
+        var levels = new String[]{"DEBUG", "INFO", "WARN", "ERROR"};
+        try (var writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            var written = 0L;
+            var i = 0L;
+            while (written < size) {
+                var line = "2019-03-" + (10 + i % 20) + " 12:" + (10 + i % 50) + ":" + (10 + i % 50)
+                    + " [" + levels[random.nextInt(levels.length)] + "] worker-" + random.nextInt(16)
+                    + " request " + i + " handled in " + random.nextInt(1000) + " ms, état ok\n";
+                writer.write(line);
+                written += line.getBytes(StandardCharsets.UTF_8).length;
+                i++;
+            }
+        }
+        blockingPool = Executors.newCachedThreadPool();
+        blocker = ExecutionContext.fromExecutor(blockingPool);
+        cs = IO.contextShift(ExecutionContext.global);
+        compiler = Stream.Compiler.io();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        blockingPool.shutdown();
+        Files.delete(path);
+    }
+
+    @Benchmark
+    public long bufferedReader() throws IOException {
+        try (var reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            var sum = 0L;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                sum += line.length();
+            }
+            return sum;
+        }
+    }
+
+    @Benchmark
+    public long lines() {
+        return sum(FileStreams.readAll(path, blocker, chunkSize, IO.effect(), cs).lines());
+    }
+
+    @Benchmark
+    public long mmapLines() {
+        return sum(Stream.mmap(path, blocker, chunkSize, IO.effect(), cs).lines());
+    }
+
+    @Benchmark
+    public long utf8Decode() {
+        return sum(FileStreams.readAll(path, blocker, chunkSize, IO.effect(), cs).utf8Decode());
+    }
+
+    private long sum(Stream<IO, String> strings) {
+        return ((IO<Long>) strings.compile(compiler).fold(0L, (sum, s) -> sum + s.length())).unsafeRunSync();
+    }
+}
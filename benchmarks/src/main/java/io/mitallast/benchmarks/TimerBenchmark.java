@@ -0,0 +1,51 @@
+package io.mitallast.benchmarks;
+
+import io.mitallast.concurrent.ExecutionContext;
+import io.mitallast.concurrent.HashedWheelTimer;
+import io.mitallast.io.ContextShift;
+import io.mitallast.io.IO;
+import io.mitallast.io.Timer;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mostly cancelled timeouts, scheduled from several threads at once.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(4)
+@Fork(1)
+public class TimerBenchmark {
+    private ContextShift<IO> cs;
+    private Timer<IO> scheduled;
+    private HashedWheelTimer wheel;
+    private Timer<IO> wheeled;
+
+    @Setup
+    public void setup() {
+        cs = IO.contextShift(ExecutionContext.global);
+        scheduled = IO.timer(ExecutionContext.global);
+        wheel = HashedWheelTimer.apply(Duration.ofMillis(1), 512);
+        wheeled = IO.timer(ExecutionContext.global, wheel);
+    }
+
+    @TearDown
+    public void tearDown() {
+        wheel.shutdown();
+    }
+
+    @Benchmark
+    public int scheduledExecutorTimeout() {
+        return IO.pure(1).timeout(Duration.ofSeconds(10), scheduled, cs).unsafeRunSync();
+    }
+
+    @Benchmark
+    public int hashedWheelTimeout() {
+        return IO.pure(1).timeout(Duration.ofSeconds(10), wheeled, cs).unsafeRunSync();
+    }
+}
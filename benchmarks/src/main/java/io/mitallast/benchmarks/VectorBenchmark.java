@@ -0,0 +1,73 @@
+package io.mitallast.benchmarks;
+
+import io.mitallast.vector.Vector;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VectorBenchmark {
+    @Param({"10000"})
+    public int size;
+
+    private Vector<Integer> vector;
+
+    @Setup
+    public void setup() {
+        vector = Vector.empty();
+        for (int i = 0; i < size; i++) {
+            vector = vector.append(i);
+        }
+    }
+
+    @Benchmark
+    public Vector<Integer> append() {
+        Vector<Integer> v = Vector.empty();
+        for (int i = 0; i < size; i++) {
+            v = v.append(i);
+        }
+        return v;
+    }
+
+    @Benchmark
+    public Vector<Integer> prepend() {
+        Vector<Integer> v = Vector.empty();
+        for (int i = 0; i < size; i++) {
+            v = v.prepend(i);
+        }
+        return v;
+    }
+
+    @Benchmark
+    public long apply() {
+        long sum = 0;
+        for (int i = 0; i < size; i++) {
+            sum += vector.apply(i);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public Vector<Integer> updated() {
+        var v = vector;
+        for (int i = 0; i < size; i++) {
+            v = v.updated(i, -i);
+        }
+        return v;
+    }
+
+    @Benchmark
+    public long iterator() {
+        long sum = 0;
+        var it = vector.iterator();
+        while (it.hasNext()) {
+            sum += it.next();
+        }
+        return sum;
+    }
+}
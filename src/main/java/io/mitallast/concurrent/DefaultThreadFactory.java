@@ -8,7 +8,7 @@ import java.util.concurrent.ForkJoinWorkerThread;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.atomic.AtomicInteger;
 
-final class DefaultThreadFactory implements ThreadFactory, ForkJoinPool.ForkJoinWorkerThreadFactory {
+final class DefaultThreadFactory implements ThreadFactory, ForkJoinPool.ForkJoinWorkerThreadFactory, WorkStealingPool.WorkerThreadFactory {
     private final boolean daemon;
     private final int maxBlockers;
     private final String prefix;
@@ -63,6 +63,15 @@ final class DefaultThreadFactory implements ThreadFactory, ForkJoinPool.ForkJoin
         return new DefaultForkJoinWorkerThread(fjp);
     }
 
+    @Override
+    public WorkStealingPool.WorkerThread newThread(WorkStealingPool pool, WorkStealingPool.Worker worker) {
+        var thread = new DefaultWorkStealingWorkerThread(pool, worker);
+        thread.setDaemon(daemon);
+        thread.setUncaughtExceptionHandler(uncaught);
+        thread.setName(prefix + "-" + thread.getId());
+        return thread;
+    }
+
     private final class DefaultForkJoinWorkerThread extends ForkJoinWorkerThread implements BlockContext {
         private boolean isBlocked = false; // This is only ever read & written if this thread is the current thread
 
@@ -89,6 +98,27 @@ final class DefaultThreadFactory implements ThreadFactory, ForkJoinPool.ForkJoin
         }
     }
 
+    private final class DefaultWorkStealingWorkerThread extends WorkStealingPool.WorkerThread implements BlockContext {
+        private boolean isBlocked = false; // This is only ever read & written if this thread is the current thread
+
+        DefaultWorkStealingWorkerThread(WorkStealingPool pool, WorkStealingPool.Worker worker) {
+            super(pool, worker);
+        }
+
+        @Override
+        public final <T> T blockOn(Task<T> thunk) {
+            if (Thread.currentThread() == this && !isBlocked && isAttached() && newBlocker()) {
+                try {
+                    isBlocked = true;
+                    return pool.managedBlock(this, thunk);
+                } finally {
+                    isBlocked = false;
+                    freeBlocker();
+                }
+            } else return thunk.runUnsafe();
+        }
+    }
+
     private final static class ForkJoinPoolManagedBlocker<T> implements ForkJoinPool.ManagedBlocker, Supplier<T> {
         private final Task<T> thunk;
 
@@ -9,8 +9,9 @@ import io.mitallast.io.Sync;
 import io.mitallast.kernel.Unit;
 import io.mitallast.maybe.Maybe;
 
-import java.util.LinkedHashMap;
+import java.util.ArrayList;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
 
@@ -60,17 +61,21 @@ public abstract class Deferred<F extends Higher, A> {
     }
 
     private static <F extends Higher, A> TryableDeferred<F, A> unsafeTryable(Concurrent<F> F) {
-        return new ConcurrentDeferred<>(new AtomicReference<>(new State.Unset<>(new LinkedHashMap<>())), F);
+        return new ConcurrentDeferred<>(new AtomicReference<>(State.unset()), F);
     }
 
     private static <F extends Higher, A> TryableDeferred<F, A> unsafeTryableUncancelable(Async<F> F) {
         return new UncancelableDeferred<>(new CompletableFuture<>(), F);
     }
 
-    private static final class Id {
-    }
-
     private static abstract class State<A> {
+        private final static State unset = new Unset();
+
+        @SuppressWarnings("unchecked")
+        static <A> State<A> unset() {
+            return (State<A>) unset;
+        }
+
         final static class Set<A> extends State<A> {
             final A a;
 
@@ -79,18 +84,42 @@ public abstract class Deferred<F extends Higher, A> {
             }
         }
 
+        /**
+         * No value and no waiters, the bottom of the waiters stack.
+         */
         final static class Unset<A> extends State<A> {
-            final LinkedHashMap<Id, Consumer<A>> waiting;
+        }
 
-            Unset(final LinkedHashMap<Id, Consumer<A>> waiting) {
-                this.waiting = waiting;
+        /**
+         * No value yet, this is the top of a Treiber stack of readers.
+         * <p>
+         * Canceled readers are only flagged as removed, which is O(1),
+         * and are skipped on completion. Removed nodes on top of the
+         * stack get dropped on the next push or cancel, the ones below
+         * a live reader are unlinked by a sweep of the stack every
+         * `sweepThreshold` cancellations, so readers that keep timing
+         * out don't pile up.
+         */
+        final static class Waiter<A> extends State<A> {
+            final Consumer<Either<Throwable, A>> cb;
+            // only ever moved forward past removed nodes, by a sweep
+            volatile State<A> next;
+            volatile boolean removed = false;
+
+            Waiter(final Consumer<Either<Throwable, A>> cb, final State<A> next) {
+                this.cb = cb;
+                this.next = next;
             }
         }
     }
 
     private final static class ConcurrentDeferred<F extends Higher, A> extends TryableDeferred<F, A> {
+        private static final int sweepThreshold = 32;
+
         private final Concurrent<F> F;
         private final AtomicReference<State<A>> ref;
+        // readers canceled since the last sweep
+        private final AtomicInteger removals = new AtomicInteger();
 
         ConcurrentDeferred(final AtomicReference<State<A>> ref, final Concurrent<F> F) {
             this.F = F;
@@ -103,28 +132,22 @@ public abstract class Deferred<F extends Higher, A> {
                 var s = ref.get();
                 if (s instanceof State.Set) {
                     return F.pure(((State.Set<A>) s).a);
-                } else if (s instanceof State.Unset) {
+                } else {
                     return F.cancelable(cb -> {
-                        final var id = unsafeRegister(cb);
+                        final var waiter = unsafeRegister(cb);
+                        if (waiter == null) {
+                            return F.unit();
+                        }
                         return F.delay(() -> {
-                            while (true) {
-                                var ss = ref.get();
-                                if (ss instanceof State.Set) {
-                                    break;
-                                } else if (ss instanceof State.Unset) {
-                                    var waiting = ((State.Unset<A>) ss).waiting;
-                                    var copy = new LinkedHashMap<>(waiting);
-                                    copy.remove(id);
-                                    var updated = new State.Unset<>(copy);
-                                    if (ref.compareAndSet(s, updated)) {
-                                        break;
-                                    }
-                                } else throw new IllegalArgumentException();
+                            waiter.removed = true;
+                            dropRemoved();
+                            if (removals.incrementAndGet() >= sweepThreshold) {
+                                sweep();
                             }
                             return Unit.unit();
                         });
                     });
-                } else throw new IllegalArgumentException();
+                }
             });
         }
 
@@ -140,28 +163,71 @@ public abstract class Deferred<F extends Higher, A> {
             });
         }
 
-        private Id unsafeRegister(final Consumer<Either<Throwable, A>> cb) {
-            var id = new Id();
-
-            Maybe<A> register;
+        /**
+         * Pushes the callback on the waiters stack, or calls it right away
+         * if the value is already there, in which case it returns `null`.
+         */
+        private State.Waiter<A> unsafeRegister(final Consumer<Either<Throwable, A>> cb) {
             while (true) {
                 var s = ref.get();
                 if (s instanceof State.Set) {
-                    register = Maybe.some(((State.Set<A>) s).a);
-                    break;
-                } else if (s instanceof State.Unset) {
-                    var waiting = ((State.Unset<A>) s).waiting;
-                    var copy = new LinkedHashMap<>(waiting);
-                    copy.put(id, a -> cb.accept(Either.right(a)));
-                    var updated = new State.Unset<>(copy);
-                    if (ref.compareAndSet(s, updated)) {
-                        register = Maybe.none();
-                        break;
+                    cb.accept(Either.right(((State.Set<A>) s).a));
+                    return null;
+                } else {
+                    var waiter = new State.Waiter<>(cb, skipRemoved(s));
+                    if (ref.compareAndSet(s, waiter)) {
+                        return waiter;
                     }
-                } else throw new IllegalArgumentException();
+                }
+            }
+        }
+
+        private void dropRemoved() {
+            while (true) {
+                var s = ref.get();
+                if (!(s instanceof State.Waiter) || !((State.Waiter<A>) s).removed) {
+                    return;
+                }
+                if (ref.compareAndSet(s, skipRemoved(s))) {
+                    return;
+                }
             }
-            register.foreach(a -> cb.accept(Either.right(a)));
-            return id;
+        }
+
+        /**
+         * Unlinks the removed readers below the top of the stack. Pushes
+         * only replace the top, so the links below it are only changed
+         * here, and each change skips removed nodes only: racing sweeps
+         * may leave a removed node linked, never drop a live one.
+         */
+        private void sweep() {
+            var n = removals.get();
+            if (n < sweepThreshold || !removals.compareAndSet(n, 0)) {
+                return;
+            }
+            var s = ref.get();
+            if (!(s instanceof State.Waiter)) {
+                return;
+            }
+            var pred = (State.Waiter<A>) s;
+            var current = pred.next;
+            while (current instanceof State.Waiter) {
+                var waiter = (State.Waiter<A>) current;
+                var next = waiter.next;
+                if (waiter.removed) {
+                    pred.next = next;
+                } else {
+                    pred = waiter;
+                }
+                current = next;
+            }
+        }
+
+        private static <A> State<A> skipRemoved(State<A> s) {
+            while (s instanceof State.Waiter && ((State.Waiter<A>) s).removed) {
+                s = ((State.Waiter<A>) s).next;
+            }
+            return s;
         }
 
         @Override
@@ -170,28 +236,36 @@ public abstract class Deferred<F extends Higher, A> {
         }
 
         private Higher<F, Unit> unsafeComplete(A a) {
-            var s = ref.get();
-            if (s instanceof State.Set) {
-                throw new IllegalStateException("Attempting to complete a Deferred that has already been completed");
-            } else if (s instanceof State.Unset) {
+            while (true) {
+                var s = ref.get();
+                if (s instanceof State.Set) {
+                    throw new IllegalStateException("Attempting to complete a Deferred that has already been completed");
+                }
                 if (ref.compareAndSet(s, new State.Set<>(a))) {
-                    var waiting = ((State.Unset<A>) s).waiting;
-                    if (!waiting.isEmpty()) {
-                        return notifyReadersLoop(a, waiting.values());
+                    if (s instanceof State.Waiter) {
+                        return notifyReadersLoop(a, (State.Waiter<A>) s);
                     } else {
                         return F.unit();
                     }
-                } else {
-                    return unsafeComplete(a);
                 }
-            } else throw new IllegalArgumentException();
+            }
         }
 
-        private Higher<F, Unit> notifyReadersLoop(A a, Iterable<Consumer<A>> r) {
+        private Higher<F, Unit> notifyReadersLoop(A a, State.Waiter<A> head) {
+            // The stack is LIFO, readers are notified in registration order
+            var waiters = new ArrayList<State.Waiter<A>>();
+            for (State<A> s = head; s instanceof State.Waiter; s = ((State.Waiter<A>) s).next) {
+                var waiter = (State.Waiter<A>) s;
+                if (!waiter.removed) {
+                    waiters.add(waiter);
+                }
+            }
+            var result = Either.<Throwable, A>right(a);
             var acc = F.unit();
-            for (final Consumer<A> next : r) {
+            for (int i = waiters.size() - 1; i >= 0; i--) {
+                final var next = waiters.get(i);
                 var task = F.map(F.start(F.delay(() -> {
-                    next.accept(a);
+                    next.cb.accept(result);
                     return Unit.unit();
                 })), f -> Unit.unit());
                 acc = F.flatMap(acc, u -> task);
@@ -73,5 +73,17 @@ public interface ExecutionContext {
         return DefaultExecutionContext.fromExecutor(executor, reporter);
     }
 
+    /**
+     * Creates a work-stealing `ExecutionContext` with the given number
+     * of worker threads, see [[WorkStealingPool]].
+     */
+    static ExecutionContextExecutor workStealing(int parallelism) {
+        return workStealing(parallelism, defaultReporter);
+    }
+
+    static ExecutionContextExecutor workStealing(int parallelism, Consumer<Throwable> reporter) {
+        return WorkStealingPool.apply(parallelism, "work-stealing-ec", reporter);
+    }
+
     Consumer<Throwable> defaultReporter = Throwable::printStackTrace;
 }
@@ -0,0 +1,274 @@
+package io.mitallast.concurrent;
+
+import java.time.Duration;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Hashed timing wheel, a scheduler optimized for a large number of
+ * short lived and mostly cancelled timeouts.
+ * <p>
+ * Scheduling and cancelling are O(1) and lock-free: new timeouts are
+ * pushed onto a concurrent queue and cancelling only flips a flag.
+ * A single worker thread wakes up every tick, moves the new timeouts
+ * into the wheel buckets, drops the cancelled ones it meets and runs
+ * the expired ones. Tasks are run on the worker thread, so they must
+ * be short, usually just a submit to an `ExecutionContext`.
+ * <p>
+ * The resolution is the tick duration: a timeout fires on the first
+ * tick following its deadline.
+ */
+public final class HashedWheelTimer {
+    /**
+     * Maximum number of new timeouts moved into the wheel per tick,
+     * to avoid starving the expiration of already scheduled ones.
+     */
+    private static final int maxTransferPerTick = 100_000;
+
+    private final long tickNanos;
+    private final int mask;
+    private final Bucket[] wheel;
+    private final ConcurrentLinkedQueue<Entry> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicLong scheduled = new AtomicLong(0);
+    private final Consumer<Throwable> reporter;
+    private final Thread worker;
+    private final long startTime;
+    private volatile boolean shutdown = false;
+
+    private HashedWheelTimer(Duration tick, int ticksPerWheel, ThreadFactory threadFactory, Consumer<Throwable> reporter) {
+        if (tick.isNegative() || tick.isZero()) {
+            throw new IllegalArgumentException("tick must be positive: " + tick);
+        }
+        if (ticksPerWheel <= 0 || ticksPerWheel > (1 << 30)) {
+            throw new IllegalArgumentException("ticksPerWheel must be in range (0, 2^30]: " + ticksPerWheel);
+        }
+        var size = 1;
+        while (size < ticksPerWheel) size <<= 1;
+
+        this.tickNanos = tick.toNanos();
+        this.mask = size - 1;
+        this.wheel = new Bucket[size];
+        for (int i = 0; i < size; i++) {
+            wheel[i] = new Bucket();
+        }
+        this.reporter = reporter;
+        this.startTime = System.nanoTime();
+        this.worker = threadFactory.newThread(this::run);
+        this.worker.start();
+    }
+
+    public static HashedWheelTimer apply(Duration tick, int ticksPerWheel) {
+        return apply(tick, ticksPerWheel, ExecutionContext.defaultReporter);
+    }
+
+    public static HashedWheelTimer apply(Duration tick, int ticksPerWheel, Consumer<Throwable> reporter) {
+        return new HashedWheelTimer(tick, ticksPerWheel, r -> {
+            var th = new Thread(r);
+            th.setName("effect-wheel-timer-" + th.getId());
+            th.setDaemon(true);
+            return th;
+        }, reporter);
+    }
+
+    /**
+     * Schedules the task to run once after the given delay.
+     */
+    public Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+        if (shutdown) {
+            throw new IllegalStateException("timer is shut down");
+        }
+        var deadline = (System.nanoTime() - startTime) + unit.toNanos(Math.max(0, delay));
+        // Guard against overflow, such a timeout never expires anyway
+        if (delay > 0 && deadline < 0) {
+            deadline = Long.MAX_VALUE;
+        }
+        var entry = new Entry(task, deadline);
+        var wasEmpty = scheduled.getAndIncrement() == 0;
+        pending.offer(entry);
+        if (wasEmpty) {
+            // the worker might be parked waiting for work
+            LockSupport.unpark(worker);
+        }
+        return entry;
+    }
+
+    /**
+     * Number of timeouts that are neither expired nor removed from the wheel yet,
+     * including cancelled ones still waiting for lazy removal.
+     */
+    public long size() {
+        return scheduled.get();
+    }
+
+    public void shutdown() {
+        shutdown = true;
+        LockSupport.unpark(worker);
+    }
+
+    private void run() {
+        long tick = 0;
+        while (!shutdown) {
+            if (scheduled.get() == 0) {
+                // nothing in the wheel, no need to wake up every tick
+                LockSupport.park(this);
+                // realign the wheel, all the buckets are empty
+                tick = Math.max(tick, (System.nanoTime() - startTime) / tickNanos);
+                continue;
+            }
+            awaitTick(tick);
+            if (shutdown) return;
+            transferPending(tick);
+            wheel[(int) (tick & mask)].expire();
+            tick++;
+        }
+    }
+
+    private void awaitTick(long tick) {
+        var deadline = tickNanos * (tick + 1);
+        while (!shutdown) {
+            var sleep = deadline - (System.nanoTime() - startTime);
+            if (sleep <= 0) {
+                return;
+            }
+            LockSupport.parkNanos(this, sleep);
+        }
+    }
+
+    private void transferPending(long tick) {
+        for (int i = 0; i < maxTransferPerTick; i++) {
+            var entry = pending.poll();
+            if (entry == null) {
+                return;
+            }
+            if (entry.isCancelled()) {
+                scheduled.decrementAndGet();
+                continue;
+            }
+            var calculated = entry.deadline / tickNanos;
+            entry.remainingRounds = (calculated - tick) / wheel.length;
+            // deadlines in the past go to the current bucket
+            var ticks = Math.max(calculated, tick);
+            wheel[(int) (ticks & mask)].add(entry);
+        }
+    }
+
+    public interface Timeout {
+        /**
+         * Cancels the timeout, returns `false` if it already
+         * expired or was cancelled before.
+         */
+        boolean cancel();
+
+        boolean isCancelled();
+
+        boolean isExpired();
+    }
+
+    private final class Entry implements Timeout {
+        private static final int stateInit = 0;
+        private static final int stateCancelled = 1;
+        private static final int stateExpired = 2;
+
+        private final Runnable task;
+        private final long deadline;
+        volatile int state = stateInit;
+
+        // Only accessed by the worker thread
+        private long remainingRounds;
+        private Entry next;
+        private Entry prev;
+
+        private Entry(Runnable task, long deadline) {
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        @Override
+        public boolean cancel() {
+            // Lazy removal, the entry is unlinked by the worker
+            // the next time it goes over its bucket
+            return entryState.compareAndSet(this, stateInit, stateCancelled);
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return state == stateCancelled;
+        }
+
+        @Override
+        public boolean isExpired() {
+            return state == stateExpired;
+        }
+
+        private void expire() {
+            if (entryState.compareAndSet(this, stateInit, stateExpired)) {
+                try {
+                    task.run();
+                } catch (Throwable e) {
+                    reporter.accept(e);
+                }
+            }
+        }
+    }
+
+    private static final AtomicIntegerFieldUpdater<HashedWheelTimer.Entry> entryState =
+        AtomicIntegerFieldUpdater.newUpdater(HashedWheelTimer.Entry.class, "state");
+
+    /**
+     * Doubly linked list of entries, only accessed by the worker thread.
+     */
+    private final class Bucket {
+        private Entry head;
+        private Entry tail;
+
+        private void add(Entry entry) {
+            if (head == null) {
+                head = tail = entry;
+            } else {
+                tail.next = entry;
+                entry.prev = tail;
+                tail = entry;
+            }
+        }
+
+        private void expire() {
+            var entry = head;
+            while (entry != null) {
+                var next = entry.next;
+                if (entry.isCancelled()) {
+                    remove(entry);
+                } else if (entry.remainingRounds <= 0) {
+                    remove(entry);
+                    entry.expire();
+                } else {
+                    entry.remainingRounds--;
+                }
+                entry = next;
+            }
+        }
+
+        private void remove(Entry entry) {
+            var next = entry.next;
+            if (entry.prev != null) {
+                entry.prev.next = next;
+            }
+            if (next != null) {
+                next.prev = entry.prev;
+            }
+            if (entry == head) {
+                head = next;
+            }
+            if (entry == tail) {
+                tail = entry.prev;
+            }
+            entry.prev = null;
+            entry.next = null;
+            scheduled.decrementAndGet();
+        }
+    }
+}
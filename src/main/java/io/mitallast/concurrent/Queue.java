@@ -0,0 +1,721 @@
+package io.mitallast.concurrent;
+
+import io.mitallast.either.Either;
+import io.mitallast.higher.Higher;
+import io.mitallast.io.Concurrent;
+import io.mitallast.kernel.Unit;
+import io.mitallast.maybe.Maybe;
+import io.mitallast.stream.Chunk;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * Asynchronous queue for passing elements between fibers.
+ * <p>
+ * `take` semantically blocks while the queue is empty, `offer` semantically
+ * blocks while a bounded queue is full; the other flavors never block
+ * on `offer` and instead drop either the new or the oldest element.
+ * Both are cancelable: an `offer` canceled before it found room doesn't
+ * enqueue its element, and a `take` canceled once it dequeued puts the
+ * element back at the head of the queue.
+ * <p>
+ * Elements are kept in a lock-free ring buffer, `null` is not allowed.
+ */
+public interface Queue<F extends Higher, A> {
+    /**
+     * Enqueues one element, semantically blocking while a bounded queue is full.
+     */
+    Higher<F, Unit> offer(A a);
+
+    /**
+     * Enqueues one element if there's room for it without blocking,
+     * returns `false` if the element was not enqueued.
+     */
+    Higher<F, Boolean> tryOffer(A a);
+
+    /**
+     * Dequeues one element, semantically blocking while the queue is empty.
+     */
+    Higher<F, A> take();
+
+    /**
+     * Dequeues one element if there's one available without blocking.
+     */
+    Higher<F, Maybe<A>> tryTake();
+
+    /**
+     * Dequeues at least one and at most `maxSize` elements,
+     * semantically blocking only while the queue is empty.
+     */
+    Higher<F, Chunk<A>> takeBatch(int maxSize);
+
+    /**
+     * Number of elements currently in the queue,
+     * may be out of date the instant after it is retrieved.
+     */
+    Higher<F, Integer> size();
+
+    /**
+     * Creates a queue holding at most `capacity` elements,
+     * `offer` blocks while it is full.
+     */
+    static <F extends Higher, A> Higher<F, Queue<F, A>> bounded(int capacity, Concurrent<F> F) {
+        return F.delay(() -> unsafeBounded(capacity, F));
+    }
+
+    /**
+     * Creates a queue with no size limit, `offer` never blocks.
+     */
+    static <F extends Higher, A> Higher<F, Queue<F, A>> unbounded(Concurrent<F> F) {
+        return F.delay(() -> unsafeUnbounded(F));
+    }
+
+    /**
+     * Creates a queue holding at most `capacity` elements,
+     * `offer` drops the new element when it is full.
+     */
+    static <F extends Higher, A> Higher<F, Queue<F, A>> dropping(int capacity, Concurrent<F> F) {
+        return F.delay(() -> unsafeDropping(capacity, F));
+    }
+
+    /**
+     * Creates a queue holding at most `capacity` elements,
+     * `offer` drops the oldest element when it is full.
+     */
+    static <F extends Higher, A> Higher<F, Queue<F, A>> sliding(int capacity, Concurrent<F> F) {
+        return F.delay(() -> unsafeSliding(capacity, F));
+    }
+
+    /**
+     * Creates a queue keeping the last `capacity` offered elements,
+     * `offer` overwrites the oldest element when it is full.
+     * <p>
+     * Unlike [[sliding]], which dequeues the oldest element and retries,
+     * an offer reserves its slot first and then discards exactly the
+     * elements it overflows, so it never fails nor retries under contention.
+     */
+    static <F extends Higher, A> Higher<F, Queue<F, A>> circularBuffer(int capacity, Concurrent<F> F) {
+        return F.delay(() -> unsafeCircularBuffer(capacity, F));
+    }
+
+    static <F extends Higher, A> Queue<F, A> unsafeBounded(int capacity, Concurrent<F> F) {
+        return new ConcurrentQueue<>(new RingBuffer<>(capacity), ConcurrentQueue.strategyBackPressure, F);
+    }
+
+    static <F extends Higher, A> Queue<F, A> unsafeUnbounded(Concurrent<F> F) {
+        return new ConcurrentQueue<>(new UnboundedBuffer<>(), ConcurrentQueue.strategyBackPressure, F);
+    }
+
+    static <F extends Higher, A> Queue<F, A> unsafeDropping(int capacity, Concurrent<F> F) {
+        return new ConcurrentQueue<>(new RingBuffer<>(capacity), ConcurrentQueue.strategyDropNewest, F);
+    }
+
+    static <F extends Higher, A> Queue<F, A> unsafeSliding(int capacity, Concurrent<F> F) {
+        return new ConcurrentQueue<>(new RingBuffer<>(capacity), ConcurrentQueue.strategyDropOldest, F);
+    }
+
+    static <F extends Higher, A> Queue<F, A> unsafeCircularBuffer(int capacity, Concurrent<F> F) {
+        return new ConcurrentQueue<>(new CircularBuffer<>(capacity), ConcurrentQueue.strategyBackPressure, F);
+    }
+}
+
+interface Buffer<A> {
+    boolean offer(A a);
+
+    A poll();
+
+    boolean isEmpty();
+
+    boolean isFull();
+
+    int size();
+}
+
+/**
+ * Bounded multi-producer multi-consumer ring buffer, after Dmitry Vyukov's
+ * design: every slot has a sequence number telling whether it is ready
+ * to be written or read for a given position, so producers and consumers
+ * only contend on their own position counter.
+ */
+final class RingBuffer<A> implements Buffer<A> {
+    private final int capacity;
+    // The sequence numbers can't tell a full slot from a free one
+    // with a single slot, so there are always at least two
+    private final int slots;
+    private final AtomicReferenceArray<A> buffer;
+    private final AtomicLongArray sequence;
+    private final AtomicLong head = new AtomicLong(0);
+    private final AtomicLong tail = new AtomicLong(0);
+
+    RingBuffer(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+        this.slots = Math.max(2, capacity);
+        this.buffer = new AtomicReferenceArray<>(slots);
+        this.sequence = new AtomicLongArray(slots);
+        for (int i = 0; i < slots; i++) {
+            sequence.set(i, i);
+        }
+    }
+
+    @Override
+    public boolean offer(A a) {
+        while (true) {
+            var pos = tail.get();
+            var index = (int) (pos % slots);
+            var diff = sequence.get(index) - pos;
+            if (diff == 0) {
+                if (slots != capacity && pos - head.get() >= capacity) {
+                    return false;
+                }
+                if (tail.compareAndSet(pos, pos + 1)) {
+                    buffer.lazySet(index, a);
+                    sequence.set(index, pos + 1);
+                    return true;
+                }
+            } else if (diff < 0) {
+                return false;
+            }
+        }
+    }
+
+    @Override
+    public A poll() {
+        while (true) {
+            var pos = head.get();
+            var index = (int) (pos % slots);
+            var diff = sequence.get(index) - (pos + 1);
+            if (diff == 0) {
+                if (head.compareAndSet(pos, pos + 1)) {
+                    var a = buffer.get(index);
+                    buffer.lazySet(index, null);
+                    sequence.set(index, pos + slots);
+                    return a;
+                }
+            } else if (diff < 0) {
+                return null;
+            }
+        }
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return head.get() >= tail.get();
+    }
+
+    @Override
+    public boolean isFull() {
+        return tail.get() - head.get() >= capacity;
+    }
+
+    @Override
+    public int size() {
+        return (int) Math.max(0, Math.min(capacity, tail.get() - head.get()));
+    }
+}
+
+/**
+ * Bounded ring buffer overwriting its oldest elements, on the same
+ * sequence numbers as [[RingBuffer]].
+ * <p>
+ * Producers reserve their position unconditionally and move the head
+ * past the elements they overflow, discarding them the way a consumer
+ * would dequeue them, before waiting for their own slot to be released.
+ */
+final class CircularBuffer<A> implements Buffer<A> {
+    private final int capacity;
+    private final int slots;
+    private final AtomicReferenceArray<A> buffer;
+    private final AtomicLongArray sequence;
+    private final AtomicLong head = new AtomicLong(0);
+    private final AtomicLong tail = new AtomicLong(0);
+
+    CircularBuffer(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+        this.slots = Math.max(2, capacity);
+        this.buffer = new AtomicReferenceArray<>(slots);
+        this.sequence = new AtomicLongArray(slots);
+        for (int i = 0; i < slots; i++) {
+            sequence.set(i, i);
+        }
+    }
+
+    @Override
+    public boolean offer(A a) {
+        var pos = tail.getAndIncrement();
+        while (true) {
+            var h = head.get();
+            if (pos - h < capacity) {
+                break;
+            }
+            if (head.compareAndSet(h, h + 1)) {
+                release(h);
+            }
+        }
+        var index = (int) (pos % slots);
+        // a consumer may still be reading the element we overflow
+        while (sequence.get(index) != pos) {
+            Thread.onSpinWait();
+        }
+        buffer.lazySet(index, a);
+        sequence.set(index, pos + 1);
+        return true;
+    }
+
+    // discards the element at a position dequeued by a producer,
+    // once its own producer has written it
+    private void release(long pos) {
+        var index = (int) (pos % slots);
+        while (sequence.get(index) != pos + 1) {
+            Thread.onSpinWait();
+        }
+        buffer.lazySet(index, null);
+        sequence.set(index, pos + slots);
+    }
+
+    @Override
+    public A poll() {
+        while (true) {
+            var pos = head.get();
+            var index = (int) (pos % slots);
+            var diff = sequence.get(index) - (pos + 1);
+            if (diff == 0) {
+                if (head.compareAndSet(pos, pos + 1)) {
+                    var a = buffer.get(index);
+                    buffer.lazySet(index, null);
+                    sequence.set(index, pos + slots);
+                    return a;
+                }
+            } else if (diff < 0) {
+                // empty, or the producer of this position didn't write yet
+                return null;
+            }
+        }
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return head.get() >= tail.get();
+    }
+
+    @Override
+    public boolean isFull() {
+        return false;
+    }
+
+    @Override
+    public int size() {
+        return (int) Math.max(0, Math.min(capacity, tail.get() - head.get()));
+    }
+}
+
+final class UnboundedBuffer<A> implements Buffer<A> {
+    private final ConcurrentLinkedQueue<A> queue = new ConcurrentLinkedQueue<>();
+
+    @Override
+    public boolean offer(A a) {
+        return queue.offer(a);
+    }
+
+    @Override
+    public A poll() {
+        return queue.poll();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return queue.isEmpty();
+    }
+
+    @Override
+    public boolean isFull() {
+        return false;
+    }
+
+    @Override
+    public int size() {
+        return queue.size();
+    }
+}
+
+final class ConcurrentQueue<F extends Higher, A> implements Queue<F, A> {
+    static final int strategyBackPressure = 0;
+    static final int strategyDropNewest = 1;
+    static final int strategyDropOldest = 2;
+
+    private final Buffer<A> buffer;
+    // elements given back by canceled takes, polled before the buffer
+    // as they are the oldest ones
+    private final ConcurrentLinkedDeque<A> returned = new ConcurrentLinkedDeque<>();
+    private final int strategy;
+    private final Concurrent<F> F;
+    private final WaitList takers = new WaitList();
+    private final WaitList offerers = new WaitList();
+
+    ConcurrentQueue(Buffer<A> buffer, int strategy, Concurrent<F> F) {
+        this.buffer = buffer;
+        this.strategy = strategy;
+        this.F = F;
+    }
+
+    @Override
+    public Higher<F, Unit> offer(A a) {
+        return F.suspend(() -> {
+            if (unsafeTryOffer(a) || strategy != strategyBackPressure) {
+                return F.unit();
+            }
+            return F.cancelable(cb -> {
+                var offer = new Offer(a, cb);
+                offer.run();
+                return F.delay(() -> {
+                    offer.cancel();
+                    return Unit.unit();
+                });
+            });
+        });
+    }
+
+    @Override
+    public Higher<F, Boolean> tryOffer(A a) {
+        return F.delay(() -> unsafeTryOffer(a));
+    }
+
+    private boolean unsafeTryOffer(A a) {
+        if (a == null) {
+            throw new NullPointerException();
+        }
+        if (strategy == strategyDropOldest) {
+            while (!buffer.offer(a)) {
+                buffer.poll();
+            }
+        } else if (!buffer.offer(a)) {
+            return false;
+        }
+        takers.signal();
+        return true;
+    }
+
+    @Override
+    public Higher<F, A> take() {
+        return F.suspend(() -> {
+            var a = unsafePoll();
+            if (a != null) {
+                return F.pure(a);
+            }
+            return F.cancelable(cb -> {
+                var take = new Take<A>(cb) {
+                    @Override
+                    A result(A first) {
+                        return first;
+                    }
+
+                    @Override
+                    void giveBack(A result) {
+                        returned.offerFirst(result);
+                        takers.signal();
+                    }
+                };
+                take.run();
+                return F.delay(() -> {
+                    take.cancel();
+                    return Unit.unit();
+                });
+            });
+        });
+    }
+
+    @Override
+    public Higher<F, Maybe<A>> tryTake() {
+        return F.delay(() -> Maybe.apply(unsafePoll()));
+    }
+
+    @Override
+    public Higher<F, Chunk<A>> takeBatch(int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize must be positive: " + maxSize);
+        }
+        return F.suspend(() -> {
+            var a = unsafePoll();
+            if (a != null) {
+                return F.pure(drain(a, maxSize));
+            }
+            return F.cancelable(cb -> {
+                var take = new Take<Chunk<A>>(cb) {
+                    @Override
+                    Chunk<A> result(A first) {
+                        return drain(first, maxSize);
+                    }
+
+                    @Override
+                    void giveBack(Chunk<A> result) {
+                        unsafeGiveBack(result.reverseIterator());
+                    }
+                };
+                take.run();
+                return F.delay(() -> {
+                    take.cancel();
+                    return Unit.unit();
+                });
+            });
+        });
+    }
+
+    private Chunk<A> drain(A first, int maxSize) {
+        var a = maxSize > 1 ? unsafePoll() : null;
+        if (a == null) {
+            return Chunk.singleton(first);
+        }
+        var batch = new ArrayList<A>();
+        batch.add(first);
+        batch.add(a);
+        for (int i = 2; i < maxSize && (a = unsafePoll()) != null; i++) {
+            batch.add(a);
+        }
+        return Chunk.indexedSeq(batch);
+    }
+
+    @Override
+    public Higher<F, Integer> size() {
+        return F.delay(() -> buffer.size() + returned.size());
+    }
+
+    private A unsafePoll() {
+        var a = returned.pollFirst();
+        if (a != null) {
+            return a;
+        }
+        a = buffer.poll();
+        if (a != null) {
+            offerers.signal();
+        }
+        return a;
+    }
+
+    private boolean isEmpty() {
+        return returned.isEmpty() && buffer.isEmpty();
+    }
+
+    private void unsafeGiveBack(Iterator<A> reversed) {
+        while (reversed.hasNext()) {
+            returned.offerFirst(reversed.next());
+        }
+        takers.signal();
+    }
+
+    /**
+     * A `take` waiting for an element.
+     * <p>
+     * The waiter is registered before checking the queue once more,
+     * while `offer` enqueues before checking for waiters, so at least
+     * one of them notices the other. Whoever moves the waiter out of
+     * the waiting state owns the continuation: a wake up only means
+     * "try again", the element is never handed over directly.
+     * <p>
+     * A dequeued result is handed over only if the take wins the
+     * [[Pending]] state over its cancellation, otherwise it's given back.
+     * A take canceled once done gives its result back as well: its
+     * callback is discarded, as the fiber was canceled before resuming.
+     */
+    private abstract class Take<R> extends Pending {
+        private final Consumer<Either<Throwable, R>> cb;
+        private volatile Waiter current;
+        // published by the transition to done
+        private R result;
+
+        Take(Consumer<Either<Throwable, R>> cb) {
+            this.cb = cb;
+        }
+
+        abstract R result(A first);
+
+        abstract void giveBack(R result);
+
+        @Override
+        public void run() {
+            while (isActive()) {
+                var a = unsafePoll();
+                if (a != null) {
+                    var r = result(a);
+                    result = r;
+                    if (transition(stateActive, stateDone)) {
+                        cb.accept(Either.right(r));
+                    } else {
+                        giveBack(r);
+                    }
+                    return;
+                }
+                var waiter = new Waiter(this);
+                current = waiter;
+                takers.add(waiter);
+                if (isEmpty() || !waiter.cancel()) {
+                    // either we'll be woken up, or we were already
+                    return;
+                }
+                takers.remove(waiter);
+            }
+            // a wake up reached a canceled take, pass it on
+            takers.signal();
+        }
+
+        void cancel() {
+            if (transition(stateActive, stateCanceled)) {
+                var waiter = current;
+                if (waiter != null && waiter.cancel()) {
+                    takers.remove(waiter);
+                }
+            } else if (isDone()) {
+                giveBack(result);
+            }
+        }
+    }
+
+    /**
+     * An `offer` waiting for room in a full bounded queue,
+     * symmetric to [[Take]].
+     * <p>
+     * An element can't be taken back out of the buffer, so the offer
+     * claims its [[Pending]] state before enqueuing and releases it if
+     * the buffer is still full; a cancellation waits for the claim.
+     */
+    private final class Offer extends Pending {
+        private final A a;
+        private final Consumer<Either<Throwable, Unit>> cb;
+        private volatile Waiter current;
+
+        Offer(A a, Consumer<Either<Throwable, Unit>> cb) {
+            this.a = a;
+            this.cb = cb;
+        }
+
+        @Override
+        public void run() {
+            while (transition(stateActive, stateClaimed)) {
+                if (buffer.offer(a)) {
+                    state = stateDone;
+                    takers.signal();
+                    cb.accept(Either.right(Unit.unit()));
+                    return;
+                }
+                state = stateActive;
+                var waiter = new Waiter(this);
+                current = waiter;
+                offerers.add(waiter);
+                if (buffer.isFull() || !waiter.cancel()) {
+                    return;
+                }
+                offerers.remove(waiter);
+            }
+            offerers.signal();
+        }
+
+        void cancel() {
+            while (!transition(stateActive, stateCanceled)) {
+                if (state != stateClaimed) {
+                    // already done
+                    return;
+                }
+                Thread.onSpinWait();
+            }
+            var waiter = current;
+            if (waiter != null && waiter.cancel()) {
+                offerers.remove(waiter);
+            }
+        }
+    }
+}
+
+/**
+ * State of a waiting `take` or `offer`: it is done or canceled,
+ * whichever gets there first.
+ */
+abstract class Pending implements Runnable {
+    static final int stateActive = 0;
+    static final int stateClaimed = 1;
+    static final int stateDone = 2;
+    static final int stateCanceled = 3;
+
+    volatile int state = stateActive;
+
+    boolean isActive() {
+        return state == stateActive;
+    }
+
+    boolean isDone() {
+        return state == stateDone;
+    }
+
+    boolean transition(int from, int to) {
+        return pendingState.compareAndSet(this, from, to);
+    }
+
+    private static final AtomicIntegerFieldUpdater<Pending> pendingState =
+        AtomicIntegerFieldUpdater.newUpdater(Pending.class, "state");
+}
+
+final class WaitList {
+    private final ConcurrentLinkedQueue<Waiter> waiters = new ConcurrentLinkedQueue<>();
+
+    void add(Waiter waiter) {
+        waiters.offer(waiter);
+    }
+
+    void remove(Waiter waiter) {
+        waiters.remove(waiter);
+    }
+
+    /**
+     * Wakes up the first waiter still waiting, if any.
+     */
+    void signal() {
+        if (waiters.isEmpty()) {
+            return;
+        }
+        Waiter waiter;
+        while ((waiter = waiters.poll()) != null) {
+            if (waiter.wake()) {
+                return;
+            }
+        }
+    }
+}
+
+final class Waiter {
+    private static final int stateWaiting = 0;
+    private static final int stateWoken = 1;
+    private static final int stateCanceled = 2;
+
+    private final Runnable retry;
+    volatile int state = stateWaiting;
+
+    Waiter(Runnable retry) {
+        this.retry = retry;
+    }
+
+    boolean wake() {
+        if (waiterState.compareAndSet(this, stateWaiting, stateWoken)) {
+            retry.run();
+            return true;
+        }
+        return false;
+    }
+
+    boolean cancel() {
+        return waiterState.compareAndSet(this, stateWaiting, stateCanceled);
+    }
+
+    private static final AtomicIntegerFieldUpdater<Waiter> waiterState =
+        AtomicIntegerFieldUpdater.newUpdater(Waiter.class, "state");
+}
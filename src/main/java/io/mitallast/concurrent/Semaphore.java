@@ -0,0 +1,352 @@
+package io.mitallast.concurrent;
+
+import io.mitallast.either.Either;
+import io.mitallast.higher.Higher;
+import io.mitallast.io.Concurrent;
+import io.mitallast.kernel.Unit;
+import io.mitallast.vector.Vector;
+
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * A purely functional semaphore.
+ * <p>
+ * A semaphore has a non-negative number of permits available. Acquiring
+ * a permit decrements the current number of permits and releasing a
+ * permit increases the current number of permits. An acquire that occurs
+ * when there are no permits available results in semantic blocking until
+ * a permit becomes available.
+ * <p>
+ * Blocked acquires are served in FIFO order: a waiter asking for more
+ * permits than available also holds back the waiters behind it. Canceling
+ * a blocked acquire removes it from the queue, and canceling an acquire
+ * that raced with the grant gives the permits back, so no permit leaks.
+ */
+public interface Semaphore<F extends Higher> {
+    /**
+     * Returns the number of permits currently available. Always non-negative.
+     * <p>
+     * May be out of date the instant after it is retrieved.
+     * Use `[[tryAcquire]]` or `[[tryAcquireN]]` if you wish to attempt an
+     * acquire, returning immediately if the current count is not high enough
+     * to satisfy the request.
+     */
+    Higher<F, Long> available();
+
+    /**
+     * Obtains a snapshot of the current count. May be negative.
+     * <p>
+     * Like [[available]] when permits are available but returns the number
+     * of permits callers are waiting for when there are no permits available.
+     */
+    Higher<F, Long> count();
+
+    /**
+     * Acquires `n` permits.
+     * <p>
+     * The returned effect semantically blocks until all requested permits are
+     * available. Note that acquires are satisfied in strict FIFO order, so given
+     * `s: Semaphore[F]` with 2 available permits, an `acquireN(3)` will
+     * always be satisfied before a later call to `acquireN(1)`.
+     *
+     * @param n number of permits to acquire - must be >= 0
+     */
+    Higher<F, Unit> acquireN(long n);
+
+    /**
+     * Acquires a single permit. Alias for `[[acquireN]](1)`.
+     */
+    default Higher<F, Unit> acquire() {
+        return acquireN(1);
+    }
+
+    /**
+     * Acquires `n` permits now and returns `true`, or returns `false` immediately.
+     * Error if `n < 0`.
+     *
+     * @param n number of permits to acquire - must be >= 0
+     */
+    Higher<F, Boolean> tryAcquireN(long n);
+
+    /**
+     * Alias for `[[tryAcquireN]](1)`.
+     */
+    default Higher<F, Boolean> tryAcquire() {
+        return tryAcquireN(1);
+    }
+
+    /**
+     * Releases `n` permits, potentially unblocking up to `n` outstanding acquires.
+     *
+     * @param n number of permits to release - must be >= 0
+     */
+    Higher<F, Unit> releaseN(long n);
+
+    /**
+     * Releases a single permit. Alias for `[[releaseN]](1)`.
+     */
+    default Higher<F, Unit> release() {
+        return releaseN(1);
+    }
+
+    /**
+     * Returns an effect that acquires a permit, runs the supplied effect, and then releases the permit.
+     */
+    <A> Higher<F, A> withPermit(Higher<F, A> fa);
+
+    /**
+     * Creates a new `Semaphore`, initialized with `n` available permits.
+     */
+    static <F extends Higher> Higher<F, Semaphore<F>> apply(long n, Concurrent<F> F) {
+        return F.delay(() -> unsafe(n, F));
+    }
+
+    /**
+     * Like [[apply]] but only allocates the semaphore, as a side effect.
+     */
+    static <F extends Higher> Semaphore<F> unsafe(long n, Concurrent<F> F) {
+        ConcurrentSemaphore.assertNonNegative(n);
+        return new ConcurrentSemaphore<>(n, F);
+    }
+}
+
+final class ConcurrentSemaphore<F extends Higher> implements Semaphore<F> {
+    private final Concurrent<F> F;
+    private final AtomicReference<State> ref;
+
+    ConcurrentSemaphore(long n, Concurrent<F> F) {
+        this.F = F;
+        this.ref = new AtomicReference<>(new State(n, Vector.empty()));
+    }
+
+    static void assertNonNegative(long n) {
+        if (n < 0) {
+            throw new IllegalArgumentException("n must be nonnegative, was: " + n);
+        }
+    }
+
+    @Override
+    public Higher<F, Long> available() {
+        return F.delay(() -> ref.get().permits);
+    }
+
+    @Override
+    public Higher<F, Long> count() {
+        return F.delay(() -> {
+            var s = ref.get();
+            if (s.waiters.isEmpty()) {
+                return s.permits;
+            }
+            var waiting = 0L;
+            for (var w : s.waiters) {
+                waiting += w.n;
+            }
+            return s.permits - waiting;
+        });
+    }
+
+    @Override
+    public Higher<F, Unit> acquireN(long n) {
+        return F.suspend(() -> {
+            assertNonNegative(n);
+            if (n == 0) {
+                return F.unit();
+            }
+            return F.cancelable(cb -> {
+                var waiter = new Waiter(n);
+                register(waiter, cb);
+                return F.delay(() -> {
+                    cancel(waiter);
+                    return Unit.unit();
+                });
+            });
+        });
+    }
+
+    @Override
+    public Higher<F, Boolean> tryAcquireN(long n) {
+        return F.delay(() -> {
+            assertNonNegative(n);
+            while (true) {
+                var s = ref.get();
+                if (!s.waiters.isEmpty() || s.permits < n) {
+                    return false;
+                }
+                if (ref.compareAndSet(s, new State(s.permits - n, s.waiters))) {
+                    return true;
+                }
+            }
+        });
+    }
+
+    @Override
+    public Higher<F, Unit> releaseN(long n) {
+        return F.delay(() -> {
+            assertNonNegative(n);
+            unsafeRelease(n);
+            return Unit.unit();
+        });
+    }
+
+    @Override
+    public <A> Higher<F, A> withPermit(Higher<F, A> fa) {
+        // The waiter is only allocated by the uncancelable acquire of the bracket,
+        // the actual wait happens in `use` so that it can be canceled, and the
+        // release either dequeues it or gives the permit back
+        return F.bracket(
+            F.delay(() -> new Waiter(1)),
+            waiter -> F.flatMap(
+                F.<Unit>cancelable(cb -> {
+                    register(waiter, cb);
+                    return F.unit();
+                }),
+                u -> fa
+            ),
+            waiter -> F.delay(() -> {
+                cancel(waiter);
+                return Unit.unit();
+            })
+        );
+    }
+
+    private void register(Waiter waiter, Consumer<Either<Throwable, Unit>> cb) {
+        waiter.cb = cb;
+        while (true) {
+            var s = ref.get();
+            if (s.waiters.isEmpty() && s.permits >= waiter.n) {
+                if (ref.compareAndSet(s, new State(s.permits - waiter.n, s.waiters))) {
+                    if (waiterState.compareAndSet(waiter, Waiter.stateNew, Waiter.stateGranted)) {
+                        cb.accept(Either.right(Unit.unit()));
+                    } else {
+                        // canceled in the meantime
+                        unsafeRelease(waiter.n);
+                    }
+                    return;
+                }
+            } else {
+                if (!waiterState.compareAndSet(waiter, Waiter.stateNew, Waiter.stateQueued)) {
+                    return;
+                }
+                if (ref.compareAndSet(s, new State(s.permits, s.waiters.append(waiter)))) {
+                    // canceled between the state change and the append, the cancel
+                    // didn't find it in the queue and it would hold back the next ones
+                    if (waiter.state == Waiter.stateDone) {
+                        unsafeRemove(waiter);
+                    }
+                    return;
+                }
+                if (!waiterState.compareAndSet(waiter, Waiter.stateQueued, Waiter.stateNew)) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private void cancel(Waiter waiter) {
+        switch (waiterState.getAndSet(waiter, Waiter.stateDone)) {
+            case Waiter.stateQueued:
+                // if it's not in the queue anymore, the grant
+                // sees it done and gives the permits back
+                unsafeRemove(waiter);
+                break;
+            case Waiter.stateGranted:
+                unsafeRelease(waiter.n);
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void unsafeRelease(long n) {
+        while (true) {
+            var s = ref.get();
+            var granted = new ArrayList<Waiter>();
+            var next = grant(s.permits + n, s.waiters, granted);
+            if (ref.compareAndSet(s, next)) {
+                notifyGranted(granted);
+                return;
+            }
+        }
+    }
+
+    private void unsafeRemove(Waiter waiter) {
+        while (true) {
+            var s = ref.get();
+            var builder = Vector.<Waiter>builder();
+            var found = false;
+            for (var w : s.waiters) {
+                if (w == waiter) {
+                    found = true;
+                } else {
+                    builder.append(w);
+                }
+            }
+            if (!found) {
+                return;
+            }
+            // the removed waiter might have been holding back the next ones
+            var granted = new ArrayList<Waiter>();
+            var next = grant(s.permits, builder.result(), granted);
+            if (ref.compareAndSet(s, next)) {
+                notifyGranted(granted);
+                return;
+            }
+        }
+    }
+
+    private static State grant(long permits, Vector<Waiter> waiters, ArrayList<Waiter> granted) {
+        while (!waiters.isEmpty() && waiters.head().n <= permits) {
+            var head = waiters.head();
+            permits -= head.n;
+            granted.add(head);
+            waiters = waiters.tail();
+        }
+        return new State(permits, waiters);
+    }
+
+    private void notifyGranted(ArrayList<Waiter> granted) {
+        for (var waiter : granted) {
+            if (waiterState.compareAndSet(waiter, Waiter.stateQueued, Waiter.stateGranted)) {
+                waiter.cb.accept(Either.right(Unit.unit()));
+            } else {
+                // canceled while being granted
+                unsafeRelease(waiter.n);
+            }
+        }
+    }
+
+    /**
+     * Immutable state, replaced with CAS. The waiters queue is
+     * only non-empty when its head asks for more than the permits left.
+     */
+    private static final class State {
+        private final long permits;
+        private final Vector<Waiter> waiters;
+
+        private State(long permits, Vector<Waiter> waiters) {
+            this.permits = permits;
+            this.waiters = waiters;
+        }
+    }
+
+    private static final class Waiter {
+        private static final int stateNew = 0;
+        private static final int stateQueued = 1;
+        private static final int stateGranted = 2;
+        private static final int stateDone = 3;
+
+        private final long n;
+        private Consumer<Either<Throwable, Unit>> cb; // published by the state CAS
+        volatile int state = stateNew;
+
+        private Waiter(long n) {
+            this.n = n;
+        }
+    }
+
+    private static final AtomicIntegerFieldUpdater<Waiter> waiterState =
+        AtomicIntegerFieldUpdater.newUpdater(Waiter.class, "state");
+}
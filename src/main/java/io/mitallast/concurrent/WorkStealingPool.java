@@ -0,0 +1,340 @@
+package io.mitallast.concurrent;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Work-stealing scheduler meant for running fibers.
+ * <p>
+ * There is one worker per core, each owning a bounded local run queue.
+ * Tasks submitted from a worker thread go to that worker's local queue,
+ * tasks submitted from the outside (or overflowing a full local queue)
+ * go to a global overflow queue. Idle workers first drain their own
+ * queue, then the overflow queue, then steal half of the tasks
+ * of a random victim, and only then park.
+ * <p>
+ * Blocking is supported through [[BlockContext]]: a worker entering
+ * `blockOn` hands its local queue over to a freshly started replacement
+ * thread, so that the pool keeps its parallelism while the blocked
+ * thread finishes the current task and then exits.
+ */
+public final class WorkStealingPool implements ExecutionContextExecutor {
+    /**
+     * How often a worker checks the overflow queue before its local one,
+     * so that external submissions cannot be starved by a busy fiber.
+     */
+    private static final int overflowCheckInterval = 61;
+
+    private final Worker[] workers;
+    private final ConcurrentLinkedQueue<Runnable> overflow = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger sleepers = new AtomicInteger(0);
+    private final WorkerThreadFactory factory;
+    private final Consumer<Throwable> reporter;
+    private volatile boolean shutdown = false;
+
+    WorkStealingPool(int parallelism, WorkerThreadFactory factory, Consumer<Throwable> reporter) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("parallelism must be positive");
+        }
+        this.factory = factory;
+        this.reporter = reporter;
+        this.workers = new Worker[parallelism];
+        for (int i = 0; i < parallelism; i++) {
+            workers[i] = new Worker(i);
+        }
+        for (var worker : workers) {
+            var thread = factory.newThread(this, worker);
+            worker.thread = thread;
+            thread.start();
+        }
+    }
+
+    public static WorkStealingPool apply(int parallelism, String prefix, Consumer<Throwable> reporter) {
+        var handler = new Thread.UncaughtExceptionHandler() {
+            @Override
+            public void uncaughtException(Thread t, Throwable e) {
+                reporter.accept(e);
+            }
+        };
+        var threadFactory = new DefaultThreadFactory(true, 256, prefix, handler);
+        return new WorkStealingPool(parallelism, threadFactory, reporter);
+    }
+
+    public int parallelism() {
+        return workers.length;
+    }
+
+    @Override
+    public void execute(Runnable runnable) {
+        if (runnable == null) {
+            throw new NullPointerException();
+        }
+        if (shutdown) {
+            throw new IllegalStateException("pool is shut down");
+        }
+        var worker = currentWorker();
+        if (worker == null || !worker.queue.offer(runnable)) {
+            overflow.offer(runnable);
+        }
+        if (sleepers.get() > 0) {
+            notifyParked();
+        }
+    }
+
+    @Override
+    public void reportFailure(Throwable cause) {
+        reporter.accept(cause);
+    }
+
+    /**
+     * Stops all workers once they finish their current task,
+     * pending tasks are discarded.
+     */
+    public void shutdown() {
+        shutdown = true;
+        for (var worker : workers) {
+            LockSupport.unpark(worker.thread);
+        }
+    }
+
+    /**
+     * Returns the pool owning the current thread, or `null`
+     * if the current thread is not an attached worker.
+     */
+    public static WorkStealingPool current() {
+        var thread = Thread.currentThread();
+        if (thread instanceof WorkerThread) {
+            var worker = (WorkerThread) thread;
+            if (worker.worker != null) {
+                return worker.pool;
+            }
+        }
+        return null;
+    }
+
+    private Worker currentWorker() {
+        var thread = Thread.currentThread();
+        if (thread instanceof WorkerThread) {
+            var worker = (WorkerThread) thread;
+            if (worker.pool == this) {
+                return worker.worker;
+            }
+        }
+        return null;
+    }
+
+    private void runWorker(WorkerThread thread) {
+        var worker = thread.worker;
+        int tick = 0;
+        while (!shutdown && thread.worker == worker) {
+            Runnable task;
+            if (++tick % overflowCheckInterval == 0) {
+                task = overflow.poll();
+                if (task == null) task = worker.queue.pollOwned();
+            } else {
+                task = worker.queue.pollOwned();
+                if (task == null) task = overflow.poll();
+            }
+            if (task == null) task = steal(worker);
+            if (task == null) {
+                park(worker);
+            } else {
+                try {
+                    task.run();
+                } catch (Throwable e) {
+                    reporter.accept(e);
+                }
+            }
+        }
+    }
+
+    private Runnable steal(Worker thief) {
+        var n = workers.length;
+        if (n == 1) return null;
+        var start = ThreadLocalRandom.current().nextInt(n);
+        for (int i = 0; i < n; i++) {
+            var victim = workers[(start + i) % n];
+            if (victim == thief) continue;
+            var task = victim.queue.poll();
+            if (task != null) {
+                // take up to a half of the remaining tasks along
+                var batch = victim.queue.size() / 2;
+                for (int j = 0; j < batch; j++) {
+                    var next = victim.queue.poll();
+                    if (next == null || !thief.queue.offer(next)) {
+                        if (next != null) overflow.offer(next);
+                        break;
+                    }
+                }
+                return task;
+            }
+        }
+        return null;
+    }
+
+    private boolean hasWork() {
+        if (!overflow.isEmpty()) return true;
+        for (var worker : workers) {
+            if (!worker.queue.isEmpty()) return true;
+        }
+        return false;
+    }
+
+    private void park(Worker worker) {
+        worker.parked.set(true);
+        sleepers.incrementAndGet();
+        // re-check after publishing the parked state, a concurrent
+        // `execute` either sees us parked or we see its task
+        if (hasWork() || shutdown) {
+            if (worker.parked.compareAndSet(true, false)) {
+                sleepers.decrementAndGet();
+            }
+            return;
+        }
+        while (worker.parked.get() && !shutdown) {
+            LockSupport.park(this);
+        }
+    }
+
+    private void notifyParked() {
+        var n = workers.length;
+        var start = ThreadLocalRandom.current().nextInt(n);
+        for (int i = 0; i < n; i++) {
+            var worker = workers[(start + i) % n];
+            if (worker.parked.get() && worker.parked.compareAndSet(true, false)) {
+                sleepers.decrementAndGet();
+                LockSupport.unpark(worker.thread);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Detaches the current worker thread from its worker and starts
+     * a replacement thread, then runs the blocking thunk.
+     * Must only be called from the worker thread itself.
+     */
+    <T> T managedBlock(WorkerThread thread, Task<T> thunk) {
+        var worker = thread.worker;
+        if (worker == null || shutdown) {
+            return thunk.runUnsafe();
+        }
+        thread.worker = null;
+        var replacement = factory.newThread(this, worker);
+        worker.thread = replacement;
+        replacement.start();
+        return thunk.runUnsafe();
+    }
+
+    interface WorkerThreadFactory {
+        WorkerThread newThread(WorkStealingPool pool, Worker worker);
+    }
+
+    static final class Worker {
+        final int index;
+        final LocalQueue queue = new LocalQueue();
+        final AtomicBoolean parked = new AtomicBoolean(false);
+        volatile Thread thread;
+
+        Worker(int index) {
+            this.index = index;
+        }
+    }
+
+    static abstract class WorkerThread extends Thread {
+        final WorkStealingPool pool;
+        Worker worker; // This is only ever written by this thread, or before it is started
+
+        WorkerThread(WorkStealingPool pool, Worker worker) {
+            this.pool = pool;
+            this.worker = worker;
+        }
+
+        final boolean isAttached() {
+            return worker != null;
+        }
+
+        @Override
+        public final void run() {
+            pool.runWorker(this);
+        }
+    }
+
+    /**
+     * Bounded single-producer, multi-consumer ring buffer.
+     * Only the owning worker offers, any worker may poll.
+     * <p>
+     * A consumer can't clear the slot it took, the producer may already
+     * be reusing it. The owner clears the slots behind the head instead,
+     * whenever it offers or polls, so the tasks taken are not retained.
+     */
+    static final class LocalQueue {
+        private static final int capacity = 256;
+        private static final int mask = capacity - 1;
+
+        private final AtomicReferenceArray<Runnable> buffer = new AtomicReferenceArray<>(capacity);
+        private final AtomicLong head = new AtomicLong(0);
+        private final AtomicLong tail = new AtomicLong(0);
+        // Only accessed by the owner, the slots before it are cleared
+        private long cleared = 0;
+
+        boolean offer(Runnable runnable) {
+            var t = tail.get();
+            if (t - head.get() >= capacity) {
+                return false;
+            }
+            clearTaken();
+            buffer.lazySet((int) (t & mask), runnable);
+            tail.set(t + 1);
+            return true;
+        }
+
+        Runnable poll() {
+            while (true) {
+                var h = head.get();
+                if (h >= tail.get()) {
+                    return null;
+                }
+                var runnable = buffer.get((int) (h & mask));
+                if (head.compareAndSet(h, h + 1)) {
+                    return runnable;
+                }
+            }
+        }
+
+        /**
+         * Like [[poll]], only called by the owner.
+         */
+        Runnable pollOwned() {
+            var runnable = poll();
+            clearTaken();
+            return runnable;
+        }
+
+        /**
+         * A slot behind the head is never read again by a successful
+         * poll, its consumer moved the head past it after reading it.
+         */
+        private void clearTaken() {
+            var h = head.get();
+            for (var i = cleared; i < h; i++) {
+                buffer.lazySet((int) (i & mask), null);
+            }
+            cleared = h;
+        }
+
+        int size() {
+            return (int) Math.max(0, tail.get() - head.get());
+        }
+
+        boolean isEmpty() {
+            return head.get() >= tail.get();
+        }
+    }
+}
@@ -197,24 +197,25 @@ public abstract class Chain<A> implements Higher<Chain, A> {
     }
 
     public Maybe<Tuple2<A, Chain<A>>> deleteFirst(Predicate<A> f) {
-        var rem = this;
-        var acc = Chain.<A>empty();
-        while (true) {
-            var u = rem.uncons();
-            if (u.isDefined()) {
-                var t = u.get();
-                var a = t.t1();
-                var tail = t.t2();
-                if (!f.test(a)) {
-                    rem = tail;
-                    acc = acc.append(a);
-                } else {
-                    return Maybe.some(Tuple.of(a, acc.append(tail)));
+        // the remaining elements are rebuilt as a flat chain, appending them
+        // one by one nests the chain deeper and slows down every next uncons
+        var iter = iterator();
+        var kept = new ArrayList<A>();
+        while (iter.hasNext()) {
+            var a = iter.next();
+            if (f.test(a)) {
+                var rest = List.<A>nil();
+                while (iter.hasNext()) {
+                    kept.add(iter.next());
                 }
-            } else {
-                return Maybe.none();
+                for (int i = kept.size() - 1; i >= 0; i--) {
+                    rest = rest.prepend(kept.get(i));
+                }
+                return Maybe.some(Tuple.of(a, fromSeq(rest)));
             }
+            kept.add(a);
         }
+        return Maybe.none();
     }
 
     public long length() {
@@ -1,15 +1,26 @@
 package io.mitallast.io;
 
+import io.mitallast.categories.Applicative;
+import io.mitallast.categories.Traverse;
 import io.mitallast.either.Either;
 import io.mitallast.higher.Higher;
 import io.mitallast.io.internals.IORunLoop;
 import io.mitallast.kernel.Unit;
 import io.mitallast.lambda.Function1;
+import io.mitallast.lambda.Function2;
+import io.mitallast.lambda.Function3;
+import io.mitallast.lambda.Function4;
+import io.mitallast.lambda.Function5;
+import io.mitallast.lambda.Function6;
+import io.mitallast.maybe.Maybe;
+import io.mitallast.product.Tuple;
 import io.mitallast.product.Tuple2;
 
 import java.time.Duration;
+import java.util.ArrayList;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 
 /**
@@ -238,6 +249,134 @@ public interface Concurrent<F extends Higher> extends Async<F> {
         ));
     }
 
+    /**
+     * Runs `fa` and `fb` concurrently and combines their results.
+     * The first error cancels the other task, canceling the result
+     * cancels both.
+     */
+    default <A, B, Z> Higher<F, Z> parMap2(Higher<F, A> fa, Higher<F, B> fb, Function2<A, B, Z> f) {
+        return flatMap(racePair(fa, fb), either -> either.fold(
+            tuple -> {
+                var a = tuple.t1();
+                var fiberB = tuple.t2();
+                return map(guarantee(fiberB.join(), fiberB.cancel()), b -> f.apply(a, b));
+            },
+            tuple -> {
+                var fiberA = tuple.t1();
+                var b = tuple.t2();
+                return map(guarantee(fiberA.join(), fiberA.cancel()), a -> f.apply(a, b));
+            }
+        ));
+    }
+
+    default <A, B, C, Z> Higher<F, Z> parMap3(Higher<F, A> fa,
+                                              Higher<F, B> fb,
+                                              Higher<F, C> fc,
+                                              Function3<A, B, C, Z> f) {
+        return parMap2(parMap2(fa, fb, Tuple::of), fc, (ab, c) -> f.apply(ab.t1(), ab.t2(), c));
+    }
+
+    default <A, B, C, D, Z> Higher<F, Z> parMap4(Higher<F, A> fa,
+                                                 Higher<F, B> fb,
+                                                 Higher<F, C> fc,
+                                                 Higher<F, D> fd,
+                                                 Function4<A, B, C, D, Z> f) {
+        return parMap2(parMap2(fa, fb, Tuple::of), parMap2(fc, fd, Tuple::of),
+            (ab, cd) -> f.apply(ab.t1(), ab.t2(), cd.t1(), cd.t2()));
+    }
+
+    default <A, B, C, D, E, Z> Higher<F, Z> parMap5(Higher<F, A> fa,
+                                                    Higher<F, B> fb,
+                                                    Higher<F, C> fc,
+                                                    Higher<F, D> fd,
+                                                    Higher<F, E> fe,
+                                                    Function5<A, B, C, D, E, Z> f) {
+        return parMap2(parMap2(fa, fb, Tuple::of), parMap3(fc, fd, fe, Tuple::of),
+            (ab, cde) -> f.apply(ab.t1(), ab.t2(), cde.t1(), cde.t2(), cde.t3()));
+    }
+
+    default <A, B, C, D, E, G, Z> Higher<F, Z> parMap6(Higher<F, A> fa,
+                                                       Higher<F, B> fb,
+                                                       Higher<F, C> fc,
+                                                       Higher<F, D> fd,
+                                                       Higher<F, E> fe,
+                                                       Higher<F, G> fg,
+                                                       Function6<A, B, C, D, E, G, Z> f) {
+        return parMap2(parMap3(fa, fb, fc, Tuple::of), parMap3(fd, fe, fg, Tuple::of),
+            (abc, def) -> f.apply(abc.t1(), abc.t2(), abc.t3(), def.t1(), def.t2(), def.t3()));
+    }
+
+    /**
+     * Applies `f` to every element of `ta` and runs the resulting
+     * tasks concurrently, collecting the results in the original order.
+     * <p>
+     * The tasks are combined with [[parMap2]], so the first error
+     * cancels the tasks still running.
+     */
+    default <T extends Higher, A, B> Higher<F, Higher<T, B>> parTraverse(Higher<T, A> ta,
+                                                                         Function1<A, Higher<F, B>> f,
+                                                                         Traverse<T> T) {
+        return T.traverse(ta, f, new ParApplicative<>(this));
+    }
+
+    /**
+     * Like [[parTraverse]], with at most `maxConcurrency` tasks
+     * running at the same time.
+     * <p>
+     * The tasks are run by `maxConcurrency` lanes, each one taking the
+     * next element once its task completes, and the results are put back
+     * in place with `map`, as in `IO.parTraverseN`. The lanes are combined
+     * with [[parMap2]], so the first error cancels the other lanes.
+     */
+    @SuppressWarnings("unchecked")
+    default <T extends Higher, A, B> Higher<F, Higher<T, B>> parTraverseN(Higher<T, A> ta,
+                                                                          int maxConcurrency,
+                                                                          Function1<A, Higher<F, B>> f,
+                                                                          Traverse<T> T) {
+        if (maxConcurrency <= 0) {
+            throw new IllegalArgumentException("maxConcurrency must be positive: " + maxConcurrency);
+        }
+        return suspend(() -> {
+            var inputs = T.foldLeft(ta, new ArrayList<A>(), (acc, a) -> {
+                acc.add(a);
+                return acc;
+            });
+            var results = new Object[inputs.size()];
+            var next = new AtomicInteger();
+            var lanes = unit();
+            for (int i = 0; i < Math.min(maxConcurrency, inputs.size()); i++) {
+                lanes = parMap2(lanes, lane(inputs, results, next, f), (u1, u2) -> Unit.unit());
+            }
+            return map(lanes, u -> {
+                var index = new int[]{0};
+                return T.map(ta, a -> (B) results[index[0]++]);
+            });
+        });
+    }
+
+    private <A, B> Higher<F, Unit> lane(ArrayList<A> inputs,
+                                        Object[] results,
+                                        AtomicInteger next,
+                                        Function1<A, Higher<F, B>> f) {
+        return suspend(() -> {
+            var i = next.getAndIncrement();
+            if (i >= inputs.size()) {
+                return unit();
+            }
+            return flatMap(f.apply(inputs.get(i)), b -> {
+                results[i] = b;
+                return lane(inputs, results, next, f);
+            });
+        });
+    }
+
+    /**
+     * Runs all the tasks concurrently, see [[parTraverse]].
+     */
+    default <T extends Higher, A> Higher<F, Higher<T, A>> parSequence(Higher<T, Higher<F, A>> tfa, Traverse<T> T) {
+        return parTraverse(tfa, fa -> fa, T);
+    }
+
     /**
      * Creates a cancelable `F[A]` instance that executes an
      * asynchronous process on evaluation.
@@ -391,3 +530,49 @@ public interface Concurrent<F extends Higher> extends Async<F> {
         });
     }
 }
+
+/**
+ * Applicative combining the tasks with [[Concurrent.parMap2]].
+ */
+final class ParApplicative<F extends Higher> implements Applicative<F> {
+    private final Concurrent<F> F;
+
+    ParApplicative(Concurrent<F> F) {
+        this.F = F;
+    }
+
+    @Override
+    public <A> Higher<F, A> pure(A a) {
+        return F.pure(a);
+    }
+
+    @Override
+    public Higher<F, Unit> unit() {
+        return F.unit();
+    }
+
+    @Override
+    public <A> Higher<F, Maybe<A>> none() {
+        return F.none();
+    }
+
+    @Override
+    public <A, B> Higher<F, B> map(Higher<F, A> fa, Function1<A, B> f) {
+        return F.map(fa, f);
+    }
+
+    @Override
+    public <A, B> Higher<F, B> ap(Higher<F, Function1<A, B>> ff, Higher<F, A> fa) {
+        return F.parMap2(ff, fa, Function1::apply);
+    }
+
+    @Override
+    public <A, B> Higher<F, Tuple2<A, B>> product(Higher<F, A> fa, Higher<F, B> fb) {
+        return F.parMap2(fa, fb, Tuple::of);
+    }
+
+    @Override
+    public <A, B, Z> Higher<F, Z> map2(Higher<F, A> fa, Higher<F, B> fb, Function2<A, B, Z> f) {
+        return F.parMap2(fa, fb, f);
+    }
+}
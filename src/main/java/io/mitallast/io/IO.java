@@ -1,7 +1,9 @@
 package io.mitallast.io;
 
 import io.mitallast.categories.StackSafeMonad;
+import io.mitallast.categories.Traverse;
 import io.mitallast.concurrent.ExecutionContext;
+import io.mitallast.concurrent.HashedWheelTimer;
 import io.mitallast.either.Either;
 import io.mitallast.higher.Higher;
 import io.mitallast.io.internals.*;
@@ -9,7 +11,10 @@ import io.mitallast.kernel.Eval;
 import io.mitallast.kernel.Unit;
 import io.mitallast.lambda.Function1;
 import io.mitallast.lambda.Function2;
+import io.mitallast.lambda.Function3;
 import io.mitallast.lambda.Function4;
+import io.mitallast.lambda.Function5;
+import io.mitallast.lambda.Function6;
 import io.mitallast.lambda.Supplier;
 import io.mitallast.maybe.Maybe;
 import io.mitallast.product.Tuple2;
@@ -24,7 +29,24 @@ import java.util.function.Consumer;
 import static io.mitallast.io.internals.IOPlatform.fusionMaxStackDepth;
 
 public abstract class IO<A> implements Higher<IO, A> {
-    private IO() {
+    // Node tags, the run loop dispatches on these with a `switch`
+    public static final int pureTag = 0;
+    public static final int delayTag = 1;
+    public static final int raiseErrorTag = 2;
+    public static final int suspendTag = 3;
+    public static final int bindTag = 4;
+    public static final int mapTag = 5;
+    public static final int asyncTag = 6;
+    public static final int contextSwitchTag = 7;
+
+    private final int tag;
+
+    private IO(int tag) {
+        this.tag = tag;
+    }
+
+    public final int tag() {
+        return tag;
     }
 
     public <B> IO<B> map(Function1<A, B> f) {
@@ -139,7 +161,17 @@ public abstract class IO<A> implements Higher<IO, A> {
      * *once*, at the very end of your program.
      */
     public final A unsafeRunSync() {
-        return unsafeRunTimed(Duration.ofMillis(Long.MAX_VALUE)).get();
+        // Fast path, no latch and no callback unless the program
+        // actually hits an async boundary
+        var s = IORunLoop.step(this);
+        switch (s.tag) {
+            case pureTag:
+                return ((Pure<A>) s).a();
+            case raiseErrorTag:
+                return IOPlatform.throwsUnchecked(((RaiseError<A>) s).e());
+            default:
+                return IOPlatform.unsafeResync(s);
+        }
     }
 
     /**
@@ -224,14 +256,15 @@ public abstract class IO<A> implements Higher<IO, A> {
      */
     public final Maybe<A> unsafeRunTimed(Duration limit) {
         var s = IORunLoop.step(this);
-        if (s instanceof Pure) {
-            return Maybe.apply(((Pure<A>) s).a());
-        } else if (s instanceof RaiseError) {
-            return IOPlatform.throwsUnchecked(((RaiseError<A>) s).e());
-        } else if (s instanceof Async) {
-            return IOPlatform.unsafeResync(this, limit);
-        } else {
-            throw new AssertionError("unreachable");
+        switch (s.tag) {
+            case pureTag:
+                return Maybe.apply(((Pure<A>) s).a());
+            case raiseErrorTag:
+                return IOPlatform.throwsUnchecked(((RaiseError<A>) s).e());
+            default:
+                // Resumes from the async boundary, the synchronous
+                // prefix of the program was already evaluated by `step`
+                return IOPlatform.unsafeResync(s, limit);
         }
     }
 
@@ -575,7 +608,7 @@ public abstract class IO<A> implements Higher<IO, A> {
     public static <A> IO<A> asyncF(Function1<Consumer<Either<Throwable, A>>, IO<Unit>> k) {
         return new Async<>((conn, cb) -> {
             var conn2 = IOConnection.apply();
-            var cb2 = Callback.asyncIdempotent(null, cb);
+            var cb2 = Callback.asyncIdempotent(conn, cb);
             conn.push(conn2.cancel());
             IO<Unit> fa;
             try {
@@ -591,6 +624,9 @@ public abstract class IO<A> implements Higher<IO, A> {
     }
 
     public static <A> IO<A> cancelable(Function1<Consumer<Either<Throwable, A>>, IO<Unit>> k) {
+        // the token is popped by the run loop when it resumes, so a
+        // result racing with a cancellation is either resumed with
+        // or reverted by the token, never dropped without it
         return new Async<>((conn, cb) -> {
             var cb2 = Callback.asyncIdempotent(null, cb);
             var ref = ForwardCancelable.apply();
@@ -601,7 +637,7 @@ public abstract class IO<A> implements Higher<IO, A> {
                 cb2.accept(Either.left(e));
                 ref.set(IO.unit());
             }
-        });
+        }, false, true);
     }
 
     public static <A> IO<A> raiseError(Throwable e) {
@@ -644,6 +680,20 @@ public abstract class IO<A> implements Higher<IO, A> {
         return (IO<Unit>) timer.sleep(duration);
     }
 
+    /**
+     * Introduces a fairness boundary, yielding control back to the
+     * scheduler so that other fibers can make progress.
+     * <p>
+     * When running on a [[io.mitallast.concurrent.WorkStealingPool]]
+     * (the default `ExecutionContext.global`) the rest of the program
+     * is re-submitted to the same pool, otherwise it behaves like
+     * [[cancelBoundary]]. Long running loops get this automatically every
+     * `cats.effect.autoYieldThreshold` run-loop iterations.
+     */
+    public static IO<Unit> cede() {
+        return IOShift.cede;
+    }
+
     public static IO<Unit> cancelBoundary() {
         return new Async<>((conn, cb) -> cb.accept(Either.right(Unit.unit())));
     }
@@ -689,10 +739,120 @@ public abstract class IO<A> implements Higher<IO, A> {
         return IORace.pair(cs, lh, rh);
     }
 
+    /**
+     * Applies `f` to every element of `ta` and runs the resulting
+     * tasks concurrently, at most `maxConcurrency` at a time,
+     * collecting the results in the original order.
+     * <p>
+     * The first error cancels the tasks still running and is
+     * signaled as the result. Canceling the returned task cancels
+     * all the tasks in flight.
+     *
+     * @param maxConcurrency is the maximum number of tasks running
+     *                       at the same time, must be positive
+     * @param T              is the traverse instance, which must visit
+     *                       the elements in the same order in `foldLeft`
+     *                       and `map`
+     * @param cs             is needed because the tasks are forked
+     */
+    public static <T extends Higher, A, B> IO<Higher<T, B>> parTraverseN(Higher<T, A> ta,
+                                                                         int maxConcurrency,
+                                                                         Function1<A, IO<B>> f,
+                                                                         Traverse<T> T,
+                                                                         ContextShift<IO> cs) {
+        return IOParallel.traverseN(ta, maxConcurrency, f, T, cs);
+    }
+
+    /**
+     * Unbounded version of [[parTraverseN]].
+     */
+    public static <T extends Higher, A, B> IO<Higher<T, B>> parTraverse(Higher<T, A> ta,
+                                                                        Function1<A, IO<B>> f,
+                                                                        Traverse<T> T,
+                                                                        ContextShift<IO> cs) {
+        return IOParallel.traverseN(ta, Integer.MAX_VALUE, f, T, cs);
+    }
+
+    /**
+     * Runs all the tasks concurrently, see [[parTraverse]].
+     */
+    public static <T extends Higher, A> IO<Higher<T, A>> parSequence(Higher<T, IO<A>> tio,
+                                                                     Traverse<T> T,
+                                                                     ContextShift<IO> cs) {
+        return IOParallel.traverseN(tio, Integer.MAX_VALUE, io -> io, T, cs);
+    }
+
+    /**
+     * Runs `fa` and `fb` concurrently and combines their results,
+     * the first error cancels the other task.
+     */
+    @SuppressWarnings("unchecked")
+    public static <A, B, Z> IO<Z> parMap2(IO<A> fa,
+                                          IO<B> fb,
+                                          Function2<A, B, Z> f,
+                                          ContextShift<IO> cs) {
+        return parMapN(cs, fa, fb).map(r -> f.apply((A) r[0], (B) r[1]));
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <A, B, C, Z> IO<Z> parMap3(IO<A> fa,
+                                             IO<B> fb,
+                                             IO<C> fc,
+                                             Function3<A, B, C, Z> f,
+                                             ContextShift<IO> cs) {
+        return parMapN(cs, fa, fb, fc).map(r -> f.apply((A) r[0], (B) r[1], (C) r[2]));
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <A, B, C, D, Z> IO<Z> parMap4(IO<A> fa,
+                                                IO<B> fb,
+                                                IO<C> fc,
+                                                IO<D> fd,
+                                                Function4<A, B, C, D, Z> f,
+                                                ContextShift<IO> cs) {
+        return parMapN(cs, fa, fb, fc, fd).map(r -> f.apply((A) r[0], (B) r[1], (C) r[2], (D) r[3]));
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <A, B, C, D, E, Z> IO<Z> parMap5(IO<A> fa,
+                                                   IO<B> fb,
+                                                   IO<C> fc,
+                                                   IO<D> fd,
+                                                   IO<E> fe,
+                                                   Function5<A, B, C, D, E, Z> f,
+                                                   ContextShift<IO> cs) {
+        return parMapN(cs, fa, fb, fc, fd, fe).map(r -> f.apply((A) r[0], (B) r[1], (C) r[2], (D) r[3], (E) r[4]));
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <A, B, C, D, E, G, Z> IO<Z> parMap6(IO<A> fa,
+                                                      IO<B> fb,
+                                                      IO<C> fc,
+                                                      IO<D> fd,
+                                                      IO<E> fe,
+                                                      IO<G> fg,
+                                                      Function6<A, B, C, D, E, G, Z> f,
+                                                      ContextShift<IO> cs) {
+        return parMapN(cs, fa, fb, fc, fd, fe, fg).map(r -> f.apply((A) r[0], (B) r[1], (C) r[2], (D) r[3], (E) r[4], (G) r[5]));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static IO<Object[]> parMapN(ContextShift<IO> cs, IO<?>... tasks) {
+        return IOParallel.apply(tasks, tasks.length, io -> (IO<Object>) io, cs);
+    }
+
     public static Effect<IO> effect() {
         return IOEffect.instance;
     }
 
+    /**
+     * Returns the [[ConcurrentEffect]] instance for [[IO]], which
+     * needs a [[ContextShift]] for forking in `start` and `racePair`.
+     */
+    public static ConcurrentEffect<IO> concurrentEffect(ContextShift<IO> cs) {
+        return new IOConcurrentEffect(cs);
+    }
+
     /**
      * Returns a [[Timer]] instance for [[IO]], built from a
      * Scala `ExecutionContext`.
@@ -723,6 +883,22 @@ public abstract class IO<A> implements Higher<IO, A> {
         return IOTimer.apply(ec, sc);
     }
 
+    /**
+     * Returns a [[Timer]] instance for [[IO]], built from a
+     * Scala `ExecutionContext` and a [[HashedWheelTimer]].
+     * <p>
+     * Scheduling and cancelling a sleep are O(1), which makes it
+     * a better fit than a `ScheduledExecutorService` for lots of
+     * concurrent timeouts, at the price of the wheel's tick resolution.
+     *
+     * @param ec    is the execution context used for actual execution
+     *              tasks (e.g. bind continuations)
+     * @param wheel is the timing wheel used for scheduling ticks with a delay
+     */
+    public static Timer<IO> timer(ExecutionContext ec, HashedWheelTimer wheel) {
+        return IOWheelTimer.apply(ec, wheel);
+    }
+
     public static final class Pure<A> extends IO<A> {
         private final static IO<Unit> unit = new Pure<>(Unit.unit());
         private final static IO none = new Pure<>(Maybe.none());
@@ -730,6 +906,7 @@ public abstract class IO<A> implements Higher<IO, A> {
         private final A a;
 
         public Pure(A a) {
+            super(pureTag);
             this.a = a;
         }
 
@@ -742,6 +919,7 @@ public abstract class IO<A> implements Higher<IO, A> {
         private final Supplier<A> thunk;
 
         public Delay(Supplier<A> thunk) {
+            super(delayTag);
             this.thunk = thunk;
         }
 
@@ -754,6 +932,7 @@ public abstract class IO<A> implements Higher<IO, A> {
         private final Throwable e;
 
         public RaiseError(Throwable e) {
+            super(raiseErrorTag);
             this.e = e;
         }
 
@@ -766,6 +945,7 @@ public abstract class IO<A> implements Higher<IO, A> {
         private final Supplier<IO<A>> thunk;
 
         public Suspend(Supplier<IO<A>> thunk) {
+            super(suspendTag);
             this.thunk = thunk;
         }
 
@@ -779,6 +959,7 @@ public abstract class IO<A> implements Higher<IO, A> {
         private final Function1<E, IO<A>> f;
 
         public Bind(IO<E> source, Function1<E, IO<A>> f) {
+            super(bindTag);
             this.source = source;
             this.f = f;
         }
@@ -798,6 +979,7 @@ public abstract class IO<A> implements Higher<IO, A> {
         private final int index;
 
         public Map(IO<E> source, Function1<E, A> f, int index) {
+            super(mapTag);
             this.source = source;
             this.f = f;
             this.index = index;
@@ -836,14 +1018,25 @@ public abstract class IO<A> implements Higher<IO, A> {
     public static final class Async<A> extends IO<A> {
         private final BiConsumer<IOConnection, Consumer<Either<Throwable, A>>> k;
         private final boolean trampolineAfter;
+        private final boolean popOnResume;
 
         public Async(BiConsumer<IOConnection, Consumer<Either<Throwable, A>>> k) {
             this(k, false);
         }
 
         public Async(BiConsumer<IOConnection, Consumer<Either<Throwable, A>>> k, boolean trampolineAfter) {
+            this(k, trampolineAfter, false);
+        }
+
+        /**
+         * @param popOnResume whether `k` pushes a cancelable reference
+         *                    the run loop has to pop when it resumes
+         */
+        public Async(BiConsumer<IOConnection, Consumer<Either<Throwable, A>>> k, boolean trampolineAfter, boolean popOnResume) {
+            super(asyncTag);
             this.k = k;
             this.trampolineAfter = trampolineAfter;
+            this.popOnResume = popOnResume;
         }
 
         public BiConsumer<IOConnection, Consumer<Either<Throwable, A>>> k() {
@@ -854,6 +1047,10 @@ public abstract class IO<A> implements Higher<IO, A> {
             return trampolineAfter;
         }
 
+        public boolean popOnResume() {
+            return popOnResume;
+        }
+
     }
 
     public static final class ContextSwitch<A> extends IO<A> {
@@ -862,6 +1059,7 @@ public abstract class IO<A> implements Higher<IO, A> {
         private final Function4<A, Throwable, IOConnection, IOConnection, IOConnection> restore;
 
         public ContextSwitch(IO<A> source, Function1<IOConnection, IOConnection> modify, Function4<A, Throwable, IOConnection, IOConnection, IOConnection> restore) {
+            super(contextSwitchTag);
             this.source = source;
             this.modify = modify;
             this.restore = restore;
@@ -1017,6 +1215,69 @@ public abstract class IO<A> implements Higher<IO, A> {
             return IO.racePair($(fa), $(fb), cs);
         }
 
+        @Override
+        public <A, B, Z> IO<Z> parMap2(Higher<IO, A> fa, Higher<IO, B> fb, Function2<A, B, Z> f) {
+            return IO.parMap2($(fa), $(fb), f, cs);
+        }
+
+        @Override
+        public <A, B, C, Z> IO<Z> parMap3(Higher<IO, A> fa,
+                                          Higher<IO, B> fb,
+                                          Higher<IO, C> fc,
+                                          Function3<A, B, C, Z> f) {
+            return IO.parMap3($(fa), $(fb), $(fc), f, cs);
+        }
+
+        @Override
+        public <A, B, C, D, Z> IO<Z> parMap4(Higher<IO, A> fa,
+                                             Higher<IO, B> fb,
+                                             Higher<IO, C> fc,
+                                             Higher<IO, D> fd,
+                                             Function4<A, B, C, D, Z> f) {
+            return IO.parMap4($(fa), $(fb), $(fc), $(fd), f, cs);
+        }
+
+        @Override
+        public <A, B, C, D, E, Z> IO<Z> parMap5(Higher<IO, A> fa,
+                                                Higher<IO, B> fb,
+                                                Higher<IO, C> fc,
+                                                Higher<IO, D> fd,
+                                                Higher<IO, E> fe,
+                                                Function5<A, B, C, D, E, Z> f) {
+            return IO.parMap5($(fa), $(fb), $(fc), $(fd), $(fe), f, cs);
+        }
+
+        @Override
+        public <A, B, C, D, E, G, Z> IO<Z> parMap6(Higher<IO, A> fa,
+                                                   Higher<IO, B> fb,
+                                                   Higher<IO, C> fc,
+                                                   Higher<IO, D> fd,
+                                                   Higher<IO, E> fe,
+                                                   Higher<IO, G> fg,
+                                                   Function6<A, B, C, D, E, G, Z> f) {
+            return IO.parMap6($(fa), $(fb), $(fc), $(fd), $(fe), $(fg), f, cs);
+        }
+
+        @Override
+        public <T extends Higher, A, B> IO<Higher<T, B>> parTraverse(Higher<T, A> ta,
+                                                                     Function1<A, Higher<IO, B>> f,
+                                                                     Traverse<T> T) {
+            return IO.parTraverse(ta, a -> $(f.apply(a)), T, cs);
+        }
+
+        @Override
+        public <T extends Higher, A, B> IO<Higher<T, B>> parTraverseN(Higher<T, A> ta,
+                                                                      int maxConcurrency,
+                                                                      Function1<A, Higher<IO, B>> f,
+                                                                      Traverse<T> T) {
+            return IO.parTraverseN(ta, maxConcurrency, a -> $(f.apply(a)), T, cs);
+        }
+
+        @Override
+        public <T extends Higher, A> IO<Higher<T, A>> parSequence(Higher<T, Higher<IO, A>> tfa, Traverse<T> T) {
+            return IO.parTraverse(tfa, this::$, T, cs);
+        }
+
         @Override
         public <A> IO<A> cancelable(Function1<Consumer<Either<Throwable, A>>, Higher<IO, Unit>> k) {
             return IO.cancelable(k.cast());
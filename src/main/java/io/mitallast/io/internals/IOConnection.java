@@ -4,7 +4,8 @@ import io.mitallast.io.IO;
 import io.mitallast.kernel.Unit;
 import io.mitallast.list.List;
 
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 
 /**
  * INTERNAL API — Represents a composite of functions
@@ -13,7 +14,8 @@ import java.util.concurrent.atomic.AtomicReference;
  * Implementation notes:
  * <p>
  * - `cancel()` is idempotent
- * - all methods are thread-safe / atomic
+ * - `cancel()` and `isCanceled()` are thread-safe, `push` and `pop`
+ *   are meant to be called by the run-loop owning the connection
  * <p>
  * Used in the implementation of `cats.effect.IO`. Inspired by the
  * implementation of `StackedCancelable` from the Monix library.
@@ -60,6 +62,15 @@ public abstract class IOConnection {
      */
     abstract public IO<Unit> pop();
 
+    /**
+     * Removes a cancelable reference from the stack in FIFO order,
+     * unless the connection is canceled.
+     * <p>
+     * Returns `false` if the connection was canceled, in which case
+     * the reference is left to be canceled with the rest of the stack.
+     */
+    abstract public boolean tryPop();
+
     /**
      * Tries to reset an `IOConnection`, from a cancelled state,
      * back to a pristine state, but only if possible.
@@ -115,47 +126,88 @@ public abstract class IOConnection {
             return IO.unit();
         }
 
+        @Override
+        public boolean tryPop() {
+            return true;
+        }
+
         @Override
         public boolean tryReactivate() {
             return true;
         }
     }
 
+    /**
+     * Connection backed by a mutable array stack.
+     * <p>
+     * `push` and `pop` are only ever called by the run-loop owning the
+     * connection, one at a time (the IO callback protocol guarantees
+     * a happens-before relationship between successive owners), so they
+     * mutate the stack in place without allocations or CAS, only
+     * publishing a `busy` flag. `cancel` can come from any thread:
+     * it flips the state with a CAS, then waits for an in-flight
+     * `push`/`pop` to finish before taking the tokens over.
+     */
     private static final class Impl extends IOConnection {
-        private final AtomicReference<List<IO<Unit>>> state = new AtomicReference<>(List.empty());
+        private static final int stateActive = 0;
+        private static final int stateCanceled = 1;
 
+        private static final AtomicIntegerFieldUpdater<Impl> stateUpdater =
+            AtomicIntegerFieldUpdater.newUpdater(Impl.class, "state");
+
+        private volatile int state = stateActive;
+        private volatile boolean busy = false;
+
+        // Only accessed by the owner, or by `cancel` once the owner is done
+        private IO<Unit>[] stack = null;
+        private int size = 0;
 
         @Override
         public IO<Unit> cancel() {
             return IO.suspend(() -> {
-                var list = state.getAndSet(null);
-                if (list == null || list.isEmpty()) {
+                if (!stateUpdater.compareAndSet(this, stateActive, stateCanceled)) {
                     return IO.unit();
-                } else {
-                    return CancelUtils.cancelAll(list);
                 }
+                // From now on the owner no longer touches the stack,
+                // but it might be in the middle of a push or pop
+                while (busy) {
+                    Thread.onSpinWait();
+                }
+                if (size == 0) {
+                    return IO.unit();
+                }
+                // LIFO order, the last pushed token is the first canceled
+                List<IO<Unit>> list = List.empty();
+                for (int i = 0; i < size; i++) {
+                    list = list.prepend(stack[i]);
+                }
+                stack = null;
+                size = 0;
+                return CancelUtils.cancelAll(list);
             });
         }
 
         @Override
         public boolean isCanceled() {
-            return state.get() == null;
+            return state == stateCanceled;
         }
 
         @Override
+        @SuppressWarnings("unchecked")
         public void push(IO<Unit> cancelable) {
-            while (true) {
-                var list = state.get();
-                if (list == null) {
-                    cancelable.unsafeRunAsyncAndForget();
-                    break;
-                } else {
-                    var update = list.prepend(cancelable);
-                    if (state.compareAndSet(list, update)) {
-                        break;
-                    }
-                }
+            busy = true;
+            if (state == stateCanceled) {
+                busy = false;
+                cancelable.unsafeRunAsyncAndForget();
+                return;
             }
+            if (stack == null) {
+                stack = (IO<Unit>[]) new IO[4];
+            } else if (size == stack.length) {
+                stack = Arrays.copyOf(stack, size << 1);
+            }
+            stack[size++] = cancelable;
+            busy = false;
         }
 
         @Override
@@ -165,21 +217,34 @@ public abstract class IOConnection {
 
         @Override
         public IO<Unit> pop() {
-            while (true) {
-                var list = state.get();
-                if (list == null || list.isEmpty()) {
-                    return IO.unit();
-                } else {
-                    if (state.compareAndSet(list, list.tail())) {
-                        return list.head();
-                    }
-                }
+            busy = true;
+            if (state == stateCanceled || size == 0) {
+                busy = false;
+                return IO.unit();
             }
+            var token = stack[--size];
+            stack[size] = null;
+            busy = false;
+            return token;
+        }
+
+        @Override
+        public boolean tryPop() {
+            busy = true;
+            if (state == stateCanceled) {
+                busy = false;
+                return false;
+            }
+            if (size > 0) {
+                stack[--size] = null;
+            }
+            busy = false;
+            return true;
         }
 
         @Override
         public boolean tryReactivate() {
-            return state.compareAndSet(null, List.empty());
+            return stateUpdater.compareAndSet(this, stateCanceled, stateActive);
         }
     }
 }
@@ -0,0 +1,163 @@
+package io.mitallast.io.internals;
+
+import io.mitallast.categories.Traverse;
+import io.mitallast.either.Either;
+import io.mitallast.higher.Higher;
+import io.mitallast.io.ContextShift;
+import io.mitallast.io.IO;
+import io.mitallast.kernel.Unit;
+import io.mitallast.lambda.Function1;
+
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+public interface IOParallel {
+    /**
+     * Implementation for `IO.parTraverseN`.
+     * <p>
+     * The elements are collected with `foldLeft` and the results are
+     * put back in place with `map`, so the [[Traverse]] instance
+     * must visit the elements in the same order in both.
+     */
+    @SuppressWarnings("unchecked")
+    static <T extends Higher, A, B> IO<Higher<T, B>> traverseN(Higher<T, A> ta,
+                                                               int maxConcurrency,
+                                                               Function1<A, IO<B>> f,
+                                                               Traverse<T> T,
+                                                               ContextShift<IO> cs) {
+        if (maxConcurrency <= 0) {
+            throw new IllegalArgumentException("maxConcurrency must be positive: " + maxConcurrency);
+        }
+        return IO.suspend(() -> {
+            var inputs = T.foldLeft(ta, new ArrayList<>(), (acc, a) -> {
+                acc.add(a);
+                return acc;
+            });
+            return apply(inputs.toArray(), maxConcurrency, f.castUnsafe(), cs).map(results -> {
+                var index = new int[]{0};
+                return T.map(ta, a -> (B) results[index[0]++]);
+            });
+        });
+    }
+
+    /**
+     * Runs `f` over all `inputs` with at most `maxConcurrency`
+     * tasks in flight, returning the results in input order.
+     * <p>
+     * Each lane is a cancelable connection reused for all the
+     * tasks it runs one after the other, so the parent connection
+     * holds a single token for the whole group. The first error
+     * cancels the other lanes.
+     */
+    static IO<Object[]> apply(Object[] inputs,
+                              int maxConcurrency,
+                              Function1<Object, IO<Object>> f,
+                              ContextShift<IO> cs) {
+        if (inputs.length == 0) {
+            return IO.pure(inputs);
+        }
+        return new IO.Async<>((conn, cb) ->
+            new ParallelState(inputs, Math.min(inputs.length, maxConcurrency), f, cs, conn, cb).start(),
+            true
+        );
+    }
+}
+
+final class ParallelState {
+    private final Object[] inputs;
+    private final Object[] results;
+    private final Function1<Object, IO<Object>> f;
+    private final ContextShift<IO> cs;
+    private final IOConnection conn;
+    private final Consumer<Either<Throwable, Object[]>> cb;
+    private final IOConnection[] lanes;
+    private final AtomicInteger next = new AtomicInteger(0);
+    private final AtomicInteger remaining;
+    private final AtomicBoolean active = new AtomicBoolean(true);
+
+    ParallelState(Object[] inputs,
+                  int parallelism,
+                  Function1<Object, IO<Object>> f,
+                  ContextShift<IO> cs,
+                  IOConnection conn,
+                  Consumer<Either<Throwable, Object[]>> cb) {
+        this.inputs = inputs;
+        this.results = new Object[inputs.length];
+        this.f = f;
+        this.cs = cs;
+        this.conn = conn;
+        this.cb = cb;
+        this.remaining = new AtomicInteger(inputs.length);
+        this.lanes = new IOConnection[parallelism];
+        for (int i = 0; i < parallelism; i++) {
+            lanes[i] = IOConnection.apply();
+        }
+    }
+
+    void start() {
+        // Registers the whole group for cancellation — gets popped
+        // right before the callback is invoked
+        conn.push(cancelLanes());
+        for (var lane : lanes) {
+            runNext(lane);
+        }
+    }
+
+    private IO<Unit> cancelLanes() {
+        @SuppressWarnings("unchecked")
+        IO<Unit>[] tokens = new IO[lanes.length];
+        for (int i = 0; i < lanes.length; i++) {
+            tokens[i] = lanes[i].cancel();
+        }
+        return CancelUtils.cancelAll(tokens);
+    }
+
+    private void runNext(IOConnection lane) {
+        if (!active.get() || lane.isCanceled()) {
+            return;
+        }
+        var i = next.getAndIncrement();
+        if (i >= inputs.length) {
+            return;
+        }
+        IO<Object> task;
+        try {
+            task = f.apply(inputs[i]);
+        } catch (Throwable e) {
+            task = IO.raiseError(e);
+        }
+        // The fork also keeps the stack flat when a lane
+        // goes through many tasks completing synchronously
+        IORunLoop.startCancelable(IOForkedStart.apply(task, cs), lane, e -> e.foreach(
+            this::onError,
+            value -> {
+                results[i] = value;
+                if (remaining.decrementAndGet() == 0) {
+                    onSuccess();
+                } else {
+                    runNext(lane);
+                }
+            }
+        ));
+    }
+
+    private void onSuccess() {
+        if (active.getAndSet(false)) {
+            conn.pop();
+            cb.accept(Either.right(results));
+        }
+    }
+
+    private void onError(Throwable err) {
+        if (active.getAndSet(false)) {
+            cancelLanes().unsafeRunAsync(r2 -> {
+                conn.pop();
+                cb.accept(Either.left(r2.fold(e2 -> IOPlatform.composeErrors(err, e2), u -> err)));
+            });
+        } else {
+            IOLogger.reportFailure(err);
+        }
+    }
+}
@@ -7,32 +7,20 @@ import io.mitallast.list.List;
 import io.mitallast.maybe.Maybe;
 
 import java.time.Duration;
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 import java.util.concurrent.locks.AbstractQueuedSynchronizer;
+import java.util.function.Consumer;
 
 import static io.mitallast.concurrent.ExecutionContext.blocking;
 
 public interface IOPlatform {
+    /**
+     * Blocks the current thread until the given `IO`, which is expected
+     * to have been already stepped until its first async boundary,
+     * completes or the limit is reached, in which case `None` is returned.
+     */
     static <A> Maybe<A> unsafeResync(IO<A> ioa, Duration limit) {
-        final var latch = new OneShotLatch();
-        final AtomicReference<Either<Throwable, A>> ref = new AtomicReference<>();
-
-        ioa.unsafeRunAsync(a -> {
-            // Reading from `ref` happens after the block on `latch` is
-            // over, there's a happens-before relationship, so no extra
-            // synchronization is needed for visibility
-            ref.set(a);
-            latch.releaseShared(1);
-        });
-
-        if (!limit.isZero()) {
-            blocking(() -> {
-                latch.acquireSharedInterruptibly(1);
-                return null;
-            });
-        }
-
-        var result = ref.get();
+        var result = awaitResult(ioa, limit);
         if (result == null) {
             return Maybe.none();
         } else if (result.isRight()) {
@@ -42,6 +30,25 @@ public interface IOPlatform {
         }
     }
 
+    /**
+     * Same as [[unsafeResync]] but without limit and without wrapping
+     * the result in `Maybe`.
+     */
+    static <A> A unsafeResync(IO<A> ioa) {
+        var result = awaitResult(ioa, null);
+        if (result.isRight()) {
+            return result.right().get();
+        } else {
+            return throwsUnchecked(result.left().get());
+        }
+    }
+
+    private static <A> Either<Throwable, A> awaitResult(IO<A> ioa, Duration limit) {
+        var cb = new ResyncCallback<A>();
+        ioa.unsafeRunAsync(cb);
+        return cb.await(limit);
+    }
+
     @SuppressWarnings("unchecked")
     static <R, T extends Throwable> R throwsUnchecked(Throwable toThrow) throws T {
         // Since the type is erased, this cast actually does nothing!!!
@@ -57,6 +64,19 @@ public interface IOPlatform {
             .map(i -> i - 1)
             .getOrElse(127);
 
+    /**
+     * Number of run-loop iterations after which a fiber running on
+     * a [[io.mitallast.concurrent.WorkStealingPool]] is automatically
+     * rescheduled, giving other fibers a chance to run.
+     * Set to zero to disable auto-yielding.
+     */
+    int autoYieldThreshold =
+        Maybe.apply(System.getProperty("cats.effect.autoYieldThreshold", ""))
+            .filter(s -> s != null && !s.isEmpty())
+            .flatMap(s -> Try.apply(() -> Integer.parseInt(s)).toOption())
+            .filter(i -> i >= 0)
+            .getOrElse(1024);
+
     /**
      * Composes multiple errors together, meant for those cases in which
      * error suppression, due to a second error being triggered, is not
@@ -82,6 +102,62 @@ public interface IOPlatform {
     }
 }
 
+/**
+ * Callback for [[IOPlatform.unsafeResync]], the latch is only created
+ * if the result is not already available once the caller is ready
+ * to block, which is not the case for async boundaries completing
+ * synchronously.
+ */
+final class ResyncCallback<A> implements Consumer<Either<Throwable, A>> {
+    private static final AtomicReferenceFieldUpdater<ResyncCallback, OneShotLatch> latchUpdater =
+        AtomicReferenceFieldUpdater.newUpdater(ResyncCallback.class, OneShotLatch.class, "latch");
+
+    // Marks a completed callback, never awaited on
+    private static final OneShotLatch completed = new OneShotLatch();
+
+    // Longest limit a timed wait can express
+    private static final Duration maxLimit = Duration.ofNanos(Long.MAX_VALUE);
+
+    private volatile Either<Throwable, A> result = null;
+    private volatile OneShotLatch latch = null;
+
+    @Override
+    public void accept(Either<Throwable, A> value) {
+        // Reading from `result` happens after the block on `latch` is
+        // over, there's a happens-before relationship, so no extra
+        // synchronization is needed for visibility
+        result = value;
+        var waiting = latchUpdater.getAndSet(this, completed);
+        if (waiting != null && waiting != completed) {
+            waiting.releaseShared(1);
+        }
+    }
+
+    /**
+     * Returns the result, or `null` if the limit was reached.
+     * A `null` limit, or one too long to be expressed in nanoseconds,
+     * means waiting without limit.
+     */
+    Either<Throwable, A> await(Duration limit) {
+        var r = result;
+        if (r != null || (limit != null && limit.isZero())) {
+            return r;
+        }
+        var waiting = new OneShotLatch();
+        if (latchUpdater.compareAndSet(this, null, waiting)) {
+            blocking(() -> {
+                if (limit == null || limit.compareTo(maxLimit) > 0) {
+                    waiting.acquireSharedInterruptibly(1);
+                } else {
+                    waiting.tryAcquireSharedNanos(1, limit.toNanos());
+                }
+                return null;
+            });
+        }
+        return result;
+    }
+}
+
 final class OneShotLatch extends AbstractQueuedSynchronizer {
     @Override
     protected int tryAcquireShared(int arg) {
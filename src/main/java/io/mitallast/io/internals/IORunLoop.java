@@ -1,12 +1,16 @@
 package io.mitallast.io.internals;
 
+import io.mitallast.concurrent.WorkStealingPool;
 import io.mitallast.either.Either;
 import io.mitallast.io.IO;
+import io.mitallast.kernel.Unit;
 import io.mitallast.lambda.Function1;
 import io.mitallast.lambda.Function4;
 
 import java.util.function.Consumer;
 
+import static io.mitallast.io.internals.IOPlatform.autoYieldThreshold;
+
 public interface IORunLoop {
     static <A> void start(IO<A> source, Consumer<Either<Throwable, A>> cb) {
         loop(source, IOConnection.uncancelable(), cb, null, null, null);
@@ -41,77 +45,103 @@ public interface IORunLoop {
         // for code reuse between Pure and Delay
         boolean hasUnboxed = false;
         Object unboxed = null;
+        // Counts iterations since the last async boundary, for auto-yielding
+        int iterations = 0;
 
         do {
-            if (currentIO instanceof IO.Bind) {
-                var fa = ((IO.Bind) currentIO).source();
-                var bindNext = ((IO.Bind) currentIO).f();
-                if (bFirst != null) {
-                    if (bRest == null) bRest = new ArrayStack<>();
-                    bRest.push(bFirst);
-                }
-                bFirst = bindNext;
-                currentIO = fa;
-            } else if (currentIO instanceof IO.Pure) {
-                unboxed = ((IO.Pure) currentIO).a();
-                hasUnboxed = true;
-            } else if (currentIO instanceof IO.Delay) {
-                try {
-                    unboxed = ((IO.Delay) currentIO).thunk().get();
-                    hasUnboxed = true;
-                    currentIO = null;
-                } catch (Exception e) {
-                    currentIO = IO.raiseError(e);
+            if (autoYieldThreshold > 0 && ++iterations >= autoYieldThreshold) {
+                iterations = 0;
+                var pool = WorkStealingPool.current();
+                if (pool != null) {
+                    // Reschedules the rest of the program, the collected
+                    // bind stack is kept by the `RestartCallback`
+                    currentIO = AutoYield.afterCede(currentIO);
                 }
-            } else if (currentIO instanceof IO.Suspend) {
-                try {
-                    currentIO = (IO) ((IO.Suspend) currentIO).thunk().get();
-                } catch (Exception e) {
-                    currentIO = IO.raiseError(e);
+            }
+
+            switch (currentIO.tag()) {
+                case IO.bindTag: {
+                    var fa = ((IO.Bind) currentIO).source();
+                    var bindNext = ((IO.Bind) currentIO).f();
+                    if (bFirst != null) {
+                        if (bRest == null) bRest = new ArrayStack<>();
+                        bRest.push(bFirst);
+                    }
+                    bFirst = bindNext;
+                    currentIO = fa;
+                    break;
                 }
-            } else if (currentIO instanceof IO.RaiseError) {
-                var bind = findErrorHandler(bFirst, bRest);
-                if (bind == null) {
-                    cb.accept(Either.left(((IO.RaiseError) currentIO).e()));
-                    return;
-                } else {
-                    IO fa;
+                case IO.pureTag:
+                    unboxed = ((IO.Pure) currentIO).a();
+                    hasUnboxed = true;
+                    break;
+                case IO.delayTag:
                     try {
-                        fa = bind.recover(((IO.RaiseError) currentIO).e());
+                        unboxed = ((IO.Delay) currentIO).thunk().get();
+                        hasUnboxed = true;
+                        currentIO = null;
                     } catch (Exception e) {
-                        fa = IO.raiseError(e);
+                        currentIO = IO.raiseError(e);
                     }
-                    bFirst = null;
-                    currentIO = fa;
+                    break;
+                case IO.suspendTag:
+                    try {
+                        currentIO = (IO) ((IO.Suspend) currentIO).thunk().get();
+                    } catch (Exception e) {
+                        currentIO = IO.raiseError(e);
+                    }
+                    break;
+                case IO.raiseErrorTag: {
+                    var bind = findErrorHandler(bFirst, bRest);
+                    if (bind == null) {
+                        cb.accept(Either.left(((IO.RaiseError) currentIO).e()));
+                        return;
+                    } else {
+                        IO fa;
+                        try {
+                            fa = bind.recover(((IO.RaiseError) currentIO).e());
+                        } catch (Exception e) {
+                            fa = IO.raiseError(e);
+                        }
+                        bFirst = null;
+                        currentIO = fa;
+                    }
+                    break;
                 }
-            } else if (currentIO instanceof IO.Map) {
-                var fa = ((IO.Map) currentIO).source();
-                var bindNext = (IO.Map) currentIO;
-                if (bFirst != null) {
-                    if (bRest == null) bRest = new ArrayStack<>();
-                    bRest.push(bFirst);
+                case IO.mapTag: {
+                    var fa = ((IO.Map) currentIO).source();
+                    var bindNext = (IO.Map) currentIO;
+                    if (bFirst != null) {
+                        if (bRest == null) bRest = new ArrayStack<>();
+                        bRest.push(bFirst);
+                    }
+                    bFirst = bindNext;
+                    currentIO = fa;
+                    break;
                 }
-                bFirst = bindNext;
-                currentIO = fa;
-            } else if (currentIO instanceof IO.Async) {
-                if (conn == null) conn = IOConnection.apply();
-                if (rcb == null) rcb = new RestartCallback<>(conn, cb);
-                rcb.start((IO.Async) currentIO, bFirst, bRest);
-                return;
-            } else if (currentIO instanceof IO.ContextSwitch) {
-                var next = ((IO.ContextSwitch) currentIO).source();
-                Function1<IOConnection, IOConnection> modify = ((IO.ContextSwitch) currentIO).modify();
-                var restore = ((IO.ContextSwitch) currentIO).restore();
-
-                IOConnection old = (conn != null) ? conn : IOConnection.apply();
-                conn = modify.apply(old);
-                currentIO = next;
-                if (conn != old) {
-                    if (rcb != null) rcb.contextSwitch(conn);
-                    if (restore != null)
-                        currentIO = new IO.Bind(next, new RestoreContext(old, restore));
+                case IO.asyncTag:
+                    if (conn == null) conn = IOConnection.apply();
+                    if (rcb == null) rcb = new RestartCallback<>(conn, cb);
+                    rcb.start((IO.Async) currentIO, bFirst, bRest);
+                    return;
+                case IO.contextSwitchTag: {
+                    var next = ((IO.ContextSwitch) currentIO).source();
+                    Function1<IOConnection, IOConnection> modify = ((IO.ContextSwitch) currentIO).modify();
+                    var restore = ((IO.ContextSwitch) currentIO).restore();
+
+                    IOConnection old = (conn != null) ? conn : IOConnection.apply();
+                    conn = modify.apply(old);
+                    currentIO = next;
+                    if (conn != old) {
+                        if (rcb != null) rcb.contextSwitch(conn);
+                        if (restore != null)
+                            currentIO = new IO.Bind(next, new RestoreContext(old, restore));
+                    }
+                    break;
                 }
-            } else throw new IllegalArgumentException("");
+                default:
+                    throw new IllegalArgumentException("unknown tag: " + currentIO.tag());
+            }
 
             if (hasUnboxed) {
                 var bind = popNextBind(bFirst, bRest);
@@ -144,55 +174,64 @@ public interface IORunLoop {
         Object unboxed = null;
 
         do {
-            if (currentIO instanceof IO.Bind) {
-                if (bFirst != null) {
-                    if (bRest == null) bRest = new ArrayStack<>();
-                    bRest.push(bFirst);
-                }
-                bFirst = ((IO.Bind) currentIO).f();
-                currentIO = ((IO.Bind) currentIO).source();
-            } else if (currentIO instanceof IO.Pure) {
-                unboxed = ((IO.Pure) currentIO).a();
-                hasUnboxed = true;
-            } else if (currentIO instanceof IO.Delay) {
-                try {
-                    unboxed = ((IO.Delay) currentIO).thunk().get();
+            switch (currentIO.tag()) {
+                case IO.bindTag:
+                    if (bFirst != null) {
+                        if (bRest == null) bRest = new ArrayStack<>();
+                        bRest.push(bFirst);
+                    }
+                    bFirst = ((IO.Bind) currentIO).f();
+                    currentIO = ((IO.Bind) currentIO).source();
+                    break;
+                case IO.pureTag:
+                    unboxed = ((IO.Pure) currentIO).a();
                     hasUnboxed = true;
-                    currentIO = null;
-                } catch (Exception e) {
-                    currentIO = IO.raiseError(e);
-                }
-            } else if (currentIO instanceof IO.Suspend) {
-                try {
-                    currentIO = (IO) ((IO.Suspend) currentIO).thunk().get();
-                } catch (Exception e) {
-                    currentIO = IO.raiseError(e);
-                }
-            } else if (currentIO instanceof IO.RaiseError) {
-                var bind = findErrorHandler(bFirst, bRest);
-                if (bind == null) {
-                    return currentIO;
-                } else {
-                    IO fa;
+                    break;
+                case IO.delayTag:
                     try {
-                        fa = bind.recover(((IO.RaiseError) currentIO).e());
+                        unboxed = ((IO.Delay) currentIO).thunk().get();
+                        hasUnboxed = true;
+                        currentIO = null;
                     } catch (Exception e) {
-                        fa = IO.raiseError(e);
+                        currentIO = IO.raiseError(e);
                     }
-                    bFirst = null;
-                    currentIO = fa;
+                    break;
+                case IO.suspendTag:
+                    try {
+                        currentIO = (IO) ((IO.Suspend) currentIO).thunk().get();
+                    } catch (Exception e) {
+                        currentIO = IO.raiseError(e);
+                    }
+                    break;
+                case IO.raiseErrorTag: {
+                    var bind = findErrorHandler(bFirst, bRest);
+                    if (bind == null) {
+                        return currentIO;
+                    } else {
+                        IO fa;
+                        try {
+                            fa = bind.recover(((IO.RaiseError) currentIO).e());
+                        } catch (Exception e) {
+                            fa = IO.raiseError(e);
+                        }
+                        bFirst = null;
+                        currentIO = fa;
+                    }
+                    break;
                 }
-            } else if (currentIO instanceof IO.Map) {
-                var fa = ((IO.Map) currentIO).source();
-                var bindNext = (IO.Map) currentIO;
-                if (bFirst != null) {
-                    if (bRest == null) bRest = new ArrayStack<>();
-                    bRest.push(bFirst);
+                case IO.mapTag: {
+                    var fa = ((IO.Map) currentIO).source();
+                    var bindNext = (IO.Map) currentIO;
+                    if (bFirst != null) {
+                        if (bRest == null) bRest = new ArrayStack<>();
+                        bRest.push(bFirst);
+                    }
+                    bFirst = bindNext;
+                    currentIO = fa;
+                    break;
                 }
-                bFirst = bindNext;
-                currentIO = fa;
-            } else {
-                return suspendInAsync(currentIO, bFirst, bRest);
+                default:
+                    return suspendInAsync(currentIO, bFirst, bRest);
             }
 
             if (hasUnboxed) {
@@ -285,6 +324,7 @@ final class RestartCallback<A> implements Consumer<Either<Throwable, A>>, Runnab
     private IOConnection conn;
     private boolean canCall = false;
     private boolean trampolineAfter = false;
+    private boolean popOnResume = false;
     private Function1<Object, IO<Object>> bFirst = null;
     private ArrayStack<Function1<Object, IO<Object>>> bRest = null;
 
@@ -307,14 +347,17 @@ final class RestartCallback<A> implements Consumer<Either<Throwable, A>>, Runnab
         this.bFirst = bFirst;
         this.bRest = bRest;
         this.trampolineAfter = task.trampolineAfter();
+        this.popOnResume = task.popOnResume();
         // Go, go, go
         task.k().accept(conn, this);
     }
 
     private void signal(Either<Throwable, A> either) {
         // Auto-cancelable logic: in case the connection was cancelled,
-        // we interrupt the bind continuation
-        if (!conn.isCanceled()) {
+        // we interrupt the bind continuation. Popping the token of the
+        // task is atomic with that check, a cancellation either comes
+        // first and runs the token, or finds it popped.
+        if (popOnResume ? conn.tryPop() : !conn.isCanceled()) {
             either.foreach(
                 err -> IORunLoop.loop(IO.raiseError(err), conn, cb, this, bFirst, bRest),
                 success -> IORunLoop.loop(IO.pure(success), conn, cb, this, bFirst, bRest)
@@ -345,6 +388,27 @@ final class RestartCallback<A> implements Consumer<Either<Throwable, A>>, Runnab
     }
 }
 
+final class AutoYield<A> implements Function1<Unit, IO<A>> {
+    private final IO<A> next;
+
+    private AutoYield(IO<A> next) {
+        this.next = next;
+    }
+
+    static IO<?> afterCede(IO<?> next) {
+        return bind(next);
+    }
+
+    private static <A> IO<A> bind(IO<A> next) {
+        return new IO.Bind<>(IOShift.cede, new AutoYield<>(next));
+    }
+
+    @Override
+    public IO<A> apply(Unit unit) {
+        return next;
+    }
+}
+
 final class RestoreContext<A> extends IOFrame<A, IO<A>> {
     private final IOConnection old;
     private final Function4<A, Throwable, IOConnection, IOConnection, IOConnection> restore;
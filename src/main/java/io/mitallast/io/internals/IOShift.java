@@ -1,6 +1,7 @@
 package io.mitallast.io.internals;
 
 import io.mitallast.concurrent.ExecutionContext;
+import io.mitallast.concurrent.WorkStealingPool;
 import io.mitallast.either.Either;
 import io.mitallast.io.IO;
 import io.mitallast.kernel.Unit;
@@ -17,6 +18,20 @@ public interface IOShift {
         });
     }
 
+    /**
+     * Yields the current thread back to the [[WorkStealingPool]] running it,
+     * so that other fibers get a chance to execute. When not running
+     * on such a pool it just acts as a cancellation boundary.
+     */
+    IO<Unit> cede = new IO.Async<>((conn, cb) -> {
+        var pool = WorkStealingPool.current();
+        if (pool != null) {
+            pool.execute(new Tick(cb));
+        } else {
+            cb.accept(Either.right(Unit.unit()));
+        }
+    }, true);
+
     static <A> IO<A> shiftOn(ExecutionContext cs, ExecutionContext targetEc, IO<A> io) {
         return IOBracket.apply(apply(cs), u -> io, (u, e) -> apply(targetEc));
     }
@@ -64,12 +64,12 @@ public final class IOTimer implements Timer<IO> {
             return th;
         });
 
-    private final static class ShiftTick implements Runnable {
+    final static class ShiftTick implements Runnable {
         private final IOConnection conn;
         private final Consumer<Either<Throwable, Unit>> cb;
         private final ExecutionContext ec;
 
-        private ShiftTick(IOConnection conn, Consumer<Either<Throwable, Unit>> cb, ExecutionContext ec) {
+        ShiftTick(IOConnection conn, Consumer<Either<Throwable, Unit>> cb, ExecutionContext ec) {
             this.conn = conn;
             this.cb = cb;
             this.ec = ec;
@@ -0,0 +1,62 @@
+package io.mitallast.io.internals;
+
+import io.mitallast.concurrent.ExecutionContext;
+import io.mitallast.concurrent.HashedWheelTimer;
+import io.mitallast.io.Clock;
+import io.mitallast.io.IO;
+import io.mitallast.io.Timer;
+import io.mitallast.kernel.Unit;
+
+import java.time.Duration;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * Internal API — implementation of a `Timer[IO]` scheduling its ticks
+ * on a [[HashedWheelTimer]], for programs with lots of concurrent,
+ * mostly cancelled sleeps such as timeouts.
+ * <p>
+ * As with [[IOTimer]], the bind continuations are executed on
+ * the given `ExecutionContext`, never on the wheel thread.
+ */
+public final class IOWheelTimer implements Timer<IO> {
+    private final ExecutionContext ec;
+    private final HashedWheelTimer wheel;
+
+    private IOWheelTimer(ExecutionContext ec, HashedWheelTimer wheel) {
+        this.ec = ec;
+        this.wheel = wheel;
+    }
+
+    @Override
+    public Clock<IO> clock() {
+        return Clock.create(IO.effect());
+    }
+
+    @Override
+    public IO<Unit> sleep(Duration duration) {
+        return new IO.Async<>((conn, cb) -> {
+            // Doing what IO.cancelable does
+            var ref = ForwardCancelable.apply();
+            conn.push(ref.cancel());
+            var timeout = wheel.schedule(new IOTimer.ShiftTick(conn, cb, ec), saturatedNanos(duration), NANOSECONDS);
+            ref.set(IO.delay(() -> {
+                timeout.cancel();
+                return Unit.unit();
+            }));
+        });
+    }
+
+    // Duration.toNanos throws past 292 years, such a sleep never ends anyway
+    private static long saturatedNanos(Duration duration) {
+        try {
+            return duration.toNanos();
+        } catch (ArithmeticException e) {
+            return duration.isNegative() ? 0 : Long.MAX_VALUE;
+        }
+    }
+
+    public static Timer<IO> apply(ExecutionContext ec, HashedWheelTimer wheel) {
+        return new IOWheelTimer(ec, wheel);
+    }
+}
@@ -39,11 +39,15 @@ class Trampoline {
     }
 
     private void immediateLoop(Runnable task) {
-        try {
-            task.run();
-        } catch (Exception e) {
-            forkTheRest();
-            underlying.reportFailure(e);
+        var next = task;
+        while (next != null) {
+            try {
+                next.run();
+            } catch (Exception e) {
+                forkTheRest();
+                underlying.reportFailure(e);
+            }
+            next = immediateQueue.pop();
         }
     }
 
@@ -1,6 +1,9 @@
 package io.mitallast.list;
 
+import io.mitallast.categories.Applicative;
+import io.mitallast.categories.Traverse;
 import io.mitallast.higher.Higher;
+import io.mitallast.kernel.Eval;
 import io.mitallast.lambda.Function1;
 import io.mitallast.lambda.Function2;
 
@@ -283,4 +286,44 @@ public abstract class List<A> implements Iterable<A>, Higher<List, A> {
         }
         return list;
     }
+
+    public static ListInstances instances() {
+        return ListInstances.instance;
+    }
+
+    public static class ListInstances implements Traverse<List> {
+        private final static ListInstances instance = new ListInstances();
+
+        @Override
+        public <G extends Higher, A, B> Higher<G, Higher<List, B>> traverse(
+            final Higher<List, A> fa,
+            final Function1<A, Higher<G, B>> f,
+            final Applicative<G> G
+        ) {
+            // going from the last element, so that the effects
+            // are still combined in order from the head
+            return ((List<A>) fa).reverse().foldLeft(
+                G.pure(List.nil()),
+                (glb, a) -> G.map2(f.apply(a), glb, (b, lb) -> ((List<B>) lb).prepend(b))
+            );
+        }
+
+        @Override
+        public <A, B> B foldLeft(final Higher<List, A> fa, final B b, final Function2<B, A, B> f) {
+            return ((List<A>) fa).foldLeft(b, f);
+        }
+
+        @Override
+        public <A, B> Eval<B> foldRight(final Higher<List, A> fa, final Eval<B> lb, final Function2<A, Eval<B>, Eval<B>> f) {
+            return Eval.defer(() -> ((List<A>) fa).reverse().foldLeft(lb, (lbe, a) ->
+                Eval.defer(() -> f.apply(a, lbe))
+            ));
+        }
+
+        @Override
+        public <A, B> Higher<List, B> map(final Higher<List, A> fa, final Function1<A, B> fn) {
+            // `List.map` builds the result in reverse order
+            return ((List<A>) fa).foldLeft(List.<B>nil(), (lb, a) -> lb.prepend(fn.apply(a))).reverse();
+        }
+    }
 }
@@ -1,9 +1,11 @@
 package io.mitallast.stream;
 
 import io.mitallast.arrow.FunctionK;
+import io.mitallast.either.Either;
 import io.mitallast.higher.Higher;
 import io.mitallast.io.Concurrent;
 import io.mitallast.io.ExitCase;
+import io.mitallast.io.IO;
 import io.mitallast.io.Sync;
 import io.mitallast.io.internals.IOPlatform;
 import io.mitallast.kernel.Unit;
@@ -15,6 +17,8 @@ import io.mitallast.product.Tuple;
 import io.mitallast.product.Tuple2;
 import io.mitallast.product.Tuple3;
 
+import java.util.ArrayDeque;
+
 interface Algebra<F extends Higher, O, R> extends Higher<Algebra<F, O, ?>, R> {
 
     final class Output<F extends Higher, O> implements Algebra<F, O, Unit> {
@@ -394,7 +398,9 @@ interface Algebra<F extends Higher, O, R> extends Higher<Algebra<F, O, ?>, R> {
                                         // scope back to the go as that is the scope that is expected to be here.
 
                                         var nextScope = u.scope.fold(() -> outScope, t -> scope);
-                                        return interruptGuard(
+                                        // the scope of a leg is looked up by the next step into it
+                                        var materialized = u.scope.isEmpty() ? F.unit() : outScope.materializeStepLeg();
+                                        return F.flatMap(materialized, m -> interruptGuard(
                                             nextScope,
                                             () -> compileLoopGo(
                                                 nextScope,
@@ -403,7 +409,7 @@ interface Algebra<F extends Higher, O, R> extends Higher<Algebra<F, O, ?>, R> {
                                             ),
                                             viewNext,
                                             F
-                                        );
+                                        ));
                                     } else if (rr instanceof RR.Interrupted) {
                                         var interrupted = (RR.Interrupted<F, X>) rr;
                                         var scopeId = interrupted.scopeId;
@@ -514,6 +520,323 @@ interface Algebra<F extends Higher, O, R> extends Higher<Algebra<F, O, ?>, R> {
         } else throw new IllegalArgumentException();
     }
 
+    /**
+     * Same as [[compile]] specialized to `IO`.
+     * <p>
+     * The stream is interpreted by a [[IOCompileLoop]], the outputs, nested
+     * steps and scope lookups are evaluated imperatively and the loop only
+     * suspends in `IO` for the actual effects.
+     */
+    static <O, B> IO<B> compileIO(
+        FreeC<Algebra<IO, O, ?>, Unit> stream,
+        CompileScope<IO> scope,
+        B init,
+        Function2<B, Chunk<O>, B> g
+    ) {
+        return IO.suspend(() -> new IOCompileLoop<>(scope, stream, init, g).run());
+    }
+
+    /**
+     * Interpreter of [[compileIO]].
+     * <p>
+     * Where [[compileLoopGo]] maps over the effect of a nested [[Step]]
+     * and rebuilds the continuation for every output, this loop keeps the
+     * nested steps on an explicit stack of frames and the outputs of the
+     * top level are folded in place. A frame is only resumed when its
+     * nested stream yields a chunk, terminates or is interrupted, exactly
+     * as [[compileLoopGo]] does with the `RR` results.
+     * <p>
+     * [[Eval]], [[Acquire]], [[OpenScope]], [[CloseScope]], the interruption
+     * checks of interruptible scopes and the lookup of a step scope not
+     * among the ancestors are the only steps evaluated by `IO`, the loop
+     * continues in the callback. The state is only accessed by the running
+     * `IO`, one step at a time.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    final class IOCompileLoop<O, B> {
+        private final Function2<B, Chunk<O>, B> g;
+        private final ArrayDeque<Frame> frames = new ArrayDeque<>();
+        private CompileScope<IO> scope;
+        private FreeC<Algebra<IO, Object, ?>, Unit> stream;
+        private B acc;
+
+        private IOCompileLoop(CompileScope<IO> scope, FreeC<Algebra<IO, O, ?>, Unit> stream, B init, Function2<B, Chunk<O>, B> g) {
+            this.scope = scope;
+            this.stream = (FreeC<Algebra<IO, Object, ?>, Unit>) (FreeC) stream;
+            this.acc = init;
+            this.g = g;
+        }
+
+        /**
+         * Runs the loop until the stream terminates or an effect must be
+         * evaluated, in the latter case returns the `IO` evaluating it
+         * and resuming the loop.
+         */
+        private IO<B> run() {
+            while (true) {
+                var next = step();
+                if (next != null) {
+                    return next;
+                }
+            }
+        }
+
+        /**
+         * Evaluates the next step of the stream, returns `null` if
+         * the loop continues or the `IO` to suspend in.
+         */
+        private IO<B> step() {
+            final FreeC.ViewL<Algebra<IO, Object, ?>, Unit> viewL = stream.viewL();
+            if (viewL instanceof FreeC.Result.Pure) {
+                return done();
+            } else if (viewL instanceof FreeC.Result.Fail) {
+                return fail(((FreeC.Result.Fail) viewL).error);
+            } else if (viewL instanceof FreeC.Result.Interrupted) {
+                var interrupted = (FreeC.Result.Interrupted) viewL;
+                if (interrupted.context instanceof Token) {
+                    return interrupted((Token) interrupted.context, interrupted.deferredError);
+                } else throw new IllegalStateException("Unexpected interruption context");
+            } else if (viewL instanceof FreeC.ViewL.View) {
+                var view = (FreeC.ViewL.View<Algebra<IO, Object, ?>, ?, Unit>) viewL;
+                final Function1<FreeC.Result<?>, FreeC<Algebra<IO, Object, ?>, Unit>> viewNext =
+                    view.next.<FreeC.Result<?>, FreeC<Algebra<IO, Object, ?>, Unit>>castUnsafe();
+                var alg = (Algebra<IO, Object, ?>) view.step;
+                if (alg instanceof Output) {
+                    var values = ((Output<IO, Object>) alg).values;
+                    return guard(scope, viewNext, () -> {
+                        var tail = viewNext.apply(FreeC.Result.unit);
+                        if (frames.isEmpty()) {
+                            try {
+                                acc = g.apply(acc, (Chunk<O>) values);
+                                stream = tail;
+                            } catch (Exception err) {
+                                stream = tail.asHandler(err);
+                            }
+                            return null;
+                        } else {
+                            return out(values, scope, tail);
+                        }
+                    });
+                } else if (alg instanceof Step) {
+                    var u = (Step<IO, Object, ?>) alg;
+                    if (u.scope.isEmpty()) {
+                        return enter(u, viewNext, scope);
+                    }
+                    var scopeId = u.scope.get();
+                    if (scope.id == scopeId) {
+                        return enter(u, viewNext, scope);
+                    }
+                    return resume(scope.findStepScope(scopeId), opt -> opt.fold(
+                        () -> fail(new IllegalStateException("Fail to find scope for next step")),
+                        stepScope -> enter(u, viewNext, stepScope)
+                    ));
+                } else if (alg instanceof Eval) {
+                    var eval = (Eval<IO, Object, Object>) alg;
+                    if (scope.isInterruptible()) {
+                        return resume(scope.interruptibleEval(eval.value), ei -> {
+                            stream = viewNext.apply(ei.<FreeC.Result<?>>fold(
+                                either -> either.fold(
+                                    err -> FreeC.Result.raiseError(err),
+                                    token -> FreeC.Result.interrupted(token, Maybe.none())
+                                ),
+                                FreeC.Result::pure
+                            ));
+                            return null;
+                        });
+                    } else {
+                        return resumeAttempt((IO<Object>) eval.value, e -> {
+                            stream = viewNext.apply(FreeC.Result.fromEither(e));
+                            return null;
+                        });
+                    }
+                } else if (alg instanceof Acquire) {
+                    var acquire = (Acquire<IO, Object, Object>) alg;
+                    return guard(scope, viewNext, () -> resume(
+                        scope.acquireResource(acquire.resource, acquire.release),
+                        r -> {
+                            stream = viewNext.apply(FreeC.Result.fromEither(r.map(t -> (Object) t)));
+                            return null;
+                        }
+                    ));
+                } else if (alg instanceof GetScope) {
+                    stream = viewNext.apply(FreeC.Result.pure(scope));
+                    return null;
+                } else if (alg instanceof OpenScope) {
+                    var open = (OpenScope<IO, Object>) alg;
+                    return guard(scope, viewNext, () -> resume(
+                        scope.open(open.interruptible),
+                        e -> {
+                            if (e.isLeft()) {
+                                stream = viewNext.apply(FreeC.Result.raiseError(e.left().get()));
+                            } else {
+                                var child = e.right().get();
+                                scope = child;
+                                stream = viewNext.apply(FreeC.Result.pure(child.id));
+                            }
+                            return null;
+                        }
+                    ));
+                } else if (alg instanceof CloseScope) {
+                    var close = (CloseScope<IO, Object>) alg;
+                    var toClose = scope.findSelfOrAncestor(close.scopeId);
+                    if (toClose.isDefined()) {
+                        return close(close, viewNext, toClose.get());
+                    }
+                    return resume(scope.findSelfOrChild(close.scopeId), opt -> {
+                        if (opt.isDefined()) {
+                            return close(close, viewNext, opt.get());
+                        }
+                        var result = close.interruptedScope
+                            .<FreeC.Result<Unit>>map(t -> FreeC.Result.interrupted(t.t1(), t.t2()))
+                            .getOrElse(FreeC.Result.unit);
+                        stream = viewNext.apply(result);
+                        return null;
+                    });
+                } else throw new IllegalArgumentException();
+            } else throw new IllegalArgumentException();
+        }
+
+        private IO<B> enter(Step<IO, Object, ?> u, Function1<FreeC.Result<?>, FreeC<Algebra<IO, Object, ?>, Unit>> viewNext, CompileScope<IO> stepScope) {
+            frames.push(new Frame(u, viewNext, scope));
+            scope = stepScope;
+            stream = (FreeC<Algebra<IO, Object, ?>, Unit>) (FreeC) u.stream;
+            return null;
+        }
+
+        private IO<B> close(CloseScope<IO, Object> close, Function1<FreeC.Result<?>, FreeC<Algebra<IO, Object, ?>, Unit>> viewNext, CompileScope<IO> toClose) {
+            var current = scope;
+            var closed = ((IO<Either<Throwable, Unit>>) toClose.close(close.exitCase))
+                .flatMap(r -> ((IO<CompileScope<IO>>) toClose.openAncestor()).map(ancestor -> Tuple.of(r, ancestor)));
+            return resume(closed, t -> {
+                var r = t.t1();
+                var ancestor = t.t2();
+                if (close.interruptedScope.isEmpty()) {
+                    scope = ancestor;
+                    stream = viewNext.apply(FreeC.Result.fromEither(r));
+                    return null;
+                }
+                var tuple = close.interruptedScope.get();
+                var interruptedScopeId = tuple.t1();
+                var err = tuple.t2();
+                var opt = CompositeFailure.fromList(r.swap().toOption().toList().prepend(err.toList()));
+                if (ancestor.findSelfOrAncestor(interruptedScopeId).isDefined()) {
+                    scope = ancestor;
+                    stream = viewNext.apply(FreeC.Result.interrupted(interruptedScopeId, opt));
+                } else {
+                    scope = current;
+                    stream = viewNext.apply(opt.<FreeC.Result<Unit>>fold(() -> FreeC.Result.unit, FreeC.Result::raiseError));
+                }
+                return null;
+            });
+        }
+
+        /**
+         * Checks the interruption of the scope before continuing,
+         * as [[interruptGuard]].
+         */
+        private IO<B> guard(CompileScope<IO> sc, Function1<FreeC.Result<?>, FreeC<Algebra<IO, Object, ?>, Unit>> viewNext, Supplier<IO<B>> next) {
+            if (!sc.isInterruptible()) {
+                return next.get();
+            }
+            return resume(sc.isInterrupted(), opt -> {
+                if (opt.isEmpty()) {
+                    return next.get();
+                }
+                scope = sc;
+                stream = viewNext.apply(opt.get().<FreeC.Result<Unit>>fold(
+                    FreeC.Result::raiseError,
+                    scopeId -> FreeC.Result.interrupted(scopeId, Maybe.none())
+                ));
+                return null;
+            });
+        }
+
+        private IO<B> done() {
+            if (frames.isEmpty()) {
+                return IO.pure(acc);
+            }
+            var frame = frames.pop();
+            scope = frame.scope;
+            return guard(frame.scope, frame.next, () -> {
+                stream = frame.next.apply(FreeC.Result.pure(Maybe.none()));
+                return null;
+            });
+        }
+
+        private IO<B> out(Chunk<Object> head, CompileScope<IO> outScope, FreeC<Algebra<IO, Object, ?>, Unit> tail) {
+            var frame = frames.pop();
+            // if the step swapped scopes, the original one is expected back
+            var nextScope = frame.step.scope.isEmpty() ? outScope : frame.scope;
+            scope = nextScope;
+            if (frame.step.scope.isEmpty() || outScope.isMaterialized()) {
+                return resumeOut(head, outScope, tail, frame);
+            }
+            // the scope of a leg is looked up by the next step into it,
+            // the frame is already popped so an error goes to its continuation
+            return resumeAttempt((IO<Unit>) outScope.materializeStepLeg(), e -> e.fold(
+                err -> {
+                    stream = frame.next.apply(FreeC.Result.raiseError(err));
+                    return null;
+                },
+                u -> resumeOut(head, outScope, tail, frame)
+            ));
+        }
+
+        private IO<B> resumeOut(Chunk<Object> head, CompileScope<IO> outScope, FreeC<Algebra<IO, Object, ?>, Unit> tail, Frame frame) {
+            return guard(scope, frame.next, () -> {
+                stream = frame.next.apply(FreeC.Result.pure(Maybe.some(Tuple.of(head, outScope.id, tail))));
+                return null;
+            });
+        }
+
+        private IO<B> interrupted(Token scopeId, Maybe<Throwable> err) {
+            if (frames.isEmpty()) {
+                return err.fold(() -> IO.pure(acc), IO::raiseError);
+            }
+            var frame = frames.pop();
+            scope = frame.scope;
+            stream = frame.next.apply(FreeC.Result.interrupted(scopeId, err));
+            return null;
+        }
+
+        private IO<B> fail(Throwable err) {
+            if (frames.isEmpty()) {
+                return IO.raiseError(err);
+            }
+            var frame = frames.pop();
+            scope = frame.scope;
+            stream = frame.next.apply(FreeC.Result.raiseError(err));
+            return null;
+        }
+
+        /**
+         * Evaluates the effect and continues with its result, an error
+         * fails the current step as if raised by the nested stream.
+         */
+        private <A> IO<B> resume(Higher<IO, A> effect, Function1<A, IO<B>> k) {
+            return resumeAttempt((IO<A>) effect, e -> e.fold(this::fail, k));
+        }
+
+        private <A> IO<B> resumeAttempt(IO<A> effect, Function1<Either<Throwable, A>, IO<B>> k) {
+            return effect.attempt().flatMap(e -> {
+                var next = k.apply(e);
+                return next != null ? next : run();
+            });
+        }
+
+        private final static class Frame {
+            private final Step<IO, Object, ?> step;
+            private final Function1<FreeC.Result<?>, FreeC<Algebra<IO, Object, ?>, Unit>> next;
+            private final CompileScope<IO> scope;
+
+            private Frame(Step<IO, Object, ?> step, Function1<FreeC.Result<?>, FreeC<Algebra<IO, Object, ?>, Unit>> next, CompileScope<IO> scope) {
+                this.step = step;
+                this.next = next;
+                this.scope = scope;
+            }
+        }
+    }
+
     static <F extends Higher, O>
     FreeC<Algebra<F, O, ?>, Unit>
     interruptBoundary(
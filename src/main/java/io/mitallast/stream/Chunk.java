@@ -8,14 +8,33 @@ import io.mitallast.maybe.Maybe;
 import io.mitallast.product.Tuple;
 import io.mitallast.product.Tuple2;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
 import java.util.function.Consumer;
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.DoublePredicate;
+import java.util.function.DoubleUnaryOperator;
+import java.util.function.IntBinaryOperator;
+import java.util.function.IntPredicate;
+import java.util.function.IntToDoubleFunction;
+import java.util.function.IntToLongFunction;
+import java.util.function.IntUnaryOperator;
+import java.util.function.LongBinaryOperator;
+import java.util.function.LongPredicate;
+import java.util.function.LongToDoubleFunction;
+import java.util.function.LongToIntFunction;
+import java.util.function.LongUnaryOperator;
 import java.util.function.Predicate;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
 
-abstract class Chunk<O> implements Iterable<O> {
+public abstract class Chunk<O> implements Iterable<O> {
 
     private Chunk() {
     }
@@ -36,7 +55,7 @@ abstract class Chunk<O> implements Iterable<O> {
         return splitAt(n).t2();
     }
 
-    final public Chunk<O> filter(Predicate<O> p) {
+    public Chunk<O> filter(Predicate<O> p) {
         if (isEmpty()) {
             return Chunk.empty();
         } else {
@@ -162,6 +181,33 @@ abstract class Chunk<O> implements Iterable<O> {
         return new IndexedSeqChunk<>(b);
     }
 
+    public IntChunk mapToInt(ToIntFunction<O> f) {
+        var s = size();
+        var b = new int[s];
+        for (int i = 0; i < s; i++) {
+            b[i] = f.applyAsInt(apply(i));
+        }
+        return new IntChunk(b, 0, s);
+    }
+
+    public LongChunk mapToLong(ToLongFunction<O> f) {
+        var s = size();
+        var b = new long[s];
+        for (int i = 0; i < s; i++) {
+            b[i] = f.applyAsLong(apply(i));
+        }
+        return new LongChunk(b, 0, s);
+    }
+
+    public DoubleChunk mapToDouble(ToDoubleFunction<O> f) {
+        var s = size();
+        var b = new double[s];
+        for (int i = 0; i < s; i++) {
+            b[i] = f.applyAsDouble(apply(i));
+        }
+        return new DoubleChunk(b, 0, s);
+    }
+
     final public <S, O2> Tuple2<S, Chunk<O2>> mapAccumulate(S init, Function2<S, O, Tuple2<S, O2>> f) {
         var s = size();
         var b = new ArrayList<O2>(s);
@@ -382,6 +428,721 @@ abstract class Chunk<O> implements Iterable<O> {
         }
     }
 
+    public static IntChunk ints(int[] values) {
+        return ints(values, 0, values.length);
+    }
+
+    public static IntChunk ints(int[] values, int offset, int length) {
+        checkBounds(values.length, offset, length);
+        return new IntChunk(values, offset, length);
+    }
+
+    public static LongChunk longs(long[] values) {
+        return longs(values, 0, values.length);
+    }
+
+    public static LongChunk longs(long[] values, int offset, int length) {
+        checkBounds(values.length, offset, length);
+        return new LongChunk(values, offset, length);
+    }
+
+    public static DoubleChunk doubles(double[] values) {
+        return doubles(values, 0, values.length);
+    }
+
+    public static DoubleChunk doubles(double[] values, int offset, int length) {
+        checkBounds(values.length, offset, length);
+        return new DoubleChunk(values, offset, length);
+    }
+
+    public static ByteChunk bytes(byte[] values) {
+        return bytes(values, 0, values.length);
+    }
+
+    public static ByteChunk bytes(byte[] values, int offset, int length) {
+        checkBounds(values.length, offset, length);
+        return new ByteChunk(values, offset, length);
+    }
+
+    /**
+     * Chunk of the remaining bytes of the buffer, the bytes are not copied.
+     */
+    public static ByteBufferChunk byteBuffer(ByteBuffer buffer) {
+        return new ByteBufferChunk(buffer.slice());
+    }
+
+    /**
+     * Read-only view of the bytes of the chunk, the bytes are only
+     * copied if the chunk is not backed by an array or a buffer.
+     */
+    public static ByteBuffer asByteBuffer(Chunk<Byte> chunk) {
+        if (chunk instanceof ByteBufferChunk) {
+            return ((ByteBufferChunk) chunk).toByteBuffer();
+        } else if (chunk instanceof ByteChunk) {
+            return ((ByteChunk) chunk).toByteBuffer();
+        } else {
+            var b = new byte[chunk.size()];
+            for (int i = 0; i < b.length; i++) {
+                b[i] = chunk.apply(i);
+            }
+            return ByteBuffer.wrap(b).asReadOnlyBuffer();
+        }
+    }
+
+    /**
+     * Like [[asByteBuffer]] but the buffer is backed by the array of an
+     * array backed chunk, for decoders taking the array fast path. The
+     * buffer must not be written.
+     */
+    static ByteBuffer byteBufferView(Chunk<Byte> chunk) {
+        if (chunk instanceof ByteBufferChunk) {
+            return ((ByteBufferChunk) chunk).buffer.duplicate();
+        } else if (chunk instanceof ByteChunk) {
+            var c = (ByteChunk) chunk;
+            return ByteBuffer.wrap(c.values, c.offset, c.length);
+        } else {
+            return asByteBuffer(chunk);
+        }
+    }
+
+    /**
+     * Decodes the bytes of the chunk as an UTF-8 string.
+     */
+    static String utf8String(Chunk<Byte> chunk) {
+        if (chunk instanceof ByteChunk) {
+            var c = (ByteChunk) chunk;
+            return new String(c.values, c.offset, c.length, StandardCharsets.UTF_8);
+        } else if (chunk instanceof ByteBufferChunk && ((ByteBufferChunk) chunk).buffer.hasArray()) {
+            var buffer = ((ByteBufferChunk) chunk).buffer;
+            return new String(buffer.array(), buffer.arrayOffset(), buffer.limit(), StandardCharsets.UTF_8);
+        } else {
+            var b = new byte[chunk.size()];
+            for (int i = 0; i < b.length; i++) {
+                b[i] = chunk.apply(i);
+            }
+            return new String(b, StandardCharsets.UTF_8);
+        }
+    }
+
+    private static void checkBounds(int arrayLength, int offset, int length) {
+        if (offset < 0 || length < 0 || offset > arrayLength - length) {
+            throw new IndexOutOfBoundsException("offset " + offset + ", length " + length + ", array length " + arrayLength);
+        }
+    }
+
+    /**
+     * Keeps the result of a `map` over a primitive chunk unboxed when
+     * all the values are of the same primitive wrapper type.
+     */
+    @SuppressWarnings("unchecked")
+    private static <O> Chunk<O> specialize(Object[] values) {
+        var s = values.length;
+        var head = values[0];
+        if (head instanceof Integer) {
+            var b = new int[s];
+            for (int i = 0; i < s; i++) {
+                if (!(values[i] instanceof Integer)) return boxed(values);
+                b[i] = (Integer) values[i];
+            }
+            return (Chunk<O>) new IntChunk(b, 0, s);
+        } else if (head instanceof Long) {
+            var b = new long[s];
+            for (int i = 0; i < s; i++) {
+                if (!(values[i] instanceof Long)) return boxed(values);
+                b[i] = (Long) values[i];
+            }
+            return (Chunk<O>) new LongChunk(b, 0, s);
+        } else if (head instanceof Double) {
+            var b = new double[s];
+            for (int i = 0; i < s; i++) {
+                if (!(values[i] instanceof Double)) return boxed(values);
+                b[i] = (Double) values[i];
+            }
+            return (Chunk<O>) new DoubleChunk(b, 0, s);
+        } else if (head instanceof Byte) {
+            var b = new byte[s];
+            for (int i = 0; i < s; i++) {
+                if (!(values[i] instanceof Byte)) return boxed(values);
+                b[i] = (Byte) values[i];
+            }
+            return (Chunk<O>) new ByteChunk(b, 0, s);
+        } else {
+            return boxed(values);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <O> Chunk<O> boxed(Object[] values) {
+        var b = new ArrayList<O>(values.length);
+        for (var value : values) {
+            b.add((O) value);
+        }
+        return new IndexedSeqChunk<>(b);
+    }
+
+    /**
+     * Chunk backed by a slice of an `int[]`. Slicing shares the array,
+     * which must not be mutated after the chunk is created.
+     */
+    public final static class IntChunk extends Chunk<Integer> {
+        private final int[] values;
+        private final int offset;
+        private final int length;
+
+        private IntChunk(final int[] values, final int offset, final int length) {
+            this.values = values;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        @Override
+        public int size() {
+            return length;
+        }
+
+        @Override
+        public Integer apply(final int i) {
+            return at(i);
+        }
+
+        public int at(final int i) {
+            if (i < 0 || i >= length) throw new IndexOutOfBoundsException();
+            return values[offset + i];
+        }
+
+        @Override
+        public void copyToArray(final Integer[] xs, final int start) {
+            for (int i = 0; i < length; i++) {
+                xs[start + i] = values[offset + i];
+            }
+        }
+
+        public void copyToArray(final int[] xs, final int start) {
+            System.arraycopy(values, offset, xs, start, length);
+        }
+
+        @Override
+        public void copyToBuffer(final ArrayList<Integer> buffer) {
+            buffer.ensureCapacity(buffer.size() + length);
+            for (int i = 0; i < length; i++) {
+                buffer.add(values[offset + i]);
+            }
+        }
+
+        public int[] toArray() {
+            return Arrays.copyOfRange(values, offset, offset + length);
+        }
+
+        @Override
+        protected Tuple2<Chunk<Integer>, Chunk<Integer>> splitAtChunk_(final int n) {
+            return Tuple.of(new IntChunk(values, offset, n), new IntChunk(values, offset + n, length - n));
+        }
+
+        @Override
+        public Chunk<Integer> filter(final Predicate<Integer> p) {
+            return filterInt(p::test);
+        }
+
+        public IntChunk filterInt(final IntPredicate p) {
+            var b = new int[length];
+            var s = 0;
+            for (int i = 0; i < length; i++) {
+                var v = values[offset + i];
+                if (p.test(v)) {
+                    b[s++] = v;
+                }
+            }
+            return new IntChunk(b, 0, s);
+        }
+
+        @Override
+        public <O2> Chunk<O2> map(final Function1<Integer, O2> f) {
+            if (length == 0) return empty();
+            var b = new Object[length];
+            for (int i = 0; i < length; i++) {
+                b[i] = f.apply(values[offset + i]);
+            }
+            return specialize(b);
+        }
+
+        public IntChunk mapInt(final IntUnaryOperator f) {
+            var b = new int[length];
+            for (int i = 0; i < length; i++) {
+                b[i] = f.applyAsInt(values[offset + i]);
+            }
+            return new IntChunk(b, 0, length);
+        }
+
+        public LongChunk mapIntToLong(final IntToLongFunction f) {
+            var b = new long[length];
+            for (int i = 0; i < length; i++) {
+                b[i] = f.applyAsLong(values[offset + i]);
+            }
+            return new LongChunk(b, 0, length);
+        }
+
+        public DoubleChunk mapIntToDouble(final IntToDoubleFunction f) {
+            var b = new double[length];
+            for (int i = 0; i < length; i++) {
+                b[i] = f.applyAsDouble(values[offset + i]);
+            }
+            return new DoubleChunk(b, 0, length);
+        }
+
+        public int foldLeftInt(final int init, final IntBinaryOperator f) {
+            var acc = init;
+            for (int i = 0; i < length; i++) {
+                acc = f.applyAsInt(acc, values[offset + i]);
+            }
+            return acc;
+        }
+
+        public long foldLeftLong(final long init, final LongBinaryOperator f) {
+            var acc = init;
+            for (int i = 0; i < length; i++) {
+                acc = f.applyAsLong(acc, values[offset + i]);
+            }
+            return acc;
+        }
+    }
+
+    /**
+     * Chunk backed by a slice of a `long[]`. Slicing shares the array,
+     * which must not be mutated after the chunk is created.
+     */
+    public final static class LongChunk extends Chunk<Long> {
+        private final long[] values;
+        private final int offset;
+        private final int length;
+
+        private LongChunk(final long[] values, final int offset, final int length) {
+            this.values = values;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        @Override
+        public int size() {
+            return length;
+        }
+
+        @Override
+        public Long apply(final int i) {
+            return at(i);
+        }
+
+        public long at(final int i) {
+            if (i < 0 || i >= length) throw new IndexOutOfBoundsException();
+            return values[offset + i];
+        }
+
+        @Override
+        public void copyToArray(final Long[] xs, final int start) {
+            for (int i = 0; i < length; i++) {
+                xs[start + i] = values[offset + i];
+            }
+        }
+
+        public void copyToArray(final long[] xs, final int start) {
+            System.arraycopy(values, offset, xs, start, length);
+        }
+
+        @Override
+        public void copyToBuffer(final ArrayList<Long> buffer) {
+            buffer.ensureCapacity(buffer.size() + length);
+            for (int i = 0; i < length; i++) {
+                buffer.add(values[offset + i]);
+            }
+        }
+
+        public long[] toArray() {
+            return Arrays.copyOfRange(values, offset, offset + length);
+        }
+
+        @Override
+        protected Tuple2<Chunk<Long>, Chunk<Long>> splitAtChunk_(final int n) {
+            return Tuple.of(new LongChunk(values, offset, n), new LongChunk(values, offset + n, length - n));
+        }
+
+        @Override
+        public Chunk<Long> filter(final Predicate<Long> p) {
+            return filterLong(p::test);
+        }
+
+        public LongChunk filterLong(final LongPredicate p) {
+            var b = new long[length];
+            var s = 0;
+            for (int i = 0; i < length; i++) {
+                var v = values[offset + i];
+                if (p.test(v)) {
+                    b[s++] = v;
+                }
+            }
+            return new LongChunk(b, 0, s);
+        }
+
+        @Override
+        public <O2> Chunk<O2> map(final Function1<Long, O2> f) {
+            if (length == 0) return empty();
+            var b = new Object[length];
+            for (int i = 0; i < length; i++) {
+                b[i] = f.apply(values[offset + i]);
+            }
+            return specialize(b);
+        }
+
+        public LongChunk mapLong(final LongUnaryOperator f) {
+            var b = new long[length];
+            for (int i = 0; i < length; i++) {
+                b[i] = f.applyAsLong(values[offset + i]);
+            }
+            return new LongChunk(b, 0, length);
+        }
+
+        public IntChunk mapLongToInt(final LongToIntFunction f) {
+            var b = new int[length];
+            for (int i = 0; i < length; i++) {
+                b[i] = f.applyAsInt(values[offset + i]);
+            }
+            return new IntChunk(b, 0, length);
+        }
+
+        public DoubleChunk mapLongToDouble(final LongToDoubleFunction f) {
+            var b = new double[length];
+            for (int i = 0; i < length; i++) {
+                b[i] = f.applyAsDouble(values[offset + i]);
+            }
+            return new DoubleChunk(b, 0, length);
+        }
+
+        public long foldLeftLong(final long init, final LongBinaryOperator f) {
+            var acc = init;
+            for (int i = 0; i < length; i++) {
+                acc = f.applyAsLong(acc, values[offset + i]);
+            }
+            return acc;
+        }
+    }
+
+    /**
+     * Chunk backed by a slice of a `double[]`. Slicing shares the array,
+     * which must not be mutated after the chunk is created.
+     */
+    public final static class DoubleChunk extends Chunk<Double> {
+        private final double[] values;
+        private final int offset;
+        private final int length;
+
+        private DoubleChunk(final double[] values, final int offset, final int length) {
+            this.values = values;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        @Override
+        public int size() {
+            return length;
+        }
+
+        @Override
+        public Double apply(final int i) {
+            return at(i);
+        }
+
+        public double at(final int i) {
+            if (i < 0 || i >= length) throw new IndexOutOfBoundsException();
+            return values[offset + i];
+        }
+
+        @Override
+        public void copyToArray(final Double[] xs, final int start) {
+            for (int i = 0; i < length; i++) {
+                xs[start + i] = values[offset + i];
+            }
+        }
+
+        public void copyToArray(final double[] xs, final int start) {
+            System.arraycopy(values, offset, xs, start, length);
+        }
+
+        @Override
+        public void copyToBuffer(final ArrayList<Double> buffer) {
+            buffer.ensureCapacity(buffer.size() + length);
+            for (int i = 0; i < length; i++) {
+                buffer.add(values[offset + i]);
+            }
+        }
+
+        public double[] toArray() {
+            return Arrays.copyOfRange(values, offset, offset + length);
+        }
+
+        @Override
+        protected Tuple2<Chunk<Double>, Chunk<Double>> splitAtChunk_(final int n) {
+            return Tuple.of(new DoubleChunk(values, offset, n), new DoubleChunk(values, offset + n, length - n));
+        }
+
+        @Override
+        public Chunk<Double> filter(final Predicate<Double> p) {
+            return filterDouble(p::test);
+        }
+
+        public DoubleChunk filterDouble(final DoublePredicate p) {
+            var b = new double[length];
+            var s = 0;
+            for (int i = 0; i < length; i++) {
+                var v = values[offset + i];
+                if (p.test(v)) {
+                    b[s++] = v;
+                }
+            }
+            return new DoubleChunk(b, 0, s);
+        }
+
+        @Override
+        public <O2> Chunk<O2> map(final Function1<Double, O2> f) {
+            if (length == 0) return empty();
+            var b = new Object[length];
+            for (int i = 0; i < length; i++) {
+                b[i] = f.apply(values[offset + i]);
+            }
+            return specialize(b);
+        }
+
+        public DoubleChunk mapDouble(final DoubleUnaryOperator f) {
+            var b = new double[length];
+            for (int i = 0; i < length; i++) {
+                b[i] = f.applyAsDouble(values[offset + i]);
+            }
+            return new DoubleChunk(b, 0, length);
+        }
+
+        public double foldLeftDouble(final double init, final DoubleBinaryOperator f) {
+            var acc = init;
+            for (int i = 0; i < length; i++) {
+                acc = f.applyAsDouble(acc, values[offset + i]);
+            }
+            return acc;
+        }
+    }
+
+    /**
+     * Chunk backed by a slice of a `byte[]`. Slicing shares the array,
+     * which must not be mutated after the chunk is created.
+     */
+    public final static class ByteChunk extends Chunk<Byte> {
+        private final byte[] values;
+        private final int offset;
+        private final int length;
+
+        private ByteChunk(final byte[] values, final int offset, final int length) {
+            this.values = values;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        @Override
+        public int size() {
+            return length;
+        }
+
+        @Override
+        public Byte apply(final int i) {
+            return at(i);
+        }
+
+        public byte at(final int i) {
+            if (i < 0 || i >= length) throw new IndexOutOfBoundsException();
+            return values[offset + i];
+        }
+
+        @Override
+        public void copyToArray(final Byte[] xs, final int start) {
+            for (int i = 0; i < length; i++) {
+                xs[start + i] = values[offset + i];
+            }
+        }
+
+        public void copyToArray(final byte[] xs, final int start) {
+            System.arraycopy(values, offset, xs, start, length);
+        }
+
+        @Override
+        public void copyToBuffer(final ArrayList<Byte> buffer) {
+            buffer.ensureCapacity(buffer.size() + length);
+            for (int i = 0; i < length; i++) {
+                buffer.add(values[offset + i]);
+            }
+        }
+
+        public byte[] toArray() {
+            return Arrays.copyOfRange(values, offset, offset + length);
+        }
+
+        /**
+         * Read-only view of the slice, the array is not copied.
+         */
+        public ByteBuffer toByteBuffer() {
+            return ByteBuffer.wrap(values, offset, length).slice().asReadOnlyBuffer();
+        }
+
+        @Override
+        protected Tuple2<Chunk<Byte>, Chunk<Byte>> splitAtChunk_(final int n) {
+            return Tuple.of(new ByteChunk(values, offset, n), new ByteChunk(values, offset + n, length - n));
+        }
+
+        @Override
+        public Chunk<Byte> filter(final Predicate<Byte> p) {
+            var b = new byte[length];
+            var s = 0;
+            for (int i = 0; i < length; i++) {
+                var v = values[offset + i];
+                if (p.test(v)) {
+                    b[s++] = v;
+                }
+            }
+            return new ByteChunk(b, 0, s);
+        }
+
+        @Override
+        public <O2> Chunk<O2> map(final Function1<Byte, O2> f) {
+            if (length == 0) return empty();
+            var b = new Object[length];
+            for (int i = 0; i < length; i++) {
+                b[i] = f.apply(values[offset + i]);
+            }
+            return specialize(b);
+        }
+
+        public IntChunk mapByteToInt(final IntUnaryOperator f) {
+            var b = new int[length];
+            for (int i = 0; i < length; i++) {
+                b[i] = f.applyAsInt(values[offset + i]);
+            }
+            return new IntChunk(b, 0, length);
+        }
+
+        public int foldLeftInt(final int init, final IntBinaryOperator f) {
+            var acc = init;
+            for (int i = 0; i < length; i++) {
+                acc = f.applyAsInt(acc, values[offset + i]);
+            }
+            return acc;
+        }
+    }
+
+    /**
+     * Chunk backed by a `ByteBuffer`, either heap or direct. Slicing shares
+     * the buffer, whose content must not be mutated after the chunk is created.
+     */
+    public final static class ByteBufferChunk extends Chunk<Byte> {
+        // position is always 0 and limit the size of the chunk
+        private final ByteBuffer buffer;
+
+        private ByteBufferChunk(final ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int size() {
+            return buffer.limit();
+        }
+
+        @Override
+        public Byte apply(final int i) {
+            return at(i);
+        }
+
+        public byte at(final int i) {
+            if (i < 0 || i >= buffer.limit()) throw new IndexOutOfBoundsException();
+            return buffer.get(i);
+        }
+
+        @Override
+        public void copyToArray(final Byte[] xs, final int start) {
+            var length = buffer.limit();
+            for (int i = 0; i < length; i++) {
+                xs[start + i] = buffer.get(i);
+            }
+        }
+
+        public void copyToArray(final byte[] xs, final int start) {
+            buffer.duplicate().get(xs, start, buffer.limit());
+        }
+
+        @Override
+        public void copyToBuffer(final ArrayList<Byte> buffer) {
+            var length = this.buffer.limit();
+            buffer.ensureCapacity(buffer.size() + length);
+            for (int i = 0; i < length; i++) {
+                buffer.add(this.buffer.get(i));
+            }
+        }
+
+        public byte[] toArray() {
+            var b = new byte[buffer.limit()];
+            copyToArray(b, 0);
+            return b;
+        }
+
+        /**
+         * Read-only view of the buffer, the bytes are not copied.
+         */
+        public ByteBuffer toByteBuffer() {
+            return buffer.asReadOnlyBuffer();
+        }
+
+        @Override
+        protected Tuple2<Chunk<Byte>, Chunk<Byte>> splitAtChunk_(final int n) {
+            var l = buffer.duplicate().limit(n);
+            var r = buffer.duplicate().position(n);
+            return Tuple.of(new ByteBufferChunk(l.slice()), new ByteBufferChunk(r.slice()));
+        }
+
+        @Override
+        public Chunk<Byte> filter(final Predicate<Byte> p) {
+            var length = buffer.limit();
+            var b = new byte[length];
+            var s = 0;
+            for (int i = 0; i < length; i++) {
+                var v = buffer.get(i);
+                if (p.test(v)) {
+                    b[s++] = v;
+                }
+            }
+            return new ByteChunk(b, 0, s);
+        }
+
+        @Override
+        public <O2> Chunk<O2> map(final Function1<Byte, O2> f) {
+            var length = buffer.limit();
+            if (length == 0) return empty();
+            var b = new Object[length];
+            for (int i = 0; i < length; i++) {
+                b[i] = f.apply(buffer.get(i));
+            }
+            return specialize(b);
+        }
+
+        public IntChunk mapByteToInt(final IntUnaryOperator f) {
+            var length = buffer.limit();
+            var b = new int[length];
+            for (int i = 0; i < length; i++) {
+                b[i] = f.applyAsInt(buffer.get(i));
+            }
+            return new IntChunk(b, 0, length);
+        }
+
+        public int foldLeftInt(final int init, final IntBinaryOperator f) {
+            var acc = init;
+            var length = buffer.limit();
+            for (int i = 0; i < length; i++) {
+                acc = f.applyAsInt(acc, buffer.get(i));
+            }
+            return acc;
+        }
+    }
+
     final static class CQueue<A> {
         final Queue<Chunk<A>> chunks;
         final int size;
@@ -17,12 +17,36 @@ import io.mitallast.product.Product2;
 import io.mitallast.product.Tuple;
 import io.mitallast.product.Tuple2;
 
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/**
+ * Scope of a compiled stream.
+ * <p>
+ * Scopes opened without a new interruption context are lazy: the state
+ * of the scope is only allocated, and the scope registered in its
+ * parent, on the first [[register]] of a resource, on the first
+ * [[interrupt]] or when an interruptible child is opened. Most of the
+ * scopes never acquire a resource, an empty lazy scope is opened
+ * without updating its parent and closed without any effect. A lazy scope only has lazy children,
+ * as materializing a scope materializes its ancestors first, so it
+ * never holds resources the ancestors would have to release.
+ * <p>
+ * Fibers sharing a lazy ancestor, as the inner streams of a parJoin do,
+ * may materialize it concurrently: the state is installed once with a
+ * compare-and-set and registered in the parent by the winning fiber.
+ */
 final class CompileScope<F extends Higher> {
     final Token id;
     private final Maybe<CompileScope<F>> parent;
     private final Maybe<InterruptContext<F>> interruptible;
-    private final Ref<F, State<F>> state;
     private final Sync<F> F;
+    // null while the scope is lazy, see materialize
+    private volatile Ref<F, State<F>> state;
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<CompileScope, Ref> STATE =
+        AtomicReferenceFieldUpdater.newUpdater(CompileScope.class, Ref.class, "state");
+    // whether the scope was closed while lazy
+    private volatile boolean closed = false;
 
     CompileScope(Token id,
                  Maybe<CompileScope<F>> parent,
@@ -31,12 +55,66 @@ final class CompileScope<F extends Higher> {
         this.id = id;
         this.parent = parent;
         this.interruptible = interruptible;
-        this.state = Ref.unsafe(State.initial(), F);
         this.F = F;
     }
 
+    private Higher<F, State<F>> state() {
+        return F.suspend(() -> {
+            var ref = state;
+            if (ref != null) return ref.get();
+            else if (closed) return F.pure(State.closed());
+            else return F.pure(State.initial());
+        });
+    }
+
+    /**
+     * Allocates the state of a lazy scope and registers it in its parent.
+     * A scope closed while lazy, or whose parent is closed, gets a closed state.
+     * The fiber installing the state registers the scope, concurrent callers
+     * adopt the installed state.
+     */
+    private Higher<F, Ref<F, State<F>>> materialize() {
+        var self = this;
+        return F.suspend(() -> {
+            var ref = state;
+            if (ref != null) {
+                return F.pure(ref);
+            }
+            var created = Ref.unsafe(State.<F>initial(), F);
+            if (!STATE.compareAndSet(self, null, created)) {
+                return F.pure(state);
+            }
+            return F.flatMap(
+                parent.fold(
+                    () -> F.pure(!closed),
+                    p -> F.flatMap(
+                        p.materialize(),
+                        parentState -> parentState.modify(s -> {
+                            if (s.open && !closed) return Tuple.of(s.addChild(self), true);
+                            else return Tuple.of(s, false);
+                        })
+                    )
+                ),
+                open -> {
+                    if (open) return F.pure(created);
+                    else return F.map(created.set(State.closed()), u -> created);
+                }
+            );
+        });
+    }
+
+    /**
+     * Materializes the scope of a [[Stream.StepLeg]]. A step into the leg
+     * looks the scope up from the scope stepping it, which only finds it
+     * among the children of its ancestors.
+     */
+    Higher<F, Unit> materializeStepLeg() {
+        if (isMaterialized()) return F.unit();
+        else return F.map(materialize(), ref -> Unit.unit());
+    }
+
     public Higher<F, Unit> register(Resource<F> resource) {
-        return state.update(s -> s.addResource(resource));
+        return F.flatMap(materialize(), ref -> ref.update(s -> s.addResource(resource)));
     }
 
     public Higher<F, Either<Throwable, CompileScope<F>>> open(Maybe<Concurrent<F>> interruptible) {
@@ -47,27 +125,42 @@ final class CompileScope<F extends Higher> {
                 () -> F.pure(InterruptContext.unsafeFromInterruptible(interruptible, newScopeId, F)),
                 parentICtx -> F.map(parentICtx.childContext(interruptible, newScopeId, F), Maybe::some)
             ),
-            iCtx ->
-                F.flatMap(
-                    state.modify(s -> {
+            iCtx -> {
+                if (interruptible.isEmpty()) {
+                    return F.flatMap(
+                        state(),
+                        s -> {
+                            if (s.open) return F.pure(Either.right(new CompileScope<F>(newScopeId, Maybe.some(self), iCtx, F)));
+                            else return reopen(interruptible);
+                        }
+                    );
+                }
+                return F.flatMap(
+                    F.flatMap(materialize(), ref -> ref.modify(s -> {
                         if (!s.open) return Tuple.of(s, Maybe.<CompileScope<F>>none());
                         else {
                             var scope = new CompileScope<F>(newScopeId, Maybe.some(self), iCtx, F);
+                            scope.state = Ref.unsafe(State.initial(), F);
                             return Tuple.of(s.addChild(scope), Maybe.some(scope));
                         }
-                    }),
+                    })),
                     opt -> opt.fold(
-                        () ->
-                            self.parent.fold(
-                                () -> F.pure(Either.left(new IllegalStateException("cannot re-open root scope"))),
-                                parent ->
-                                    F.flatMap(
-                                        self.interruptible.map(i -> i.cancelParent).getOrElse(F.unit()),
-                                        u -> parent.open(interruptible)
-                                    )
-                            ),
-                        s -> F.pure(Either.right(s))
+                        () -> reopen(interruptible),
+                        scope -> F.pure(Either.right(scope))
                     )
+                );
+            }
+        );
+    }
+
+    private Higher<F, Either<Throwable, CompileScope<F>>> reopen(Maybe<Concurrent<F>> interruptible) {
+        var self = this;
+        return self.parent.fold(
+            () -> F.pure(Either.left(new IllegalStateException("cannot re-open root scope"))),
+            parent ->
+                F.flatMap(
+                    self.interruptible.map(i -> i.cancelParent).getOrElse(F.unit()),
+                    u -> parent.open(interruptible)
                 )
         );
     }
@@ -100,11 +193,15 @@ final class CompileScope<F extends Higher> {
     }
 
     public Higher<F, Unit> releaseChildScope(Token id) {
-        return state.update(s -> s.unregisterChild(id));
+        return F.suspend(() -> {
+            var ref = state;
+            if (ref == null) return F.unit();
+            else return ref.update(s -> s.unregisterChild(id));
+        });
     }
 
     public Higher<F, Chain<Resource<F>>> resources() {
-        return F.map(state.get(), s -> s.resources);
+        return F.map(state(), s -> s.resources);
     }
 
     private <A> Higher<F, Either<Throwable, Unit>> traverseError(
@@ -122,9 +219,25 @@ final class CompileScope<F extends Higher> {
     }
 
     public Higher<F, Either<Throwable, Unit>> close(ExitCase<Throwable> ec) {
+        var self = this;
+        return F.suspend(() -> {
+            var ref = state;
+            if (ref == null) {
+                // lazy, no resources nor children to release
+                closed = true;
+                return F.map(
+                    self.interruptible.map(c -> c.cancelParent).getOrElse(F.unit()),
+                    unit -> Either.<Throwable, Unit>right(Unit.unit())
+                );
+            }
+            return closeState(ref, ec);
+        });
+    }
+
+    private Higher<F, Either<Throwable, Unit>> closeState(Ref<F, State<F>> ref, ExitCase<Throwable> ec) {
         var self = this;
         return F.flatMap(
-            state.modify(s -> Tuple.of(s.close(), s)),
+            ref.modify(s -> Tuple.of(s.close(), s)),
             previous ->
                 F.flatMap(
                     traverseError(previous.children, s -> s.close(ec)),
@@ -151,7 +264,7 @@ final class CompileScope<F extends Higher> {
         return this.parent.fold(
             () -> F.pure(self),
             parent -> F.flatMap(
-                parent.state.get(),
+                parent.state(),
                 s -> {
                     if (s.open) return F.pure(parent);
                     else return parent.openAncestor();
@@ -203,7 +316,7 @@ final class CompileScope<F extends Higher> {
                     return F.pure(Maybe.some(scope));
                 } else {
                     return F.flatMap(
-                        scope.state.get(),
+                        scope.state(),
                         s -> {
                             if (s.children.isEmpty()) {
                                 return findSelfOrChildGo(scopeId, tail);
@@ -228,7 +341,7 @@ final class CompileScope<F extends Higher> {
             return F.pure(Maybe.some(this));
         } else {
             return F.flatMap(
-                state.get(),
+                state(),
                 s -> findSelfOrChildGo(scopeId, s.children)
             );
         }
@@ -271,7 +384,7 @@ final class CompileScope<F extends Higher> {
     public Higher<F, Maybe<Scope.Lease<F>>> lease() {
         var self = this;
         return F.flatMap(
-            state.get(),
+            state(),
             s -> {
                 if (!s.open) return F.none();
                 else {
@@ -307,14 +420,21 @@ final class CompileScope<F extends Higher> {
             () -> F.raiseError(new IllegalStateException("Scope#interrupt called for Scope that cannot be interrupted")),
             iCtx -> {
                 var interruptCause = cause.map(u -> iCtx.interruptRoot);
-                return F.guarantee(
-                    iCtx.deferred.complete(interruptCause),
-                    iCtx.ref.update(opt -> opt.orElse(Maybe.some(interruptCause)))
+                return F.flatMap(
+                    materialize(),
+                    ref -> F.guarantee(
+                        iCtx.deferred.complete(interruptCause),
+                        iCtx.ref.update(opt -> opt.orElse(Maybe.some(interruptCause)))
+                    )
                 );
             }
         );
     }
 
+    boolean isMaterialized() {
+        return state != null;
+    }
+
     public boolean isInterruptible() {
         return interruptible.isDefined();
     }
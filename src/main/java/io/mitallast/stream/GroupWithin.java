@@ -0,0 +1,177 @@
+package io.mitallast.stream;
+
+import io.mitallast.concurrent.Queue;
+import io.mitallast.either.Either;
+import io.mitallast.higher.Higher;
+import io.mitallast.io.Concurrent;
+import io.mitallast.io.Fiber;
+import io.mitallast.io.Timer;
+import io.mitallast.kernel.Unit;
+import io.mitallast.maybe.Maybe;
+
+import java.time.Duration;
+import java.util.ArrayList;
+
+/**
+ * Implementation of `groupWithin`.
+ * <p>
+ * The upstream is run concurrently and hands its chunks over a bounded
+ * queue to the consuming fiber, which groups them. A window opens with
+ * its first element, and it is emitted once it holds `n` elements or
+ * once `d` elapsed since it opened, whichever comes first.
+ * <p>
+ * Every window has a single timer, a fiber sleeping for `d` then
+ * offering the token of its window to the same queue. The timer of a
+ * window emitted because it is full is canceled, a timeout that is
+ * already queued is ignored because its token is not the one of the
+ * current window anymore. The queue is drained a batch at a time, so
+ * a window opening and filling up within a batch never starts a timer.
+ */
+final class GroupWithin<F extends Higher, O> {
+    private static final int maxQueued = 16;
+
+    private final int n;
+    private final Duration d;
+    private final Timer<F> timer;
+    private final Concurrent<F> F;
+    private final Queue<F, Either<Token, Maybe<Chunk<O>>>> queue;
+    private volatile Fiber<F, Unit> timeout;
+
+    // Only accessed by the consuming fiber
+    private final ArrayList<Chunk<O>> acc = new ArrayList<>();
+    private int accSize = 0;
+    private Token window;
+    private ArrayList<Chunk<O>> out = new ArrayList<>();
+
+    private GroupWithin(int n, Duration d, Timer<F> timer, Concurrent<F> F) {
+        this.n = n;
+        this.d = d;
+        this.timer = timer;
+        this.F = F;
+        this.queue = Queue.unsafeBounded(maxQueued, F);
+    }
+
+    static <F extends Higher, O> Stream<F, Chunk<O>> apply(
+        final Stream<F, O> s,
+        final int n,
+        final Duration d,
+        final Timer<F> timer,
+        final Concurrent<F> F
+    ) {
+        if (n <= 0) {
+            throw new IllegalArgumentException("n must be positive: " + n);
+        }
+        return Stream.<F, GroupWithin<F, O>>bracket(
+            F.delay(() -> new GroupWithin<>(n, d, timer, F)),
+            GroupWithin::cancelTimeout
+        ).flatMap(g -> g.go().stream().mergeHaltL(g.enqueue(s), F));
+    }
+
+    private Stream<F, Chunk<O>> enqueue(Stream<F, O> s) {
+        return s.chunks()
+            .evalMap(c -> queue.offer(Either.right(Maybe.some(c))))
+            .append(() -> Stream.eval(queue.offer(Either.right(Maybe.none()))))
+            .drain();
+    }
+
+    private Pull<F, Chunk<O>, Unit> go() {
+        return Pull.<F, Chunk<O>, Boolean>eval(F.flatMap(queue.takeBatch(maxQueued), this::receive)).flatMap(end -> {
+            var groups = out;
+            out = new ArrayList<>();
+            var emit = groups.isEmpty() ? Pull.<F, Chunk<O>>done() : Pull.<F, Chunk<O>>output(Chunk.indexedSeq(groups));
+            if (end) return emit;
+            else return emit.flatMap(u -> go());
+        });
+    }
+
+    /**
+     * Groups the batch into `out`, then cancels the timer of a window
+     * closed by its size and starts the one of a window left open.
+     * Returns `true` at the end of the upstream.
+     */
+    private Higher<F, Boolean> receive(Iterable<Either<Token, Maybe<Chunk<O>>>> batch) {
+        return F.suspend(() -> {
+            var closed = false;
+            var end = false;
+            for (var e : batch) {
+                if (e.isLeft()) {
+                    if (e.left().get() == window) {
+                        flush();
+                        window = null;
+                        timeout = null;
+                    }
+                } else if (e.right().get().isEmpty()) {
+                    flush();
+                    closed = true;
+                    end = true;
+                    break;
+                } else {
+                    closed |= add(e.right().get().get());
+                }
+            }
+            var effect = F.unit();
+            if (closed && window != null) {
+                var fiber = timeout;
+                window = null;
+                timeout = null;
+                if (fiber != null) effect = fiber.cancel();
+            }
+            if (!end && accSize > 0 && window == null) {
+                effect = F.flatMap(effect, u -> startTimeout());
+            }
+            var result = end;
+            return F.map(effect, u -> result);
+        });
+    }
+
+    /**
+     * Adds the chunk to the current window, returns `true` if it filled
+     * up at least one window.
+     */
+    private boolean add(Chunk<O> c) {
+        var closed = false;
+        var chunk = c;
+        while (accSize + chunk.size() >= n) {
+            var split = chunk.splitAt(n - accSize);
+            acc.add(split.t1());
+            accSize = n;
+            flush();
+            chunk = split.t2();
+            closed = true;
+        }
+        if (chunk.nonEmpty()) {
+            acc.add(chunk);
+            accSize += chunk.size();
+        }
+        return closed;
+    }
+
+    private void flush() {
+        if (accSize > 0) {
+            out.add(acc.size() == 1 ? acc.get(0) : Chunk.concat(acc));
+        }
+        acc.clear();
+        accSize = 0;
+    }
+
+    private Higher<F, Unit> startTimeout() {
+        var token = new Token();
+        window = token;
+        var task = F.flatMap(timer.sleep(d), u -> queue.offer(Either.left(token)));
+        // not interrupted between the start and the registration,
+        // otherwise the fiber would escape the cancellation
+        return F.uncancelable(F.map(F.start(task), fiber -> {
+            timeout = fiber;
+            return Unit.unit();
+        }));
+    }
+
+    private Higher<F, Unit> cancelTimeout() {
+        return F.suspend(() -> {
+            var fiber = timeout;
+            timeout = null;
+            if (fiber == null) return F.unit();
+            else return fiber.cancel();
+        });
+    }
+}
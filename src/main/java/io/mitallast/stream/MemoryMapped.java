@@ -0,0 +1,76 @@
+package io.mitallast.stream;
+
+import io.mitallast.concurrent.ExecutionContext;
+import io.mitallast.concurrent.Task;
+import io.mitallast.higher.Higher;
+import io.mitallast.io.ContextShift;
+import io.mitallast.io.Sync;
+import io.mitallast.kernel.Unit;
+import io.mitallast.maybe.Maybe;
+import io.mitallast.product.Tuple;
+import io.mitallast.product.Tuple2;
+
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Implementation of `mmap` and `mmapRange`.
+ * <p>
+ * The file channel is a resource of the scope the stream runs in, the
+ * range is mapped one window at a time and every window is emitted as
+ * a single chunk viewing the mapped buffer, the bytes are not copied.
+ * <p>
+ * The mapped buffers are not unmapped explicitly when the scope is
+ * closed: a chunk might still be referenced and reading an unmapped
+ * region crashes the JVM. Closing the channel releases the file, the
+ * mapping is released when its last chunk is garbage collected.
+ * <p>
+ * Opening, sizing and mapping the file block on disk I/O, they are
+ * evaluated on the `blocker` context as the reads of `FileStreams` are.
+ */
+final class MemoryMapped {
+    private MemoryMapped() {
+    }
+
+    static <F extends Higher> Stream<F, Byte> apply(
+        final Path path,
+        final ExecutionContext blocker,
+        final long offset,
+        final long length,
+        final int windowSize,
+        final Sync<F> F,
+        final ContextShift<F> cs
+    ) {
+        if (windowSize <= 0) {
+            throw new IllegalArgumentException("windowSize must be positive: " + windowSize);
+        }
+        if (offset < 0 || length < 0) {
+            throw new IllegalArgumentException("offset " + offset + ", length " + length);
+        }
+        return Stream.<F, FileChannel>bracket(
+            blocking(() -> FileChannel.open(path, StandardOpenOption.READ), blocker, F, cs),
+            channel -> blocking(() -> {
+                channel.close();
+                return Unit.unit();
+            }, blocker, F, cs)
+        ).flatMap(channel -> Stream.unfoldChunkEval(offset, position -> blocking(() -> {
+            var remaining = Math.min(length - (position - offset), channel.size() - position);
+            if (remaining <= 0) {
+                return Maybe.<Tuple2<Chunk<Byte>, Long>>none();
+            }
+            var n = (int) Math.min(windowSize, remaining);
+            var buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, n);
+            return Maybe.some(Tuple.<Chunk<Byte>, Long>of(Chunk.byteBuffer(buffer), position + n));
+        }, blocker, F, cs)));
+    }
+
+    private static <F extends Higher, A> Higher<F, A> blocking(
+        Task<A> task,
+        ExecutionContext blocker,
+        Sync<F> F,
+        ContextShift<F> cs
+    ) {
+        return cs.evalOn(blocker, F.delay(task::runUnsafe));
+    }
+}
@@ -0,0 +1,165 @@
+package io.mitallast.stream;
+
+import io.mitallast.concurrent.Queue;
+import io.mitallast.either.Either;
+import io.mitallast.higher.Higher;
+import io.mitallast.io.Concurrent;
+import io.mitallast.io.Fiber;
+import io.mitallast.kernel.Unit;
+import io.mitallast.lambda.Function1;
+import io.mitallast.maybe.Maybe;
+import io.mitallast.product.Tuple;
+import io.mitallast.product.Tuple2;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Implementation of `parEvalMap` and `parEvalMapUnordered`.
+ * <p>
+ * The upstream is pulled by the consuming fiber, every element starts
+ * a fiber evaluating `f` and the results come back over a queue tagged
+ * with their index. At most `maxConcurrent` results are pending, that
+ * is started but not emitted yet. Results that already completed are
+ * emitted before pulling the upstream again, so a slow upstream
+ * doesn't hold them back.
+ * <p>
+ * The running fibers are a resource of the interruptible scope the
+ * stream runs in, closing it for any reason (completion, error or
+ * interruption) cancels the effects still in flight.
+ */
+final class ParEvalMap<F extends Higher, O, O2> {
+    private final int maxConcurrent;
+    private final boolean ordered;
+    private final Function1<O, Higher<F, O2>> f;
+    private final Concurrent<F> F;
+    private final Queue<F, Tuple2<Long, Either<Throwable, O2>>> results;
+    private final ConcurrentHashMap<Long, Fiber<F, Unit>> running = new ConcurrentHashMap<>();
+
+    // Only accessed by the consuming fiber
+    private final HashMap<Long, O2> completed = new HashMap<>();
+    private long started = 0;
+    private long emitted = 0;
+
+    private ParEvalMap(int maxConcurrent, boolean ordered, Function1<O, Higher<F, O2>> f, Concurrent<F> F) {
+        this.maxConcurrent = maxConcurrent;
+        this.ordered = ordered;
+        this.f = f;
+        this.F = F;
+        this.results = Queue.unsafeUnbounded(F);
+    }
+
+    static <F extends Higher, O, O2> Stream<F, O2> apply(
+        final Stream<F, O> s,
+        final int maxConcurrent,
+        final boolean ordered,
+        final Function1<O, Higher<F, O2>> f,
+        final Concurrent<F> F
+    ) {
+        if (maxConcurrent <= 0) {
+            throw new IllegalArgumentException("maxConcurrent must be positive: " + maxConcurrent);
+        }
+        var run = Stream.<F, ParEvalMap<F, O, O2>>bracket(
+            F.delay(() -> new ParEvalMap<>(maxConcurrent, ordered, f, F)),
+            ParEvalMap::cancelRunning
+        ).flatMap(p -> p.go(Maybe.some(s)).stream());
+        return Stream.fromFreeC(Algebra.interruptScope(run.get(), F));
+    }
+
+    private Pull<F, O2, Unit> go(Maybe<Stream<F, O>> upstream) {
+        var pending = started - emitted;
+        if (upstream.isEmpty()) {
+            if (pending == 0) return Pull.done();
+            else return await().flatMap(u -> go(upstream));
+        } else if (pending >= maxConcurrent) {
+            return await().flatMap(u -> go(upstream));
+        } else {
+            return Pull.<F, O2, Maybe<Tuple2<Long, Either<Throwable, O2>>>>eval(results.tryTake()).flatMap(m -> m.fold(
+                () -> upstream.get().pull().<O2>uncons().flatMap(opt -> opt.fold(
+                    () -> go(Maybe.none()),
+                    t -> {
+                        var hd = t.t1();
+                        var tl = t.t2();
+                        var free = (int) (maxConcurrent - pending);
+                        if (hd.size() <= free) {
+                            return Pull.<F, O2, Unit>eval(startAll(hd, 0)).flatMap(u -> go(Maybe.some(tl)));
+                        } else {
+                            var split = hd.splitAt(free);
+                            return Pull.<F, O2, Unit>eval(startAll(split.t1(), 0))
+                                .flatMap(u -> go(Maybe.some(tl.cons(split.t2()))));
+                        }
+                    }
+                )),
+                r -> Pull.<F, O2, Chunk<O2>>eval(receive(Collections.singletonList(r)))
+                    .flatMap(Pull::output)
+                    .flatMap(u -> go(upstream))
+            ));
+        }
+    }
+
+    private Pull<F, O2, Unit> await() {
+        return Pull.<F, O2, Chunk<O2>>eval(F.flatMap(results.takeBatch(maxConcurrent), this::receive))
+            .flatMap(Pull::output);
+    }
+
+    private Higher<F, Unit> startAll(Chunk<O> chunk, int i) {
+        if (i == chunk.size()) return F.unit();
+        else return F.flatMap(start(chunk.apply(i)), u -> startAll(chunk, i + 1));
+    }
+
+    private Higher<F, Unit> start(O o) {
+        return F.suspend(() -> {
+            var index = started++;
+            var task = F.flatMap(
+                F.attempt(F.suspend(() -> f.apply(o))),
+                r -> results.offer(Tuple.of(index, r))
+            );
+            // not interrupted between the start and the registration,
+            // otherwise the fiber would escape the cancellation
+            return F.uncancelable(F.map(F.start(task), fiber -> {
+                running.put(index, fiber);
+                return Unit.unit();
+            }));
+        });
+    }
+
+    private Higher<F, Chunk<O2>> receive(Iterable<Tuple2<Long, Either<Throwable, O2>>> batch) {
+        return F.suspend(() -> {
+            var out = new ArrayList<O2>();
+            for (var t : batch) {
+                var index = t.t1();
+                var result = t.t2();
+                running.remove(index);
+                if (result.isLeft()) {
+                    return F.raiseError(result.left().get());
+                }
+                if (ordered) {
+                    completed.put(index, result.right().get());
+                } else {
+                    out.add(result.right().get());
+                    emitted++;
+                }
+            }
+            if (ordered) {
+                while (completed.containsKey(emitted)) {
+                    out.add(completed.remove(emitted));
+                    emitted++;
+                }
+            }
+            return F.pure(Chunk.indexedSeq(out));
+        });
+    }
+
+    private Higher<F, Unit> cancelRunning() {
+        return F.suspend(() -> {
+            var cancel = F.unit();
+            for (var fiber : running.values()) {
+                cancel = F.flatMap(cancel, u -> fiber.cancel());
+            }
+            running.clear();
+            return cancel;
+        });
+    }
+}
@@ -0,0 +1,219 @@
+package io.mitallast.stream;
+
+import io.mitallast.concurrent.Queue;
+import io.mitallast.concurrent.Semaphore;
+import io.mitallast.either.Either;
+import io.mitallast.higher.Higher;
+import io.mitallast.io.Concurrent;
+import io.mitallast.io.ExitCase;
+import io.mitallast.io.Fiber;
+import io.mitallast.kernel.Unit;
+import io.mitallast.list.List;
+import io.mitallast.maybe.Maybe;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Implementation of `parJoin`.
+ * <p>
+ * The outer stream and every inner stream are compiled in their own
+ * fiber, each one in a child scope of a root scope owned by the join.
+ * An inner stream holds a [[Scope.Lease]] on the scope of the outer
+ * stream it was emitted in, so the outer resources are not finalized
+ * before it terminates. Chunks are handed over a bounded queue to the
+ * consuming fiber, a slow consumer back-pressures the inner streams,
+ * and a semaphore bounds the number of open inner streams, which
+ * back-pressures the outer one.
+ * <p>
+ * The first error stops all the other fibers and is raised by the
+ * joined stream. When the joined stream terminates for any reason
+ * the fibers still running are canceled and the leases given back.
+ */
+final class ParJoin<F extends Higher, O> {
+    private static final int maxQueued = 256;
+
+    private final Concurrent<F> F;
+    private final CompileScope<F> root;
+    private final Semaphore<F> available;
+    private final Queue<F, Maybe<Chunk<O>>> output;
+    private final Fiber<F, Unit> done;
+    private final ConcurrentHashMap<Token, Fiber<F, Unit>> fibers = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Token, Scope.Lease<F>> leases = new ConcurrentHashMap<>();
+    private final AtomicInteger running = new AtomicInteger(1); // the outer stream
+    private final AtomicReference<Throwable> error = new AtomicReference<>();
+    private final AtomicBoolean terminated = new AtomicBoolean(false);
+    private volatile boolean stopped = false;
+
+    private ParJoin(int maxOpen, CompileScope<F> root, Concurrent<F> F) {
+        this.F = F;
+        this.root = root;
+        this.available = Semaphore.unsafe(maxOpen, F);
+        this.output = Queue.unsafeBounded(Math.min(maxOpen, maxQueued), F);
+        this.done = Fiber.apply(F.unit(), F.unit());
+    }
+
+    static <F extends Higher, O> Stream<F, O> apply(
+        final Stream<F, Stream<F, O>> outer,
+        final int maxOpen,
+        final Concurrent<F> F
+    ) {
+        if (maxOpen <= 0) {
+            throw new IllegalArgumentException("maxOpen must be positive: " + maxOpen);
+        }
+        return Stream.<F, ParJoin<F, O>>bracketCase(
+            F.flatMap(
+                CompileScope.newRoot(F),
+                root -> F.suspend(() -> {
+                    var join = new ParJoin<F, O>(maxOpen, root, F);
+                    var key = new Token();
+                    return F.map(join.fork(key, join.runOuter(key, outer)), u -> join);
+                })
+            ),
+            ParJoin::stop
+        ).flatMap(ParJoin::output);
+    }
+
+    private Stream<F, O> output() {
+        return Stream.repeatEval(output.take())
+            .<Chunk<O>>unNoneTerminate()
+            .flatMap(Stream::chunk)
+            .append(() -> Stream.<F, Unit>eval(F.suspend(() -> {
+                var e = error.get();
+                if (e == null) return F.unit();
+                else return F.raiseError(e);
+            })).drain());
+    }
+
+    private Higher<F, Unit> runOuter(Token key, Stream<F, Stream<F, O>> outer) {
+        var run = outer.flatMap(inner ->
+            Stream.<F, CompileScope<F>>fromFreeC(Algebra.<F, CompileScope<F>>getScope().flatMap(Algebra::output1))
+                .flatMap(outerScope -> Stream.eval(runInner(inner, outerScope)))
+        );
+        return F.flatMap(F.attempt(compile(run)), r -> r.fold(
+            err -> fail(key, err),
+            u -> complete()
+        ));
+    }
+
+    private Higher<F, Unit> runInner(Stream<F, O> inner, CompileScope<F> outerScope) {
+        return F.flatMap(
+            available.acquire(),
+            u -> F.uncancelable(F.flatMap(
+                outerScope.lease(),
+                opt -> opt.fold(
+                    () -> F.raiseError(new IllegalStateException("Outer scope is closed during inner stream startup")),
+                    lease -> {
+                        var key = new Token();
+                        leases.put(key, lease);
+                        running.incrementAndGet();
+                        var run = inner.chunks().evalMap(c -> output.offer(Maybe.some(c)));
+                        return fork(key, F.flatMap(F.attempt(compile(run)), r -> F.flatMap(
+                            cancelLease(key),
+                            c -> F.flatMap(available.release(), uu -> {
+                                var errors = List.<Throwable>nil();
+                                if (c.isLeft()) errors = errors.prepend(c.left().get());
+                                if (r.isLeft()) errors = errors.prepend(r.left().get());
+                                return CompositeFailure.fromList(errors).fold(
+                                    this::complete,
+                                    err -> fail(key, err)
+                                );
+                            })
+                        )));
+                    }
+                )
+            ))
+        );
+    }
+
+    private Higher<F, Unit> compile(Stream<F, ?> s) {
+        return F.bracketCase(
+            F.rethrow(root.open(Maybe.none())),
+            scope -> Algebra.compile(s.get(), scope, Unit.unit(), (u, c) -> u, F),
+            (scope, ec) -> F.guarantee(F.rethrow(scope.close(ec)), root.releaseChildScope(scope.id))
+        );
+    }
+
+    private Higher<F, Unit> complete() {
+        if (running.decrementAndGet() == 0) return signalEnd();
+        else return F.unit();
+    }
+
+    private Higher<F, Unit> fail(Token key, Throwable err) {
+        return F.suspend(() -> {
+            if (!error.compareAndSet(null, err)) {
+                return F.unit();
+            }
+            return F.flatMap(cancelOthers(key), u -> signalEnd());
+        });
+    }
+
+    private Higher<F, Unit> signalEnd() {
+        return F.suspend(() -> {
+            if (terminated.compareAndSet(false, true)) return output.offer(Maybe.none());
+            else return F.unit();
+        });
+    }
+
+    /**
+     * Starts the task in a fiber registered under the given key,
+     * the fiber can be canceled by [[stop]] as soon as it is started.
+     */
+    private Higher<F, Unit> fork(Token key, Higher<F, Unit> task) {
+        var unregister = F.delay(() -> {
+            // the fiber might terminate before being registered
+            fibers.compute(key, (k, v) -> v == null ? done : null);
+            return Unit.unit();
+        });
+        return F.uncancelable(F.flatMap(
+            F.start(F.guarantee(task, unregister)),
+            fiber -> {
+                fibers.compute(key, (k, v) -> v == null ? fiber : null);
+                if (stopped && fibers.remove(key, fiber)) return fiber.cancel();
+                else return F.unit();
+            }
+        ));
+    }
+
+    private Higher<F, Either<Throwable, Unit>> cancelLease(Token key) {
+        return F.suspend(() -> {
+            var lease = leases.remove(key);
+            if (lease == null) return F.pure(Either.right(Unit.unit()));
+            else return lease.cancel();
+        });
+    }
+
+    private Higher<F, Unit> cancelOthers(Token self) {
+        return F.suspend(() -> {
+            stopped = true;
+            var cancel = F.unit();
+            for (var key : fibers.keySet()) {
+                if (key == self) continue;
+                var fiber = fibers.remove(key);
+                if (fiber != null && fiber != done) {
+                    cancel = F.flatMap(cancel, u -> F.flatMap(fiber.cancel(), uu -> F.map(cancelLease(key), e -> Unit.unit())));
+                }
+            }
+            return cancel;
+        });
+    }
+
+    private Higher<F, Unit> stop(ExitCase<Throwable> ec) {
+        return F.flatMap(
+            cancelOthers(null),
+            u -> F.flatMap(
+                F.suspend(() -> {
+                    // leases of inner streams canceled before they started
+                    var cancel = F.<Either<Throwable, Unit>>pure(Either.right(Unit.unit()));
+                    for (var key : leases.keySet()) {
+                        cancel = F.flatMap(cancel, e -> cancelLease(key));
+                    }
+                    return cancel;
+                }),
+                e -> F.rethrow(root.close(ec))
+            )
+        );
+    }
+}
@@ -50,6 +50,10 @@ final class Pull<F extends Higher, O, R> {
             .handleErrorWith(t -> Algebra.pure(Either.left(t))));
     }
 
+    static <F extends Higher, O, R> Pull<F, O, R> eval(final Higher<F, R> fr) {
+        return fromFreeC(Algebra.eval(fr));
+    }
+
     static <F extends Higher, O> Pull<F, O, Unit> done() {
         return fromFreeC(Algebra.pure(Unit.unit()));
     }
@@ -57,6 +57,10 @@ abstract class Resource<F extends Higher> {
         public State<F> incLeases() {
             return new State<>(open, finalizer, leases + 1);
         }
+
+        public State<F> decLeases() {
+            return new State<>(open, finalizer, leases - 1);
+        }
     }
 
     static <F extends Higher> State<F> initial() {
@@ -118,7 +122,7 @@ abstract class Resource<F extends Higher> {
                 public Higher<F, Either<Throwable, Unit>> cancel() {
                     return F.flatMap(
                         state.<State<F>>modify(s -> {
-                            var now = s.incLeases();
+                            var now = s.decLeases();
                             return Tuple.of(now, now);
                         }),
                         now -> {
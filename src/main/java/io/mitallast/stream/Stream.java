@@ -1,10 +1,14 @@
 package io.mitallast.stream;
 
 import io.mitallast.categories.Functor;
+import io.mitallast.concurrent.ExecutionContext;
 import io.mitallast.either.Either;
 import io.mitallast.higher.Higher;
 import io.mitallast.io.Async;
+import io.mitallast.io.Concurrent;
+import io.mitallast.io.ContextShift;
 import io.mitallast.io.ExitCase;
+import io.mitallast.io.IO;
 import io.mitallast.io.Sync;
 import io.mitallast.io.Timer;
 import io.mitallast.kernel.Unit;
@@ -17,7 +21,9 @@ import io.mitallast.maybe.Maybe;
 import io.mitallast.product.Tuple;
 import io.mitallast.product.Tuple2;
 
+import java.nio.file.Path;
 import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Iterator;
@@ -80,6 +86,34 @@ public final class Stream<F extends Higher, O> {
         )));
     }
 
+    public Stream<F, Chunk<O>> chunkN(int n, boolean allowFewer) {
+        if (n <= 0) {
+            throw new IllegalArgumentException("n must be positive: " + n);
+        }
+        return invariantOps().repeatPull(tp -> tp.<Chunk<O>>unconsN(n, allowFewer).flatMap(opt -> opt.fold(
+            () -> Pull.pure(Maybe.none()),
+            t -> {
+                var hd = t.t1();
+                var tl = t.t2();
+                return Pull.<F, Chunk<O>>output1(hd).as(Maybe.some(tl));
+            }
+        )));
+    }
+
+    public Stream<F, Chunk<O>> chunkLimit(int n) {
+        if (n <= 0) {
+            throw new IllegalArgumentException("n must be positive: " + n);
+        }
+        return invariantOps().repeatPull(tp -> tp.<Chunk<O>>unconsLimit(n).flatMap(opt -> opt.fold(
+            () -> Pull.pure(Maybe.none()),
+            t -> {
+                var hd = t.t1();
+                var tl = t.t2();
+                return Pull.<F, Chunk<O>>output1(hd).as(Maybe.some(tl));
+            }
+        )));
+    }
+
     public <O2> Stream<F, O2> evalMap(Function1<O, Higher<F, O2>> f) {
         return flatMap(o -> Stream.eval(f.apply(o)));
     }
@@ -128,6 +162,10 @@ public final class Stream<F extends Higher, O> {
         ));
     }
 
+    public Stream<F, Chunk<O>> groupWithin(int n, Duration d, Timer<F> timer, Concurrent<F> F) {
+        return GroupWithin.apply(this, n, d, timer, F);
+    }
+
     public Stream<F, O> handleErrorWith(Function1<Throwable, Stream<F, O>> h) {
         return Stream.fromFreeC(Algebra.scope(get()).handleErrorWith(e -> h.apply(e).get()));
     }
@@ -151,6 +189,44 @@ public final class Stream<F extends Higher, O> {
         )));
     }
 
+    public <O2> Stream<F, O2> parEvalMap(int maxConcurrent, Function1<O, Higher<F, O2>> f, Concurrent<F> F) {
+        return ParEvalMap.apply(this, maxConcurrent, true, f, F);
+    }
+
+    public <O2> Stream<F, O2> parEvalMapUnordered(int maxConcurrent, Function1<O, Higher<F, O2>> f, Concurrent<F> F) {
+        return ParEvalMap.apply(this, maxConcurrent, false, f, F);
+    }
+
+    public Stream<F, O> merge(Stream<F, O> that, Concurrent<F> F) {
+        return Stream.<F, Stream<F, O>>apply(this, that).parJoin(2, F);
+    }
+
+    public Stream<F, O> mergeHaltBoth(Stream<F, O> that, Concurrent<F> F) {
+        return noneTerminate().merge(that.noneTerminate(), F).unNoneTerminate();
+    }
+
+    public Stream<F, O> mergeHaltL(Stream<F, O> that, Concurrent<F> F) {
+        return noneTerminate().merge(that.map(Maybe::some), F).unNoneTerminate();
+    }
+
+    public Stream<F, O> mergeHaltR(Stream<F, O> that, Concurrent<F> F) {
+        return that.mergeHaltL(this, F);
+    }
+
+    public Stream<F, Maybe<O>> noneTerminate() {
+        return this.<Maybe<O>>map(Maybe::some).append(() -> Stream.emit(Maybe.none()));
+    }
+
+    public <O2> Stream<F, O2> parJoin(int maxOpen, Concurrent<F> F) {
+        @SuppressWarnings("unchecked")
+        var cast = (Stream<F, Stream<F, O2>>) this;
+        return ParJoin.apply(cast, maxOpen, F);
+    }
+
+    public <O2> Stream<F, O2> parJoinUnbounded(Concurrent<F> F) {
+        return parJoin(Integer.MAX_VALUE, F);
+    }
+
     public Stream<F, O> repeat() {
         return append(this::repeat);
     }
@@ -167,6 +243,22 @@ public final class Stream<F extends Higher, O> {
         });
     }
 
+    public <O2> Stream<F, O2> unNoneTerminate() {
+        @SuppressWarnings("unchecked")
+        var cast = (Stream<F, Maybe<O2>>) this;
+        return cast.invariantOps().repeatPull(tp -> tp.<O2>uncons().flatMap(opt -> opt.fold(
+            () -> Pull.pure(Maybe.none()),
+            t -> {
+                var hd = t.t1();
+                var tl = t.t2();
+                return hd.indexWhere(Maybe::isEmpty).fold(
+                    () -> Pull.<F, O2>output(hd.map(Maybe::get)).as(Maybe.some(tl)),
+                    idx -> Pull.<F, O2>output(hd.take(idx).map(Maybe::get)).as(Maybe.none())
+                );
+            }
+        )));
+    }
+
     public Stream<F, O> take(long n) {
         return pull().take(n).stream();
     }
@@ -183,15 +275,45 @@ public final class Stream<F extends Higher, O> {
             .stream();
     }
 
+    public Stream<F, O> scope() {
+        return fromFreeC(Algebra.scope(free));
+    }
+
     public Stream<F, O> takeThrough(Predicate<O> p) {
         return this.pull().takeThrough(p).stream();
     }
 
+    public <O2> Stream<F, O2> through(Function1<Stream<F, O>, Stream<F, O2>> f) {
+        return f.apply(this);
+    }
+
     public <O2> Stream<F, O2> drain() {
         return mapChunks(c -> Chunk.empty());
     }
 
-    private ToPull<F, O> pull() {
+    public Stream<F, String> utf8Decode() {
+        @SuppressWarnings("unchecked")
+        var cast = (Stream<F, Byte>) this;
+        return Text.utf8Decode(cast);
+    }
+
+    public Stream<F, Byte> utf8Encode() {
+        @SuppressWarnings("unchecked")
+        var cast = (Stream<F, String>) this;
+        return Text.utf8Encode(cast);
+    }
+
+    public Stream<F, String> lines() {
+        @SuppressWarnings("unchecked")
+        var cast = (Stream<F, Byte>) this;
+        return Text.lines(cast);
+    }
+
+    public Stream<F, Chunk<O>> splitOn(O delimiter) {
+        return Text.splitOn(this, delimiter);
+    }
+
+    ToPull<F, O> pull() {
         return new ToPull<>(free);
     }
 
@@ -205,6 +327,8 @@ public final class Stream<F extends Higher, O> {
 
     // ------------- static
 
+    private static final int defaultChunkSize = 256;
+
     static <F extends Higher, O> Stream<F, O> fromFreeC(FreeC<Algebra<F, O, ?>, Unit> free) {
         return new Stream<>(free);
     }
@@ -291,11 +415,13 @@ public final class Stream<F extends Higher, O> {
     }
 
     public static <F extends Higher, O> Stream<F, O> constant(O o) {
-        return constant(o, 256);
+        return constant(o, defaultChunkSize);
     }
 
     public static <F extends Higher, O> Stream<F, O> constant(O o, int chunkSize) {
-        return Stream.<F, O>chunk(Chunk.fill(chunkSize, o)).repeat();
+        if (chunkSize <= 0) throw new IllegalArgumentException("chunkSize must be greater than 0");
+        var chunk = Chunk.fill(chunkSize, o);
+        return unfoldChunk(chunk, c -> Maybe.some(Tuple.of(c, c)));
     }
 
     public static <F extends Higher> Stream<F, Duration> duration(Sync<F> F) {
@@ -364,19 +490,22 @@ public final class Stream<F extends Higher, O> {
     }
 
     public static <F extends Higher, A> Stream<F, A> fromIterator(Iterator<A> iterator, Sync<F> F) {
-        return Stream.unfoldEval(iterator, it -> F.flatMap(
-            F.delay(it::hasNext),
-            has -> {
-                if (has) {
-                    return F.map(
-                        F.delay(it::next),
-                        a -> Maybe.some(Tuple.of(a, it))
-                    );
-                } else {
-                    return F.none();
-                }
+        return fromIterator(iterator, defaultChunkSize, F);
+    }
+
+    public static <F extends Higher, A> Stream<F, A> fromIterator(Iterator<A> iterator, int chunkSize, Sync<F> F) {
+        if (chunkSize <= 0) throw new IllegalArgumentException("chunkSize must be greater than 0");
+        return Stream.unfoldChunkEval(iterator, it -> F.delay(() -> {
+            var buffer = new ArrayList<A>();
+            while (buffer.size() < chunkSize && it.hasNext()) {
+                buffer.add(it.next());
             }
-        ));
+            if (buffer.isEmpty()) {
+                return Maybe.none();
+            } else {
+                return Maybe.some(Tuple.of(Chunk.buffer(buffer), it));
+            }
+        }));
     }
 
     public static <F extends Higher, A> Stream<F, A> force(Higher<F, Stream<F, A>> f) {
@@ -384,13 +513,48 @@ public final class Stream<F extends Higher, O> {
     }
 
     public static <F extends Higher, A> Stream<F, A> iterate(A start, Function1<A, A> f) {
-        return Stream.<F, A>emit(start).append(() -> iterate(f.apply(start), f));
+        return iterate(start, f, defaultChunkSize);
+    }
+
+    public static <F extends Higher, A> Stream<F, A> iterate(A start, Function1<A, A> f, int chunkSize) {
+        if (chunkSize <= 0) throw new IllegalArgumentException("chunkSize must be greater than 0");
+        return unfoldChunk(start, a -> {
+            var buffer = new ArrayList<A>(chunkSize);
+            var next = a;
+            for (int i = 0; i < chunkSize; i++) {
+                buffer.add(next);
+                next = f.apply(next);
+            }
+            return Maybe.some(Tuple.of(Chunk.buffer(buffer), next));
+        });
     }
 
     public static <F extends Higher, A> Stream<F, A> iterateEval(A start, Function1<A, Higher<F, A>> f) {
         return Stream.<F, A>emit(start).append(() -> eval(f.apply(start)).flatMap(a -> iterateEval(a, f)));
     }
 
+    public static <F extends Higher> Stream<F, Byte> mmap(
+        Path path,
+        ExecutionContext blocker,
+        int windowSize,
+        Sync<F> F,
+        ContextShift<F> cs
+    ) {
+        return MemoryMapped.apply(path, blocker, 0, Long.MAX_VALUE, windowSize, F, cs);
+    }
+
+    public static <F extends Higher> Stream<F, Byte> mmapRange(
+        Path path,
+        ExecutionContext blocker,
+        long offset,
+        long length,
+        int windowSize,
+        Sync<F> F,
+        ContextShift<F> cs
+    ) {
+        return MemoryMapped.apply(path, blocker, offset, length, windowSize, F, cs);
+    }
+
     public static <F extends Higher> Stream<F, Unit> never(Async<F> F) {
         return Stream.eval(F.never());
     }
@@ -429,13 +593,30 @@ public final class Stream<F extends Higher, O> {
     }
 
     public static <F extends Higher> Stream<F, Integer> range(int start, int stopExclusive, int by) {
-        return unfold(start, i -> {
-            if ((by > 0 && i < stopExclusive && start < stopExclusive) ||
-                (by < 0 && i > stopExclusive && start > stopExclusive)) {
-                return Maybe.some(Tuple.of(i, i + by));
+        return range(start, stopExclusive, by, defaultChunkSize);
+    }
+
+    public static <F extends Higher> Stream<F, Integer> range(int start, int stopExclusive, int by, int chunkSize) {
+        if (chunkSize <= 0) throw new IllegalArgumentException("chunkSize must be greater than 0");
+        return unfoldChunk(start, i -> {
+            long remaining;
+            if (by > 0 && i < stopExclusive) {
+                remaining = ((long) stopExclusive - i + by - 1) / by;
+            } else if (by < 0 && i > stopExclusive) {
+                remaining = ((long) i - stopExclusive - by - 1) / -(long) by;
             } else {
                 return Maybe.none();
             }
+            var n = (int) Math.max(1, Math.min(remaining, chunkSize));
+            var values = new int[n];
+            var value = i;
+            for (int k = 0; k < n; k++) {
+                values[k] = value;
+                value += by;
+            }
+            // past the end, the next step terminates without overflowing
+            var next = n == remaining ? stopExclusive : (int) (i + (long) n * by);
+            return Maybe.some(Tuple.of(Chunk.ints(values), next));
         });
     }
 
@@ -504,7 +685,32 @@ public final class Stream<F extends Higher, O> {
     }
 
     public static <F extends Higher, S, O> Stream<F, O> unfoldChunk(S init, Function1<S, Maybe<Tuple2<Chunk<O>, S>>> f) {
-        return Stream.<F, S, Chunk<O>>unfold(init, f).flatMap(Stream::chunk);
+        var loop = new Function1<S, Stream<F, O>>() {
+            @Override
+            public Stream<F, O> apply(final S s) {
+                return f.apply(s).fold(
+                    Stream::empty,
+                    t -> Stream.<F, O>chunk(t.t1()).append(() -> this.apply(t.t2()))
+                );
+            }
+        };
+        return suspend(() -> loop.apply(init));
+    }
+
+    public static <F extends Higher, S, O> Stream<F, O> unfoldChunkEval(
+        final S init,
+        final Function1<S, Higher<F, Maybe<Tuple2<Chunk<O>, S>>>> f
+    ) {
+        var loop = new Function1<S, Stream<F, O>>() {
+            @Override
+            public Stream<F, O> apply(final S s) {
+                return eval(f.apply(s)).flatMap(m -> m.fold(
+                    Stream::empty,
+                    t -> Stream.<F, O>chunk(t.t1()).append(() -> this.apply(t.t2()))
+                ));
+            }
+        };
+        return suspend(() -> loop.apply(init));
     }
 
     public static <F extends Higher, S, O> Stream<F, O> unfoldEval(
@@ -568,24 +774,46 @@ public final class Stream<F extends Higher, O> {
             })));
         }
 
-        public Pull<F, O, Maybe<Tuple2<Chunk<O>, Stream<F, O>>>> unconsN(int n, boolean allowFewer) {
+        /**
+         * Like [[uncons]], but returns a [[StepLeg]] that can be stepped later
+         * from another stream, in the scope the leg was produced in.
+         */
+        public Pull<F, O, Maybe<StepLeg<F, O>>> stepLeg() {
+            return Pull.fromFreeC(Algebra.<F, O>getScope().flatMap(scope ->
+                Algebra.stepLeg(new StepLeg<>(Chunk.empty(), scope.id, free))
+            ));
+        }
+
+        public <O2> Pull<F, O2, Maybe<Tuple2<Chunk<O>, Stream<F, O>>>> unconsLimit(int n) {
+            return this.<O2>uncons().map(opt -> opt.map(t -> {
+                var hd = t.t1();
+                var tl = t.t2();
+                if (hd.size() <= n) return t;
+                else {
+                    var fx = hd.splitAt(n);
+                    return Tuple.of(fx.t1(), tl.cons(fx.t2()));
+                }
+            }));
+        }
+
+        public <O2> Pull<F, O2, Maybe<Tuple2<Chunk<O>, Stream<F, O>>>> unconsN(int n, boolean allowFewer) {
             if (n <= 0) return Pull.pure(Maybe.some(Tuple.of(Chunk.empty(), self())));
             else {
                 var go = new Function3<
                     List<Chunk<O>>,
                     Integer,
                     Stream<F, O>,
-                    Pull<F, O, Maybe<Tuple2<Chunk<O>, Stream<F, O>>>>>() {
+                    Pull<F, O2, Maybe<Tuple2<Chunk<O>, Stream<F, O>>>>>() {
 
                     @Override
-                    public Pull<F, O, Maybe<Tuple2<Chunk<O>, Stream<F, O>>>> apply(
+                    public Pull<F, O2, Maybe<Tuple2<Chunk<O>, Stream<F, O>>>> apply(
                         final List<Chunk<O>> acc,
                         final Integer n,
                         final Stream<F, O> s) {
                         var go = this;
 
                         return s.pull()
-                            .<O>uncons()
+                            .<O2>uncons()
                             .flatMap(opt -> opt.fold(
                                 () -> {
                                     if (allowFewer && acc.nonEmpty()) {
@@ -645,7 +873,7 @@ public final class Stream<F extends Higher, O> {
                     @Override
                     public Pull<F, O, Chunk.CQueue<O>> apply(Chunk.CQueue<O> acc, Stream<F, O> s) {
                         var go = this;
-                        return s.pull().unconsN(n, true).flatMap(opt -> opt.fold(
+                        return s.pull().<O>unconsN(n, true).flatMap(opt -> opt.fold(
                             () -> Pull.pure(acc),
                             t -> {
                                 var hd = t.t1();
@@ -739,6 +967,24 @@ public final class Stream<F extends Higher, O> {
                 }
             };
         }
+
+        static Compiler<IO, IO> io() {
+            return new Compiler<>() {
+                @Override
+                public <O, B, C> IO<C> apply(final Stream<IO, O> s,
+                                             final Supplier<B> init,
+                                             final Function2<B, Chunk<O>, B> foldChunk,
+                                             final Function1<B, C> finalize) {
+                    var F = IO.effect();
+                    return IO.delay(init).flatMap(i ->
+                        ((IO<CompileScope<IO>>) CompileScope.newRoot(F)).bracketCase(
+                            scope -> Algebra.compileIO(s.get(), scope, i, foldChunk),
+                            (scope, ec) -> (IO<Unit>) F.rethrow(scope.close(ec))
+                        )
+                    ).map(finalize);
+                }
+            };
+        }
     }
 
     public final static class CompileOps<F extends Higher, G extends Higher, O> {
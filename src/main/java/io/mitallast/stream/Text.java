@@ -0,0 +1,227 @@
+package io.mitallast.stream;
+
+import io.mitallast.higher.Higher;
+import io.mitallast.kernel.Unit;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Objects;
+
+/**
+ * Implementation of the text transformations: `utf8Decode`, `utf8Encode`,
+ * `splitOn` and `lines`.
+ * <p>
+ * They work a chunk at a time. The decoder carries the bytes of a code
+ * point split between two chunks over to the next one, and `lines` splits
+ * the bytes on `\n` before decoding, which is safe in UTF-8 as a byte of a
+ * multi-byte code point is never an ASCII byte.
+ */
+final class Text {
+    private Text() {
+    }
+
+    static <F extends Higher> Stream<F, String> utf8Decode(final Stream<F, Byte> s) {
+        // the decoder is stateful, a new one for each run of the stream
+        return Stream.suspend(() -> new Utf8Decoder().<F>go(s).stream());
+    }
+
+    static <F extends Higher> Stream<F, Byte> utf8Encode(final Stream<F, String> s) {
+        return s.mapChunks(c -> {
+            if (c.size() == 1) {
+                return Chunk.bytes(c.apply(0).getBytes(StandardCharsets.UTF_8));
+            }
+            var encoded = new byte[c.size()][];
+            var size = 0;
+            for (int i = 0; i < encoded.length; i++) {
+                encoded[i] = c.apply(i).getBytes(StandardCharsets.UTF_8);
+                size += encoded[i].length;
+            }
+            var bytes = new byte[size];
+            var position = 0;
+            for (var e : encoded) {
+                System.arraycopy(e, 0, bytes, position, e.length);
+                position += e.length;
+            }
+            return Chunk.bytes(bytes);
+        });
+    }
+
+    static <F extends Higher> Stream<F, String> lines(final Stream<F, Byte> s) {
+        return splitOn(s, (byte) '\n').map(line -> {
+            var size = line.size();
+            if (size > 0 && line.apply(size - 1) == '\r') {
+                line = line.take(size - 1);
+            }
+            return Chunk.utf8String(line);
+        });
+    }
+
+    static <F extends Higher, O> Stream<F, Chunk<O>> splitOn(final Stream<F, O> s, final O delimiter) {
+        return Stream.suspend(() -> splitOn(s, delimiter, new ArrayList<>()).stream());
+    }
+
+    /**
+     * @param carry the chunks of the segment not terminated yet
+     */
+    private static <F extends Higher, O> Pull<F, Chunk<O>, Unit> splitOn(
+        final Stream<F, O> s,
+        final O delimiter,
+        final ArrayList<Chunk<O>> carry
+    ) {
+        return s.pull().<Chunk<O>>uncons().flatMap(opt -> opt.fold(
+            () -> carry.isEmpty() ? Pull.done() : Pull.output1(concat(carry)),
+            t -> {
+                var c = t.t1();
+                var segments = new ArrayList<Chunk<O>>();
+                var from = 0;
+                var index = indexOf(c, delimiter, from);
+                while (index >= 0) {
+                    var segment = slice(c, from, index);
+                    if (carry.isEmpty()) {
+                        segments.add(segment);
+                    } else {
+                        carry.add(segment);
+                        segments.add(concat(carry));
+                        carry.clear();
+                    }
+                    from = index + 1;
+                    index = indexOf(c, delimiter, from);
+                }
+                if (from < c.size()) {
+                    carry.add(slice(c, from, c.size()));
+                }
+                var next = splitOn(t.t2(), delimiter, carry);
+                if (segments.isEmpty()) return next;
+                else return Pull.<F, Chunk<O>>output(Chunk.indexedSeq(segments)).flatMap(u -> next);
+            }
+        ));
+    }
+
+    private static <O> int indexOf(final Chunk<O> c, final O delimiter, final int from) {
+        var size = c.size();
+        if (delimiter instanceof Byte && c instanceof Chunk.ByteChunk) {
+            var bytes = (Chunk.ByteChunk) c;
+            var d = (byte) delimiter;
+            for (int i = from; i < size; i++) {
+                if (bytes.at(i) == d) return i;
+            }
+        } else if (delimiter instanceof Byte && c instanceof Chunk.ByteBufferChunk) {
+            var bytes = (Chunk.ByteBufferChunk) c;
+            var d = (byte) delimiter;
+            for (int i = from; i < size; i++) {
+                if (bytes.at(i) == d) return i;
+            }
+        } else {
+            for (int i = from; i < size; i++) {
+                if (Objects.equals(c.apply(i), delimiter)) return i;
+            }
+        }
+        return -1;
+    }
+
+    private static <O> Chunk<O> slice(final Chunk<O> c, final int from, final int until) {
+        if (from == 0 && until == c.size()) {
+            return c;
+        } else if (c instanceof Chunk.ByteChunk || c instanceof Chunk.ByteBufferChunk) {
+            // shares the bytes
+            return c.drop(from).take(until - from);
+        } else {
+            var b = new ArrayList<O>(until - from);
+            for (int i = from; i < until; i++) {
+                b.add(c.apply(i));
+            }
+            return Chunk.indexedSeq(b);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <O> Chunk<O> concat(final ArrayList<Chunk<O>> chunks) {
+        var size = 0;
+        var bytes = true;
+        for (var c : chunks) {
+            size += c.size();
+            bytes = bytes && (c instanceof Chunk.ByteChunk || c instanceof Chunk.ByteBufferChunk);
+        }
+        if (!bytes) {
+            return Chunk.concat(chunks);
+        }
+        var b = new byte[size];
+        var position = 0;
+        for (var c : chunks) {
+            Chunk.byteBufferView((Chunk<Byte>) c).get(b, position, c.size());
+            position += c.size();
+        }
+        return (Chunk<O>) Chunk.bytes(b);
+    }
+
+    private static final class Utf8Decoder {
+        private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        // bytes of a code point not complete at the end of the previous chunk
+        private final ByteBuffer carry = ByteBuffer.allocate(4);
+        // reused for every chunk
+        private CharBuffer chars = CharBuffer.allocate(256);
+
+        <F extends Higher> Pull<F, String, Unit> go(final Stream<F, Byte> s) {
+            return s.pull().<String>uncons().flatMap(opt -> opt.fold(
+                () -> emit(finish(), Pull.done()),
+                t -> emit(decode(t.t1()), go(t.t2()))
+            ));
+        }
+
+        private <F extends Higher> Pull<F, String, Unit> emit(final String s, final Pull<F, String, Unit> next) {
+            if (s.isEmpty()) return next;
+            else return Pull.<F, String>output1(s).flatMap(u -> next);
+        }
+
+        private String decode(final Chunk<Byte> c) {
+            var in = Chunk.byteBufferView(c);
+            chars.clear();
+            if (carry.position() > 0) {
+                // complete the pending code point, one byte at a time
+                while (in.hasRemaining()) {
+                    carry.put(in.get());
+                    carry.flip();
+                    decode(carry, false);
+                    var complete = !carry.hasRemaining();
+                    carry.compact();
+                    if (complete) break;
+                }
+            }
+            decode(in, false);
+            carry.put(in);
+            chars.flip();
+            return chars.toString();
+        }
+
+        private String finish() {
+            chars.clear();
+            carry.flip();
+            decode(carry, true);
+            while (decoder.flush(chars).isOverflow()) {
+                grow();
+            }
+            carry.clear();
+            chars.flip();
+            return chars.toString();
+        }
+
+        private void decode(final ByteBuffer in, final boolean endOfInput) {
+            while (decoder.decode(in, chars, endOfInput).isOverflow()) {
+                grow();
+            }
+        }
+
+        private void grow() {
+            var grown = CharBuffer.allocate(chars.capacity() * 2);
+            chars.flip();
+            grown.put(chars);
+            chars = grown;
+        }
+    }
+}
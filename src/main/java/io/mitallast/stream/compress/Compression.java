@@ -0,0 +1,389 @@
+package io.mitallast.stream.compress;
+
+import io.mitallast.concurrent.Task;
+import io.mitallast.higher.Higher;
+import io.mitallast.io.Sync;
+import io.mitallast.kernel.Unit;
+import io.mitallast.lambda.Function1;
+import io.mitallast.stream.Chunk;
+import io.mitallast.stream.Stream;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * Compression and decompression pipes, to be used with `through`.
+ * <p>
+ * Every run of a pipe holds a single [[Deflater]] or [[Inflater]], as a
+ * resource of the scope of the stream, which ends it when the scope is
+ * closed. The input is processed a chunk at a time: the output is written
+ * to an array of `bufferSize` bytes, reused across input chunks until it
+ * is full, and emitted as chunks slicing the array, the bytes are never
+ * copied again.
+ */
+public final class Compression {
+    private static final int gzipMagic = 0x8b1f;
+    private static final int headerFlagCrc = 2;
+    private static final int headerFlagExtra = 4;
+    private static final int headerFlagName = 8;
+    private static final int headerFlagComment = 16;
+    private static final byte[] gzipHeader = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0};
+
+    private Compression() {
+    }
+
+    /**
+     * Compresses the bytes with the zlib format.
+     *
+     * @param level the compression level, from 0 to 9, or -1 for the default
+     */
+    public static <F extends Higher> Function1<Stream<F, Byte>, Stream<F, Byte>> deflate(
+        int level,
+        int bufferSize,
+        Sync<F> F
+    ) {
+        return deflate(level, bufferSize, false, F);
+    }
+
+    /**
+     * Compresses the bytes with the zlib format, or the raw deflate format
+     * without header and checksum if `nowrap` is set.
+     */
+    public static <F extends Higher> Function1<Stream<F, Byte>, Stream<F, Byte>> deflate(
+        int level,
+        int bufferSize,
+        boolean nowrap,
+        Sync<F> F
+    ) {
+        checkBufferSize(bufferSize);
+        return in -> Stream.bracket(F.delay(() -> new Deflater(level, nowrap)), d -> end(d::end, F))
+            .flatMap(deflater -> {
+                var output = new Output(bufferSize);
+                return in.chunks()
+                    .evalMap(c -> F.delay(() -> {
+                        deflater.setInput(Chunk.asByteBuffer(c));
+                        while (!deflater.needsInput()) {
+                            output.deflate(deflater);
+                        }
+                        return output.flush();
+                    }))
+                    .append(() -> Stream.eval(F.delay(() -> {
+                        deflater.finish();
+                        while (!deflater.finished()) {
+                            output.deflate(deflater);
+                        }
+                        return output.flush();
+                    })))
+                    .flatMap(Compression::emit);
+            });
+    }
+
+    /**
+     * Decompresses bytes of the zlib format.
+     */
+    public static <F extends Higher> Function1<Stream<F, Byte>, Stream<F, Byte>> inflate(int bufferSize, Sync<F> F) {
+        return inflate(bufferSize, false, F);
+    }
+
+    /**
+     * Decompresses bytes of the zlib format, or the raw deflate format if
+     * `nowrap` is set. Fails if the input ends before the end of the
+     * compressed data, ignores the bytes following it.
+     */
+    public static <F extends Higher> Function1<Stream<F, Byte>, Stream<F, Byte>> inflate(
+        int bufferSize,
+        boolean nowrap,
+        Sync<F> F
+    ) {
+        checkBufferSize(bufferSize);
+        return in -> Stream.bracket(F.delay(() -> new Inflater(nowrap)), i -> end(i::end, F))
+            .flatMap(inflater -> {
+                var output = new Output(bufferSize);
+                return in.chunks()
+                    .evalMap(c -> delay(() -> {
+                        if (!inflater.finished()) {
+                            inflate(inflater, Chunk.asByteBuffer(c), output, null);
+                        }
+                        return output.flush();
+                    }, F))
+                    .append(() -> Stream.eval(F.suspend(() -> {
+                        if (inflater.finished()) return F.pure(new ArrayList<Chunk<Byte>>());
+                        else return F.raiseError(new ZipException("Unexpected end of deflate input"));
+                    })))
+                    .flatMap(Compression::emit);
+            });
+    }
+
+    /**
+     * Compresses the bytes with the gzip format, as a single member.
+     */
+    public static <F extends Higher> Function1<Stream<F, Byte>, Stream<F, Byte>> gzip(
+        int level,
+        int bufferSize,
+        Sync<F> F
+    ) {
+        return in -> Stream.suspend(() -> {
+            var crc = new CRC32();
+            var size = new long[]{0};
+            var checked = in.mapChunks(c -> {
+                crc.update(Chunk.asByteBuffer(c));
+                size[0] += c.size();
+                return c;
+            });
+            return Stream.<F, Byte>chunk(Chunk.bytes(gzipHeader))
+                .append(() -> checked.through(deflate(level, bufferSize, true, F)))
+                .append(() -> Stream.suspend(() -> {
+                    var trailer = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN)
+                        .putInt((int) crc.getValue())
+                        .putInt((int) size[0]);
+                    return Stream.chunk(Chunk.bytes(trailer.array()));
+                }));
+        });
+    }
+
+    /**
+     * Decompresses bytes of the gzip format, which might be made of several
+     * members. Fails if a header, a checksum or the size of a member is
+     * invalid, or if the input ends in the middle of a member.
+     */
+    public static <F extends Higher> Function1<Stream<F, Byte>, Stream<F, Byte>> gunzip(int bufferSize, Sync<F> F) {
+        checkBufferSize(bufferSize);
+        return in -> Stream.bracket(F.delay(() -> new Inflater(true)), i -> end(i::end, F))
+            .flatMap(inflater -> {
+                var gunzip = new Gunzip(inflater, new Output(bufferSize));
+                return in.chunks()
+                    .evalMap(c -> delay(() -> gunzip.decompress(Chunk.asByteBuffer(c)), F))
+                    .append(() -> Stream.eval(F.suspend(() -> {
+                        if (gunzip.atMemberEnd()) return F.pure(new ArrayList<Chunk<Byte>>());
+                        else return F.raiseError(new ZipException("Unexpected end of gzip input"));
+                    })))
+                    .flatMap(Compression::emit);
+            });
+    }
+
+    /**
+     * Inflates the input until it is consumed or the compressed data ends,
+     * in which case the position of the input is right after its end.
+     */
+    private static void inflate(Inflater inflater, ByteBuffer input, Output output, CRC32 crc) throws ZipException {
+        inflater.setInput(input);
+        try {
+            while (!inflater.finished() && !inflater.needsInput()) {
+                if (inflater.needsDictionary()) {
+                    throw new ZipException("Preset dictionaries are not supported");
+                }
+                output.inflate(inflater, crc);
+            }
+        } catch (DataFormatException e) {
+            var ze = new ZipException(e.getMessage());
+            ze.initCause(e);
+            throw ze;
+        }
+    }
+
+    private static <F extends Higher, A> Higher<F, A> delay(Task<A> task, Sync<F> F) {
+        return F.delay(task::runUnsafe);
+    }
+
+    private static <F extends Higher> Higher<F, Unit> end(Runnable end, Sync<F> F) {
+        return F.delay(() -> {
+            end.run();
+            return Unit.unit();
+        });
+    }
+
+    private static void checkBufferSize(int bufferSize) {
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException("bufferSize must be positive: " + bufferSize);
+        }
+    }
+
+    private static <F extends Higher> Stream<F, Byte> emit(ArrayList<Chunk<Byte>> chunks) {
+        if (chunks.size() == 1) return Stream.chunk(chunks.get(0));
+        else return Stream.<F, Chunk<Byte>>emits(chunks).flatMap(Stream::chunk);
+    }
+
+    /**
+     * The output of a run: a buffer filled by the deflater or the inflater,
+     * the bytes written since the last flush are emitted as slices of the
+     * buffers they were written to, one slice per buffer.
+     */
+    private static final class Output {
+        private final int bufferSize;
+        private ArrayList<Chunk<Byte>> pending = new ArrayList<>();
+        private byte[] buffer;
+        private int start;
+        private int position;
+
+        Output(int bufferSize) {
+            this.bufferSize = bufferSize;
+        }
+
+        void deflate(Deflater deflater) {
+            ensureCapacity();
+            position += deflater.deflate(buffer, position, buffer.length - position);
+        }
+
+        void inflate(Inflater inflater, CRC32 crc) throws DataFormatException {
+            ensureCapacity();
+            var n = inflater.inflate(buffer, position, buffer.length - position);
+            if (crc != null) {
+                crc.update(buffer, position, n);
+            }
+            position += n;
+        }
+
+        private void ensureCapacity() {
+            if (buffer == null || position == buffer.length) {
+                slice();
+                // the previous buffer is owned by the emitted chunks
+                buffer = new byte[bufferSize];
+                start = 0;
+                position = 0;
+            }
+        }
+
+        private void slice() {
+            if (position > start) {
+                pending.add(Chunk.bytes(buffer, start, position - start));
+                start = position;
+            }
+        }
+
+        ArrayList<Chunk<Byte>> flush() {
+            slice();
+            var chunks = pending;
+            pending = new ArrayList<>();
+            return chunks;
+        }
+    }
+
+    /**
+     * The state of a gunzip run: parses the header of a member, inflates
+     * its body and checks its trailer, member after member.
+     */
+    private static final class Gunzip {
+        private static final int header = 0;
+        private static final int body = 1;
+        private static final int trailer = 2;
+
+        private final Inflater inflater;
+        private final Output output;
+        private final CRC32 crc = new CRC32();
+        private byte[] pending = new byte[16];
+        private int pendingSize = 0;
+        private int state = header;
+        private int members = 0;
+
+        Gunzip(Inflater inflater, Output output) {
+            this.inflater = inflater;
+            this.output = output;
+        }
+
+        boolean atMemberEnd() {
+            return state == header && pendingSize == 0 && members > 0;
+        }
+
+        ArrayList<Chunk<Byte>> decompress(ByteBuffer input) throws ZipException {
+            while (input.hasRemaining()) {
+                if (state == header) {
+                    append(input);
+                    var length = headerLength();
+                    if (length < 0) break;
+                    input = ByteBuffer.wrap(pending, length, pendingSize - length);
+                    pending = new byte[16];
+                    pendingSize = 0;
+                    state = body;
+                } else if (state == body) {
+                    inflate(inflater, input, output, crc);
+                    if (inflater.finished()) {
+                        state = trailer;
+                    }
+                } else {
+                    while (pendingSize < 8 && input.hasRemaining()) {
+                        pending[pendingSize++] = input.get();
+                    }
+                    if (pendingSize < 8) break;
+                    checkTrailer();
+                    crc.reset();
+                    inflater.reset();
+                    pendingSize = 0;
+                    members++;
+                    state = header;
+                }
+            }
+            return output.flush();
+        }
+
+        private void append(ByteBuffer input) {
+            if (pending.length - pendingSize < input.remaining()) {
+                var grown = new byte[Math.max(pending.length * 2, pendingSize + input.remaining())];
+                System.arraycopy(pending, 0, grown, 0, pendingSize);
+                pending = grown;
+            }
+            var n = input.remaining();
+            input.get(pending, pendingSize, n);
+            pendingSize += n;
+        }
+
+        /**
+         * Returns the length of the header, or -1 if it is not complete yet.
+         */
+        private int headerLength() throws ZipException {
+            if (pendingSize < 10) {
+                return -1;
+            }
+            if (uint16(0) != gzipMagic) {
+                throw new ZipException("Not in gzip format");
+            }
+            if (pending[2] != Deflater.DEFLATED) {
+                throw new ZipException("Unsupported compression method " + pending[2]);
+            }
+            var flags = pending[3];
+            var length = 10;
+            if ((flags & headerFlagExtra) != 0) {
+                if (pendingSize < length + 2) return -1;
+                length += 2 + uint16(length);
+            }
+            if ((flags & headerFlagName) != 0) {
+                length = skipZeroTerminated(length);
+                if (length < 0) return -1;
+            }
+            if ((flags & headerFlagComment) != 0) {
+                length = skipZeroTerminated(length);
+                if (length < 0) return -1;
+            }
+            if ((flags & headerFlagCrc) != 0) {
+                length += 2;
+            }
+            return length <= pendingSize ? length : -1;
+        }
+
+        private int skipZeroTerminated(int from) {
+            for (int i = from; i < pendingSize; i++) {
+                if (pending[i] == 0) return i + 1;
+            }
+            return -1;
+        }
+
+        private void checkTrailer() throws ZipException {
+            var trailer = ByteBuffer.wrap(pending, 0, 8).order(ByteOrder.LITTLE_ENDIAN);
+            if ((trailer.getInt() & 0xffffffffL) != crc.getValue()) {
+                throw new ZipException("Corrupt gzip trailer: crc mismatch");
+            }
+            if ((trailer.getInt() & 0xffffffffL) != (inflater.getBytesWritten() & 0xffffffffL)) {
+                throw new ZipException("Corrupt gzip trailer: size mismatch");
+            }
+        }
+
+        private int uint16(int offset) {
+            return (pending[offset] & 0xff) | ((pending[offset + 1] & 0xff) << 8);
+        }
+    }
+}
@@ -0,0 +1,237 @@
+package io.mitallast.stream.concurrent;
+
+import io.mitallast.concurrent.Deferred;
+import io.mitallast.concurrent.Ref;
+import io.mitallast.higher.Higher;
+import io.mitallast.io.Concurrent;
+import io.mitallast.kernel.Unit;
+import io.mitallast.lambda.Function1;
+import io.mitallast.maybe.Maybe;
+import io.mitallast.product.Tuple;
+import io.mitallast.stream.Chunk;
+import io.mitallast.stream.Stream;
+
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Asynchronous topic, every element published is received by all the
+ * subscribers subscribed at that time.
+ * <p>
+ * Every subscriber has its own bound on the number of chunks published
+ * but not taken by it yet, the publisher semantically blocks while a
+ * subscriber is over its bound, so it only waits on the slowest one.
+ * <p>
+ * The published chunks are linked in a log, each one completes the
+ * [[Deferred]] its predecessor waits its successor on. A chunk is
+ * linked once whatever the number of subscribers, which keep their
+ * own position in the log and drop the chunks they took.
+ */
+public interface Topic<F extends Higher, A> {
+    /**
+     * Publishes all the elements of the stream, a chunk at a time.
+     */
+    Function1<Stream<F, A>, Stream<F, Unit>> publish();
+
+    /**
+     * Publishes one element, semantically blocking while a subscriber
+     * is over its bound.
+     */
+    Higher<F, Unit> publish1(A a);
+
+    /**
+     * Subscribes to the elements published from now on. The subscription
+     * holds at most `maxQueued` published chunks not taken yet, and is
+     * canceled when the stream terminates.
+     */
+    Stream<F, A> subscribe(int maxQueued);
+
+    /**
+     * Number of subscribers, the current one and then every change.
+     * Changes happening faster than they are pulled are conflated.
+     */
+    Stream<F, Integer> subscribers();
+
+    static <F extends Higher, A> Higher<F, Topic<F, A>> apply(Concurrent<F> F) {
+        return F.delay(() -> unsafe(F));
+    }
+
+    static <F extends Higher, A> Topic<F, A> unsafe(Concurrent<F> F) {
+        return new LogTopic<>(F);
+    }
+}
+
+final class LogTopic<F extends Higher, A> implements Topic<F, A> {
+    private final Concurrent<F> F;
+    private final Ref<F, Node> tail;
+    private final Ref<F, State> state;
+
+    LogTopic(Concurrent<F> F) {
+        this.F = F;
+        this.tail = Ref.unsafe(new Node(0, Chunk.empty()), F);
+        this.state = Ref.unsafe(new State(new ArrayList<>()), F);
+    }
+
+    @Override
+    public Function1<Stream<F, A>, Stream<F, Unit>> publish() {
+        return in -> in.chunks().evalMap(this::publish);
+    }
+
+    @Override
+    public Higher<F, Unit> publish1(A a) {
+        return publish(Chunk.singleton(a));
+    }
+
+    private Higher<F, Unit> publish(Chunk<A> chunk) {
+        if (chunk.isEmpty()) return F.unit();
+        return F.flatMap(
+            tail.modify(t -> {
+                var node = new Node(t.seq + 1, chunk);
+                return Tuple.of(node, Tuple.of(t, node));
+            }),
+            t -> F.flatMap(
+                t.t1().next.complete(t.t2()),
+                u -> F.flatMap(state.get(), s -> awaitSubscribers(s.subscribers, 0, t.t2().seq))
+            )
+        );
+    }
+
+    /**
+     * Waits for every subscriber from `i` to be within its bound
+     * once the chunk `seq` is published.
+     */
+    private Higher<F, Unit> awaitSubscribers(ArrayList<Subscriber> subscribers, int i, long seq) {
+        return F.suspend(() -> {
+            for (int j = i; j < subscribers.size(); j++) {
+                var subscriber = subscribers.get(j);
+                if (subscriber.lagging(seq)) {
+                    var index = j;
+                    return F.flatMap(subscriber.await(seq), u -> awaitSubscribers(subscribers, index, seq));
+                }
+            }
+            return F.unit();
+        });
+    }
+
+    @Override
+    public Stream<F, A> subscribe(int maxQueued) {
+        if (maxQueued <= 0) {
+            throw new IllegalArgumentException("maxQueued must be positive: " + maxQueued);
+        }
+        // the position in the log is not part of the resource,
+        // the chunks taken are not retained by the scope
+        return Stream.<F, Subscriber>bracket(register(new Subscriber(maxQueued)), this::unregister)
+            .flatMap(subscriber -> Stream.eval(F.flatMap(tail.get(), t -> F.map(subscriber.advance(t.seq), u -> t)))
+                .flatMap(start -> Stream.unfoldChunkEval(start, node -> F.flatMap(
+                    node.next.get(),
+                    next -> F.map(subscriber.advance(next.seq), u -> Maybe.some(Tuple.of(next.chunk, next)))
+                ))));
+    }
+
+    @Override
+    public Stream<F, Integer> subscribers() {
+        return Stream.eval(state.get()).flatMap(s -> Stream.<F, Integer>emit(s.subscribers.size()).append(() ->
+            Stream.unfoldEval(s, prev -> F.flatMap(
+                prev.changed.get(),
+                u -> F.map(state.get(), next -> Maybe.some(Tuple.of(next.subscribers.size(), next)))
+            ))
+        ));
+    }
+
+    private Higher<F, Subscriber> register(Subscriber subscriber) {
+        return F.map(update(subscribers -> subscribers.add(subscriber)), u -> subscriber);
+    }
+
+    private Higher<F, Unit> unregister(Subscriber subscriber) {
+        return F.flatMap(update(subscribers -> subscribers.remove(subscriber)), u -> subscriber.close());
+    }
+
+    private Higher<F, Unit> update(Consumer<ArrayList<Subscriber>> f) {
+        return F.flatMap(state.modify(s -> {
+            var subscribers = new ArrayList<>(s.subscribers);
+            f.accept(subscribers);
+            return Tuple.of(new State(subscribers), s);
+        }), prev -> prev.changed.complete(Unit.unit()));
+    }
+
+    /**
+     * A published chunk and the deferred completed with the next one.
+     */
+    private final class Node {
+        private final long seq;
+        private final Chunk<A> chunk;
+        private final Deferred<F, Node> next;
+
+        private Node(long seq, Chunk<A> chunk) {
+            this.seq = seq;
+            this.chunk = chunk;
+            this.next = Deferred.unsafe(F);
+        }
+    }
+
+    /**
+     * The subscribers, copied on every change, and the deferred
+     * completed on the next change.
+     */
+    private final class State {
+        private final ArrayList<Subscriber> subscribers;
+        private final Deferred<F, Unit> changed;
+
+        private State(ArrayList<Subscriber> subscribers) {
+            this.subscribers = subscribers;
+            this.changed = Deferred.unsafe(F);
+        }
+    }
+
+    private final class Subscriber {
+        private final int maxQueued;
+        // the last chunk taken, not lagging until it knows its position
+        private volatile long taken = Long.MAX_VALUE;
+        private volatile boolean closed = false;
+        // completed when a chunk is taken, by the publishers waiting on it
+        private final AtomicReference<Deferred<F, Unit>> progress = new AtomicReference<>();
+
+        private Subscriber(int maxQueued) {
+            this.maxQueued = maxQueued;
+        }
+
+        private boolean lagging(long seq) {
+            return !closed && seq - taken > maxQueued;
+        }
+
+        private Higher<F, Unit> await(long seq) {
+            return F.suspend(() -> {
+                var p = progress.get();
+                if (p == null) {
+                    var created = Deferred.<F, Unit>unsafe(F);
+                    p = progress.compareAndSet(null, created) ? created : progress.get();
+                    if (p == null) return F.unit();
+                }
+                // taken or closed before the deferred was installed
+                if (!lagging(seq)) return F.unit();
+                return p.get();
+            });
+        }
+
+        private Higher<F, Unit> advance(long seq) {
+            return F.suspend(() -> {
+                taken = seq;
+                return wakeUp();
+            });
+        }
+
+        private Higher<F, Unit> close() {
+            return F.suspend(() -> {
+                closed = true;
+                return wakeUp();
+            });
+        }
+
+        private Higher<F, Unit> wakeUp() {
+            var p = progress.getAndSet(null);
+            if (p == null) return F.unit();
+            else return p.complete(Unit.unit());
+        }
+    }
+}
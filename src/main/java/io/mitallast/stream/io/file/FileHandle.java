@@ -0,0 +1,140 @@
+package io.mitallast.stream.io.file;
+
+import io.mitallast.concurrent.ExecutionContext;
+import io.mitallast.concurrent.Task;
+import io.mitallast.higher.Higher;
+import io.mitallast.io.ContextShift;
+import io.mitallast.io.Sync;
+import io.mitallast.kernel.Unit;
+import io.mitallast.maybe.Maybe;
+import io.mitallast.stream.Chunk;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.util.Set;
+
+/**
+ * Provides the ability to read from and write to a file.
+ * <p>
+ * The file operations are blocking, they are evaluated on the blocking
+ * execution context the handle was opened with and the evaluation shifts
+ * back to the default execution environment of `F` when they complete.
+ */
+public interface FileHandle<F extends Higher> {
+    /**
+     * Forces any updates to the underlying file to be written to storage.
+     *
+     * @param metaData whether the file metadata is written too
+     */
+    Higher<F, Unit> force(boolean metaData);
+
+    /**
+     * Reads up to `numBytes` bytes from the file at the given offset,
+     * returns none at the end of the file.
+     */
+    Higher<F, Maybe<Chunk<Byte>>> read(int numBytes, long offset);
+
+    /**
+     * Returns the current size of the file.
+     */
+    Higher<F, Long> size();
+
+    /**
+     * Truncates the file to the given size, does nothing if the file
+     * is not larger.
+     */
+    Higher<F, Unit> truncate(long size);
+
+    /**
+     * Writes the bytes to the file at the given offset, returns the number
+     * of bytes written, which might be less than the size of the chunk.
+     */
+    Higher<F, Integer> write(Chunk<Byte> bytes, long offset);
+
+    /**
+     * Closes the file.
+     */
+    Higher<F, Unit> close();
+
+    /**
+     * Opens the file with the given options.
+     */
+    static <F extends Higher> Higher<F, FileHandle<F>> open(
+        Path path,
+        ExecutionContext blocker,
+        Set<? extends OpenOption> flags,
+        Sync<F> F,
+        ContextShift<F> cs
+    ) {
+        Task<FileHandle<F>> open = () -> new ChannelFileHandle<>(FileChannel.open(path, flags), blocker, F, cs);
+        return cs.evalOn(blocker, F.delay(open::runUnsafe));
+    }
+}
+
+final class ChannelFileHandle<F extends Higher> implements FileHandle<F> {
+    private final FileChannel channel;
+    private final ExecutionContext blocker;
+    private final Sync<F> F;
+    private final ContextShift<F> cs;
+
+    ChannelFileHandle(FileChannel channel, ExecutionContext blocker, Sync<F> F, ContextShift<F> cs) {
+        this.channel = channel;
+        this.blocker = blocker;
+        this.F = F;
+        this.cs = cs;
+    }
+
+    private <A> Higher<F, A> blocking(Task<A> thunk) {
+        return cs.evalOn(blocker, F.delay(thunk::runUnsafe));
+    }
+
+    @Override
+    public Higher<F, Unit> force(boolean metaData) {
+        return blocking(() -> {
+            channel.force(metaData);
+            return Unit.unit();
+        });
+    }
+
+    @Override
+    public Higher<F, Maybe<Chunk<Byte>>> read(int numBytes, long offset) {
+        return blocking(() -> {
+            // a heap buffer per chunk, the emitted chunks outlive the read;
+            // the channel reads through its own cached direct buffer
+            var buffer = ByteBuffer.allocate(numBytes);
+            var read = channel.read(buffer, offset);
+            if (read < 0) {
+                return Maybe.none();
+            }
+            return Maybe.some(Chunk.byteBuffer(buffer.flip()));
+        });
+    }
+
+    @Override
+    public Higher<F, Long> size() {
+        return blocking(channel::size);
+    }
+
+    @Override
+    public Higher<F, Unit> truncate(long size) {
+        return blocking(() -> {
+            channel.truncate(size);
+            return Unit.unit();
+        });
+    }
+
+    @Override
+    public Higher<F, Integer> write(Chunk<Byte> bytes, long offset) {
+        return blocking(() -> channel.write(Chunk.asByteBuffer(bytes), offset));
+    }
+
+    @Override
+    public Higher<F, Unit> close() {
+        return blocking(() -> {
+            channel.close();
+            return Unit.unit();
+        });
+    }
+}
@@ -0,0 +1,182 @@
+package io.mitallast.stream.io.file;
+
+import io.mitallast.concurrent.ExecutionContext;
+import io.mitallast.higher.Higher;
+import io.mitallast.io.ContextShift;
+import io.mitallast.io.Sync;
+import io.mitallast.io.Timer;
+import io.mitallast.kernel.Unit;
+import io.mitallast.lambda.Function1;
+import io.mitallast.maybe.Maybe;
+import io.mitallast.product.Tuple;
+import io.mitallast.stream.Chunk;
+import io.mitallast.stream.Stream;
+
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.Set;
+
+/**
+ * Streams reading and writing files through a [[FileHandle]].
+ * <p>
+ * The bytes are emitted as buffer backed chunks, the file is read
+ * `chunkSize` bytes at a time and closed when the scope of the stream
+ * is closed. Blocking calls are evaluated on the `blocker` context.
+ */
+public final class FileStreams {
+    private FileStreams() {
+    }
+
+    /**
+     * Reads all the bytes of the file.
+     */
+    public static <F extends Higher> Stream<F, Byte> readAll(
+        Path path,
+        ExecutionContext blocker,
+        int chunkSize,
+        Sync<F> F,
+        ContextShift<F> cs
+    ) {
+        return readRange(path, blocker, chunkSize, 0, Long.MAX_VALUE, F, cs);
+    }
+
+    /**
+     * Reads the bytes of the file from `start` inclusive to `end` exclusive,
+     * or to the end of the file if it is shorter.
+     */
+    public static <F extends Higher> Stream<F, Byte> readRange(
+        Path path,
+        ExecutionContext blocker,
+        int chunkSize,
+        long start,
+        long end,
+        Sync<F> F,
+        ContextShift<F> cs
+    ) {
+        checkChunkSize(chunkSize);
+        return open(path, blocker, Set.of(StandardOpenOption.READ), F, cs)
+            .flatMap(h -> Stream.unfoldChunkEval(start, offset -> {
+                if (offset >= end) {
+                    return F.none();
+                }
+                var n = (int) Math.min(chunkSize, end - offset);
+                return F.map(h.read(n, offset), opt -> opt.map(c -> Tuple.of(c, offset + c.size())));
+            }));
+    }
+
+    /**
+     * Reads the bytes of the file from `offset` and follows its growth:
+     * at the end of the file the read is retried every `pollDelay`.
+     * The stream never terminates by itself.
+     */
+    public static <F extends Higher> Stream<F, Byte> tail(
+        Path path,
+        ExecutionContext blocker,
+        int chunkSize,
+        long offset,
+        Duration pollDelay,
+        Sync<F> F,
+        ContextShift<F> cs,
+        Timer<F> timer
+    ) {
+        checkChunkSize(chunkSize);
+        return open(path, blocker, Set.of(StandardOpenOption.READ), F, cs)
+            .flatMap(h -> Stream.unfoldChunkEval(offset, position -> F.map(
+                readOrWait(h, chunkSize, position, pollDelay, F, timer),
+                c -> Maybe.some(Tuple.of(c, position + c.size()))
+            )));
+    }
+
+    private static <F extends Higher> Higher<F, Chunk<Byte>> readOrWait(
+        FileHandle<F> h,
+        int chunkSize,
+        long offset,
+        Duration pollDelay,
+        Sync<F> F,
+        Timer<F> timer
+    ) {
+        return F.flatMap(h.read(chunkSize, offset), opt -> {
+            if (opt.isDefined() && opt.get().nonEmpty()) {
+                return F.pure(opt.get());
+            } else {
+                return F.flatMap(timer.sleep(pollDelay), u -> readOrWait(h, chunkSize, offset, pollDelay, F, timer));
+            }
+        });
+    }
+
+    /**
+     * Writes all the bytes of the stream to the file, which is created
+     * if it doesn't exist and truncated otherwise.
+     */
+    public static <F extends Higher> Function1<Stream<F, Byte>, Stream<F, Unit>> writeAll(
+        Path path,
+        ExecutionContext blocker,
+        Sync<F> F,
+        ContextShift<F> cs
+    ) {
+        return writeAll(
+            path,
+            blocker,
+            Set.of(StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE),
+            F,
+            cs
+        );
+    }
+
+    /**
+     * Writes all the bytes of the stream to the file opened with the given
+     * options, starting at the beginning of the file.
+     */
+    public static <F extends Higher> Function1<Stream<F, Byte>, Stream<F, Unit>> writeAll(
+        Path path,
+        ExecutionContext blocker,
+        Set<? extends OpenOption> flags,
+        Sync<F> F,
+        ContextShift<F> cs
+    ) {
+        return in -> open(path, blocker, flags, F, cs).flatMap(h -> {
+            // a new handle for each run of the stream, so is the offset
+            var offset = new long[]{0};
+            return in.chunks().evalMap(c -> F.map(
+                writeFully(h, c, offset[0], F),
+                u -> {
+                    offset[0] += c.size();
+                    return u;
+                }
+            ));
+        }).drain();
+    }
+
+    private static <F extends Higher> Higher<F, Unit> writeFully(
+        FileHandle<F> h,
+        Chunk<Byte> bytes,
+        long offset,
+        Sync<F> F
+    ) {
+        if (bytes.isEmpty()) {
+            return F.unit();
+        }
+        return F.flatMap(h.write(bytes, offset), written -> {
+            if (written < bytes.size()) return writeFully(h, bytes.drop(written), offset + written, F);
+            else return F.unit();
+        });
+    }
+
+    private static <F extends Higher> Stream<F, FileHandle<F>> open(
+        Path path,
+        ExecutionContext blocker,
+        Set<? extends OpenOption> flags,
+        Sync<F> F,
+        ContextShift<F> cs
+    ) {
+        return Stream.bracket(FileHandle.open(path, blocker, flags, F, cs), FileHandle::close);
+    }
+
+    private static void checkChunkSize(int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("chunkSize must be positive: " + chunkSize);
+        }
+    }
+}
@@ -0,0 +1,285 @@
+package io.mitallast.stream.io.tcp;
+
+import io.mitallast.concurrent.Semaphore;
+import io.mitallast.concurrent.Task;
+import io.mitallast.either.Either;
+import io.mitallast.higher.Higher;
+import io.mitallast.io.Concurrent;
+import io.mitallast.kernel.Unit;
+import io.mitallast.lambda.Function1;
+import io.mitallast.maybe.Maybe;
+import io.mitallast.product.Tuple;
+import io.mitallast.stream.Chunk;
+import io.mitallast.stream.Stream;
+import io.mitallast.stream.io.BufferPool;
+
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousSocketChannel;
+import java.nio.channels.CompletionHandler;
+import java.util.ArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Provides the ability to read from and write to a TCP connection.
+ * <p>
+ * The operations are asynchronous, they complete on a thread of the
+ * channel group the socket belongs to. A read is started only when it is
+ * evaluated, so a stream of reads back-pressures the peer through the TCP
+ * window when its consumer is slow. Reads and writes go through direct
+ * buffers borrowed from a pool.
+ */
+public interface Socket<F extends Higher> {
+    /**
+     * Reads up to `maxBytes` bytes from the peer, returns none at the end
+     * of the input. Semantically blocks until some bytes are available.
+     */
+    Higher<F, Maybe<Chunk<Byte>>> read(int maxBytes);
+
+    /**
+     * Reads exactly `numBytes` bytes from the peer, unless the end of the
+     * input is reached first, returns none if no byte was read.
+     */
+    Higher<F, Maybe<Chunk<Byte>>> readN(int numBytes);
+
+    /**
+     * Reads the bytes from the peer in chunks of up to `maxBytes` bytes,
+     * until the end of the input.
+     */
+    Stream<F, Byte> reads(int maxBytes);
+
+    /**
+     * Writes all the bytes to the peer, completes when they are written.
+     */
+    Higher<F, Unit> write(Chunk<Byte> bytes);
+
+    /**
+     * Writes all the bytes of the stream to the peer, chunk by chunk.
+     */
+    Function1<Stream<F, Byte>, Stream<F, Unit>> writes();
+
+    /**
+     * Shuts down the input side, the next reads return none.
+     */
+    Higher<F, Unit> endOfInput();
+
+    /**
+     * Shuts down the output side, the peer reads the end of its input.
+     */
+    Higher<F, Unit> endOfOutput();
+
+    /**
+     * Closes the connection.
+     */
+    Higher<F, Unit> close();
+
+    Higher<F, SocketAddress> remoteAddress();
+
+    Higher<F, SocketAddress> localAddress();
+}
+
+final class AsyncSocket<F extends Higher> implements Socket<F> {
+    private final AsynchronousSocketChannel channel;
+    private final BufferPool pool;
+    private final Concurrent<F> F;
+    // the channel allows a single pending read and a single pending write
+    private final Semaphore<F> readSemaphore;
+    private final Semaphore<F> writeSemaphore;
+
+    AsyncSocket(AsynchronousSocketChannel channel, BufferPool pool, Concurrent<F> F) {
+        this.channel = channel;
+        this.pool = pool;
+        this.F = F;
+        this.readSemaphore = Semaphore.unsafe(1, F);
+        this.writeSemaphore = Semaphore.unsafe(1, F);
+    }
+
+    private <A> Higher<F, A> delay(Task<A> task) {
+        return F.delay(task::runUnsafe);
+    }
+
+    @Override
+    public Higher<F, Maybe<Chunk<Byte>>> read(int maxBytes) {
+        checkPositive("maxBytes", maxBytes);
+        return readSemaphore.withPermit(F.async(cb -> new Reader(maxBytes, cb).start()));
+    }
+
+    @Override
+    public Higher<F, Maybe<Chunk<Byte>>> readN(int numBytes) {
+        checkPositive("numBytes", numBytes);
+        return readN(numBytes, new ArrayList<>(), 0);
+    }
+
+    private Higher<F, Maybe<Chunk<Byte>>> readN(int numBytes, ArrayList<Chunk<Byte>> acc, int size) {
+        return F.flatMap(read(numBytes - size), opt -> {
+            if (opt.isDefined() && size + opt.get().size() < numBytes) {
+                acc.add(opt.get());
+                return readN(numBytes, acc, size + opt.get().size());
+            }
+            opt.foreach(acc::add);
+            if (acc.isEmpty()) return F.none();
+            else return F.pure(Maybe.some(Chunk.concat(acc)));
+        });
+    }
+
+    @Override
+    public Stream<F, Byte> reads(int maxBytes) {
+        checkPositive("maxBytes", maxBytes);
+        return Stream.unfoldChunkEval(Unit.unit(), u -> F.map(read(maxBytes), opt -> opt.map(c -> Tuple.of(c, u))));
+    }
+
+    @Override
+    public Higher<F, Unit> write(Chunk<Byte> bytes) {
+        if (bytes.isEmpty()) {
+            return F.unit();
+        }
+        return writeSemaphore.withPermit(F.async(cb -> new Writer(Chunk.asByteBuffer(bytes), cb).start()));
+    }
+
+    @Override
+    public Function1<Stream<F, Byte>, Stream<F, Unit>> writes() {
+        return in -> in.chunks().evalMap(this::write);
+    }
+
+    @Override
+    public Higher<F, Unit> endOfInput() {
+        return delay(() -> {
+            channel.shutdownInput();
+            return Unit.unit();
+        });
+    }
+
+    @Override
+    public Higher<F, Unit> endOfOutput() {
+        return delay(() -> {
+            channel.shutdownOutput();
+            return Unit.unit();
+        });
+    }
+
+    @Override
+    public Higher<F, Unit> close() {
+        return delay(() -> {
+            channel.close();
+            return Unit.unit();
+        });
+    }
+
+    @Override
+    public Higher<F, SocketAddress> remoteAddress() {
+        return delay(channel::getRemoteAddress);
+    }
+
+    @Override
+    public Higher<F, SocketAddress> localAddress() {
+        return delay(channel::getLocalAddress);
+    }
+
+    // an empty read buffer would complete every read with no byte
+    private static void checkPositive(String name, int n) {
+        if (n <= 0) {
+            throw new IllegalArgumentException(name + " must be positive: " + n);
+        }
+    }
+
+    /**
+     * Reads into a pooled buffer and copies the bytes out. The buffer is
+     * given back by the completion handler only: if the read is canceled
+     * the channel still owns the buffer until the read completes.
+     */
+    private final class Reader implements CompletionHandler<Integer, Void> {
+        private final Consumer<Either<Throwable, Maybe<Chunk<Byte>>>> cb;
+        private final ByteBuffer buffer;
+
+        Reader(int maxBytes, Consumer<Either<Throwable, Maybe<Chunk<Byte>>>> cb) {
+            this.cb = cb;
+            this.buffer = pool.acquire();
+            buffer.limit(Math.min(maxBytes, buffer.capacity()));
+        }
+
+        void start() {
+            try {
+                channel.read(buffer, null, this);
+            } catch (Throwable e) {
+                failed(e, null);
+            }
+        }
+
+        @Override
+        public void completed(Integer read, Void attachment) {
+            Maybe<Chunk<Byte>> result;
+            if (read < 0) {
+                result = Maybe.none();
+            } else {
+                var bytes = new byte[read];
+                buffer.flip().get(bytes);
+                result = Maybe.some(Chunk.bytes(bytes));
+            }
+            pool.release(buffer);
+            cb.accept(Either.right(result));
+        }
+
+        @Override
+        public void failed(Throwable e, Void attachment) {
+            pool.release(buffer);
+            cb.accept(Either.left(e));
+        }
+    }
+
+    /**
+     * Copies the bytes window by window into a pooled buffer and writes
+     * each window fully before completing.
+     */
+    private final class Writer implements CompletionHandler<Integer, Void> {
+        private final ByteBuffer bytes;
+        private final Consumer<Either<Throwable, Unit>> cb;
+        private final ByteBuffer buffer;
+
+        Writer(ByteBuffer bytes, Consumer<Either<Throwable, Unit>> cb) {
+            this.bytes = bytes;
+            this.cb = cb;
+            this.buffer = pool.acquire();
+        }
+
+        void start() {
+            fill();
+            write();
+        }
+
+        private void fill() {
+            var n = Math.min(bytes.remaining(), buffer.capacity());
+            var window = bytes.duplicate();
+            window.limit(window.position() + n);
+            buffer.clear();
+            buffer.put(window).flip();
+            bytes.position(bytes.position() + n);
+        }
+
+        private void write() {
+            try {
+                channel.write(buffer, null, this);
+            } catch (Throwable e) {
+                failed(e, null);
+            }
+        }
+
+        @Override
+        public void completed(Integer written, Void attachment) {
+            if (buffer.hasRemaining()) {
+                write();
+            } else if (bytes.hasRemaining()) {
+                fill();
+                write();
+            } else {
+                pool.release(buffer);
+                cb.accept(Either.right(Unit.unit()));
+            }
+        }
+
+        @Override
+        public void failed(Throwable e, Void attachment) {
+            pool.release(buffer);
+            cb.accept(Either.left(e));
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package io.mitallast.stream.io.tcp;
+
+import io.mitallast.concurrent.Task;
+import io.mitallast.either.Either;
+import io.mitallast.higher.Higher;
+import io.mitallast.io.Concurrent;
+import io.mitallast.kernel.Unit;
+import io.mitallast.stream.Stream;
+import io.mitallast.stream.io.BufferPool;
+
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.channels.AsynchronousChannelGroup;
+import java.nio.channels.AsynchronousServerSocketChannel;
+import java.nio.channels.AsynchronousSocketChannel;
+import java.nio.channels.Channel;
+import java.nio.channels.CompletionHandler;
+import java.util.function.Consumer;
+
+/**
+ * Streams of TCP [[Socket]]s, over the asynchronous channels of NIO.
+ * <p>
+ * The channels are bound to an [[AsynchronousChannelGroup]], its threads
+ * wait for the readiness of all the sockets of the group and complete
+ * their operations, so a few threads serve any number of connections.
+ * Every socket is a resource of the scope of its stream, it is closed when
+ * the scope is closed.
+ */
+public final class TcpStreams {
+    // shared by all the sockets, a pending read holds a buffer
+    private static final BufferPool pool = new BufferPool(16 * 1024, 1024);
+
+    private TcpStreams() {
+    }
+
+    /**
+     * Connects to the remote address, emits the connected socket.
+     */
+    public static <F extends Higher> Stream<F, Socket<F>> client(
+        InetSocketAddress to,
+        AsynchronousChannelGroup group,
+        Concurrent<F> F
+    ) {
+        var connect = F.flatMap(
+            delay(() -> AsynchronousSocketChannel.open(group), F),
+            channel -> F.handleErrorWith(
+                F.map(
+                    TcpStreams.<F, Void>async(h -> channel.connect(to, null, h), F),
+                    u -> (Socket<F>) new AsyncSocket<>(channel, pool, F)
+                ),
+                e -> F.flatMap(close(channel, F), u -> F.raiseError(e))
+            )
+        );
+        return Stream.bracket(connect, Socket::close);
+    }
+
+    /**
+     * Listens on the address, emits a stream for every accepted connection.
+     * The accepted connection is a resource of the outer stream until the
+     * inner stream emits it as a socket, which is closed when the scope of
+     * the inner stream is closed, the connections are typically served
+     * concurrently with `parJoin`:
+     * <pre>
+     * TcpStreams.server(address, 1024, group, F)
+     *     .map(connection -> connection.flatMap(socket -> handle(socket)))
+     *     .parJoin(maxConnections, F)
+     * </pre>
+     *
+     * @param maxQueued the backlog of connections not accepted yet
+     */
+    public static <F extends Higher> Stream<F, Stream<F, Socket<F>>> server(
+        InetSocketAddress bindAddress,
+        int maxQueued,
+        AsynchronousChannelGroup group,
+        Concurrent<F> F
+    ) {
+        return serverWithLocalAddress(bindAddress, maxQueued, group, F)
+            .flatMap(e -> e.fold(address -> Stream.empty(), Stream::emit));
+    }
+
+    /**
+     * Like [[server]], but emits the address the server is bound to first,
+     * as a left, which is useful when binding to an ephemeral port.
+     */
+    public static <F extends Higher> Stream<F, Either<InetSocketAddress, Stream<F, Socket<F>>>> serverWithLocalAddress(
+        InetSocketAddress bindAddress,
+        int maxQueued,
+        AsynchronousChannelGroup group,
+        Concurrent<F> F
+    ) {
+        var open = delay(() -> {
+            var channel = AsynchronousServerSocketChannel.open(group);
+            try {
+                channel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+                channel.bind(bindAddress, maxQueued);
+                return channel;
+            } catch (Throwable e) {
+                channel.close();
+                throw e;
+            }
+        }, F);
+        return Stream.<F, AsynchronousServerSocketChannel>bracket(open, channel -> close(channel, F))
+            .flatMap(server -> Stream.<F, Either<InetSocketAddress, Stream<F, Socket<F>>>>eval(delay(
+                () -> Either.left((InetSocketAddress) server.getLocalAddress()),
+                F
+            )).append(() -> Stream.repeatEval(accept(server, F)).flatMap(channel ->
+                // owned by a scope of the outer stream from the accept on, so it is closed
+                // even if the inner stream never runs, `parJoin` leases it while the inner runs
+                Stream.<F, AsynchronousSocketChannel>bracket(F.pure(channel), c -> close(c, F)).<Either<InetSocketAddress, Stream<F, Socket<F>>>>map(c -> Either.right(
+                    Stream.<F, Socket<F>>bracket(F.delay(() -> new AsyncSocket<>(c, pool, F)), Socket::close)
+                )).scope()
+            )));
+    }
+
+    private static <F extends Higher> Higher<F, AsynchronousSocketChannel> accept(
+        AsynchronousServerSocketChannel server,
+        Concurrent<F> F
+    ) {
+        return async(h -> server.accept(null, h), F);
+    }
+
+    private static <F extends Higher, A> Higher<F, A> async(
+        Consumer<CompletionHandler<A, Void>> start,
+        Concurrent<F> F
+    ) {
+        return F.async(cb -> {
+            var handler = new CompletionHandler<A, Void>() {
+                @Override
+                public void completed(A result, Void attachment) {
+                    cb.accept(Either.right(result));
+                }
+
+                @Override
+                public void failed(Throwable e, Void attachment) {
+                    cb.accept(Either.left(e));
+                }
+            };
+            try {
+                start.accept(handler);
+            } catch (Throwable e) {
+                handler.failed(e, null);
+            }
+        });
+    }
+
+    private static <F extends Higher> Higher<F, Unit> close(Channel channel, Concurrent<F> F) {
+        return delay(() -> {
+            channel.close();
+            return Unit.unit();
+        }, F);
+    }
+
+    private static <F extends Higher, A> Higher<F, A> delay(Task<A> task, Concurrent<F> F) {
+        return F.delay(task::runUnsafe);
+    }
+}
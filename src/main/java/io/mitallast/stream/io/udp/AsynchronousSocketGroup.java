@@ -0,0 +1,337 @@
+package io.mitallast.stream.io.udp;
+
+import io.mitallast.either.Either;
+import io.mitallast.kernel.Unit;
+import io.mitallast.stream.Chunk;
+import io.mitallast.stream.io.BufferPool;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+
+/**
+ * A selector and the thread running it, shared by the UDP sockets of
+ * the group.
+ * <p>
+ * Every operation on a channel of the group is submitted to the selector
+ * thread, which performs it right away if the channel is ready and waits
+ * for the readiness of the channel otherwise. A read drains all the
+ * datagrams available when the channel is ready, up to the capacity of a
+ * pooled direct buffer, and completes with all of them in a single chunk;
+ * the bytes of the batch are copied out in a single array the packets
+ * share.
+ * <p>
+ * The callbacks of the operations are invoked on the selector thread,
+ * they must not block it.
+ */
+public final class AsynchronousSocketGroup {
+    // the largest payload of a UDP datagram over IPv4
+    private static final int maxDatagramSize = 65507;
+
+    private final Selector selector;
+    private final Thread thread;
+    private final ConcurrentLinkedQueue<Runnable> pending = new ConcurrentLinkedQueue<>();
+    private final BufferPool readBuffers = new BufferPool(4 * 65536, 4);
+    private final BufferPool writeBuffers = new BufferPool(65536, 64);
+    private volatile boolean closed = false;
+
+    private AsynchronousSocketGroup(Selector selector) {
+        this.selector = selector;
+        this.thread = new Thread(this::run, "udp-selector");
+        this.thread.setDaemon(true);
+    }
+
+    public static AsynchronousSocketGroup open() throws IOException {
+        var group = new AsynchronousSocketGroup(Selector.open());
+        group.thread.start();
+        return group;
+    }
+
+    /**
+     * Stops the selector thread, the pending operations fail.
+     */
+    public void close() {
+        closed = true;
+        selector.wakeup();
+    }
+
+    Registration register(DatagramChannel channel) {
+        var registration = new Registration(channel);
+        execute(() -> {
+            try {
+                registration.key = channel.register(selector, 0, registration);
+            } catch (Throwable e) {
+                registration.error = e;
+            }
+        });
+        return registration;
+    }
+
+    /**
+     * Reads the datagrams available, waits for at least one. The returned
+     * runnable cancels the read if it is still waiting.
+     */
+    Runnable read(Registration registration, Consumer<Either<Throwable, Chunk<Packet>>> cb) {
+        execute(() -> {
+            if (registration.fail(cb)) {
+                return;
+            }
+            registration.readers.add(cb);
+            if (registration.readers.size() == 1) {
+                registration.receive();
+            }
+        });
+        return () -> execute(() -> {
+            if (registration.readers.remove(cb)) {
+                registration.updateInterest();
+            }
+        });
+    }
+
+    /**
+     * Sends the packets in order, completes when all of them are sent.
+     */
+    void write(Registration registration, Chunk<Packet> packets, Consumer<Either<Throwable, Unit>> cb) {
+        execute(() -> {
+            if (registration.fail(cb)) {
+                return;
+            }
+            registration.writers.add(new Write(packets, cb));
+            if (registration.writers.size() == 1) {
+                registration.send();
+            }
+        });
+    }
+
+    void close(Registration registration, Consumer<Either<Throwable, Unit>> cb) {
+        execute(() -> {
+            try {
+                registration.close(new ClosedChannelException());
+                cb.accept(Either.right(Unit.unit()));
+            } catch (Throwable e) {
+                cb.accept(Either.left(e));
+            }
+        });
+    }
+
+    private void execute(Runnable task) {
+        pending.add(task);
+        if (closed) {
+            // the selector thread might be gone already
+            runPending();
+        } else {
+            selector.wakeup();
+        }
+    }
+
+    // once the group is closed, the tasks might be run by the submitting threads
+    private synchronized void runPending() {
+        Runnable task;
+        while ((task = pending.poll()) != null) {
+            task.run();
+        }
+    }
+
+    private void run() {
+        try {
+            while (!closed) {
+                runPending();
+                selector.select();
+                synchronized (this) {
+                    for (var key : selector.selectedKeys()) {
+                        var registration = (Registration) key.attachment();
+                        if (key.isValid() && key.isReadable()) {
+                            registration.receive();
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            registration.send();
+                        }
+                    }
+                    selector.selectedKeys().clear();
+                }
+            }
+        } catch (Throwable e) {
+            closed = true;
+        }
+        synchronized (this) {
+            var error = new ClosedChannelException();
+            for (var key : selector.keys()) {
+                ((Registration) key.attachment()).close(error);
+            }
+            try {
+                selector.close();
+            } catch (IOException ignored) {
+            }
+            runPending();
+        }
+    }
+
+    /**
+     * The state of a channel of the group, only accessed by the selector thread.
+     */
+    final class Registration {
+        private final DatagramChannel channel;
+        private final ArrayDeque<Consumer<Either<Throwable, Chunk<Packet>>>> readers = new ArrayDeque<>();
+        private final ArrayDeque<Write> writers = new ArrayDeque<>();
+        private SelectionKey key;
+        private Throwable error;
+
+        private Registration(DatagramChannel channel) {
+            this.channel = channel;
+        }
+
+        /**
+         * Fails the callback if the channel can't be used.
+         */
+        private <A> boolean fail(Consumer<Either<Throwable, A>> cb) {
+            if (error == null && closed) {
+                error = new ClosedChannelException();
+            }
+            if (error != null) {
+                cb.accept(Either.left(error));
+                return true;
+            }
+            return false;
+        }
+
+        private void receive() {
+            if (readers.isEmpty()) {
+                updateInterest();
+                return;
+            }
+            var buffer = readBuffers.acquire();
+            var remotes = new ArrayList<InetSocketAddress>();
+            var limits = new ArrayList<Integer>();
+            try {
+                while (buffer.remaining() >= maxDatagramSize) {
+                    var remote = channel.receive(buffer);
+                    if (remote == null) break;
+                    remotes.add((InetSocketAddress) remote);
+                    limits.add(buffer.position());
+                }
+            } catch (Throwable e) {
+                readBuffers.release(buffer);
+                readers.poll().accept(Either.left(e));
+                updateInterest();
+                return;
+            }
+            if (remotes.isEmpty()) {
+                readBuffers.release(buffer);
+                updateInterest();
+                return;
+            }
+            var bytes = new byte[buffer.position()];
+            buffer.flip().get(bytes);
+            readBuffers.release(buffer);
+            var packets = new ArrayList<Packet>(remotes.size());
+            var from = 0;
+            for (int i = 0; i < remotes.size(); i++) {
+                var until = limits.get(i);
+                packets.add(new Packet(remotes.get(i), Chunk.bytes(bytes, from, until - from)));
+                from = until;
+            }
+            readers.poll().accept(Either.right(Chunk.indexedSeq(packets)));
+            updateInterest();
+        }
+
+        private void send() {
+            while (!writers.isEmpty()) {
+                var write = writers.peek();
+                try {
+                    if (!write.send(channel)) {
+                        updateInterest();
+                        return;
+                    }
+                } catch (Throwable e) {
+                    writers.poll();
+                    write.release();
+                    write.cb.accept(Either.left(e));
+                    continue;
+                }
+                writers.poll();
+                write.cb.accept(Either.right(Unit.unit()));
+            }
+            updateInterest();
+        }
+
+        private void updateInterest() {
+            if (key == null || !key.isValid()) {
+                return;
+            }
+            var ops = 0;
+            if (!readers.isEmpty()) ops |= SelectionKey.OP_READ;
+            if (!writers.isEmpty()) ops |= SelectionKey.OP_WRITE;
+            key.interestOps(ops);
+        }
+
+        private void close(Throwable cause) {
+            error = cause;
+            if (key != null) {
+                key.cancel();
+            }
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+            }
+            Consumer<Either<Throwable, Chunk<Packet>>> reader;
+            while ((reader = readers.poll()) != null) {
+                reader.accept(Either.left(cause));
+            }
+            Write write;
+            while ((write = writers.poll()) != null) {
+                write.release();
+                write.cb.accept(Either.left(cause));
+            }
+        }
+    }
+
+    private final class Write {
+        private final Chunk<Packet> packets;
+        private final Consumer<Either<Throwable, Unit>> cb;
+        private int index = 0;
+        private ByteBuffer buffer;
+
+        private Write(Chunk<Packet> packets, Consumer<Either<Throwable, Unit>> cb) {
+            this.packets = packets;
+            this.cb = cb;
+        }
+
+        /**
+         * Sends the remaining packets, returns false if the channel is not
+         * ready to send the next one.
+         */
+        private boolean send(DatagramChannel channel) throws IOException {
+            while (index < packets.size()) {
+                var packet = packets.apply(index);
+                if (buffer == null) {
+                    var bytes = Chunk.asByteBuffer(packet.bytes());
+                    buffer = bytes.remaining() <= writeBuffers.bufferSize()
+                        ? writeBuffers.acquire()
+                        : ByteBuffer.allocateDirect(bytes.remaining());
+                    buffer.put(bytes).flip();
+                }
+                if (channel.send(buffer, packet.remote()) == 0) {
+                    return false;
+                }
+                release();
+                index++;
+            }
+            return true;
+        }
+
+        private void release() {
+            if (buffer != null && buffer.capacity() == writeBuffers.bufferSize()) {
+                writeBuffers.release(buffer);
+            }
+            buffer = null;
+        }
+    }
+}
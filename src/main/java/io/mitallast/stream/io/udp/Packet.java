@@ -0,0 +1,32 @@
+package io.mitallast.stream.io.udp;
+
+import io.mitallast.stream.Chunk;
+
+import java.net.InetSocketAddress;
+
+/**
+ * A UDP datagram: the bytes and the address of the remote peer, the
+ * sender of a received packet or the recipient of a packet to send.
+ */
+public final class Packet {
+    private final InetSocketAddress remote;
+    private final Chunk<Byte> bytes;
+
+    public Packet(InetSocketAddress remote, Chunk<Byte> bytes) {
+        this.remote = remote;
+        this.bytes = bytes;
+    }
+
+    public InetSocketAddress remote() {
+        return remote;
+    }
+
+    public Chunk<Byte> bytes() {
+        return bytes;
+    }
+
+    @Override
+    public String toString() {
+        return "Packet(" + remote + ", " + bytes.size() + " bytes)";
+    }
+}
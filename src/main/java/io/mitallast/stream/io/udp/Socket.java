@@ -0,0 +1,113 @@
+package io.mitallast.stream.io.udp;
+
+import io.mitallast.concurrent.Task;
+import io.mitallast.higher.Higher;
+import io.mitallast.io.Concurrent;
+import io.mitallast.io.ContextShift;
+import io.mitallast.kernel.Unit;
+import io.mitallast.lambda.Function1;
+import io.mitallast.maybe.Maybe;
+import io.mitallast.product.Tuple;
+import io.mitallast.stream.Chunk;
+import io.mitallast.stream.Stream;
+
+import java.net.InetSocketAddress;
+import java.nio.channels.DatagramChannel;
+
+/**
+ * Provides the ability to read and write UDP datagrams.
+ * <p>
+ * The operations are performed by the selector thread of the
+ * [[AsynchronousSocketGroup]] the socket belongs to, the evaluation
+ * shifts back to the default execution environment of `F` when they
+ * complete, once per batch of packets.
+ */
+public interface Socket<F extends Higher> {
+    /**
+     * Reads the packets available, waits for at least one.
+     */
+    Higher<F, Chunk<Packet>> read();
+
+    /**
+     * Reads the packets, chunk by chunk as they are received.
+     */
+    Stream<F, Packet> reads();
+
+    /**
+     * Sends the packet, completes when it is sent.
+     */
+    Higher<F, Unit> write(Packet packet);
+
+    /**
+     * Sends all the packets of the stream, a chunk of packets at a time.
+     */
+    Function1<Stream<F, Packet>, Stream<F, Unit>> writes();
+
+    Higher<F, InetSocketAddress> localAddress();
+
+    /**
+     * Closes the socket, the pending reads and writes fail.
+     */
+    Higher<F, Unit> close();
+}
+
+final class SelectorSocket<F extends Higher> implements Socket<F> {
+    private final DatagramChannel channel;
+    private final AsynchronousSocketGroup group;
+    private final AsynchronousSocketGroup.Registration registration;
+    private final Concurrent<F> F;
+    private final ContextShift<F> cs;
+
+    SelectorSocket(DatagramChannel channel, AsynchronousSocketGroup group, Concurrent<F> F, ContextShift<F> cs) {
+        this.channel = channel;
+        this.group = group;
+        this.registration = group.register(channel);
+        this.F = F;
+        this.cs = cs;
+    }
+
+    private <A> Higher<F, A> shifted(Higher<F, A> fa) {
+        return F.flatMap(fa, a -> F.map(cs.shift(), u -> a));
+    }
+
+    @Override
+    public Higher<F, Chunk<Packet>> read() {
+        return shifted(F.cancelable(cb -> {
+            var cancel = group.read(registration, cb);
+            return F.delay(() -> {
+                cancel.run();
+                return Unit.unit();
+            });
+        }));
+    }
+
+    @Override
+    public Stream<F, Packet> reads() {
+        return Stream.unfoldChunkEval(Unit.unit(), u -> F.map(read(), c -> Maybe.some(Tuple.of(c, u))));
+    }
+
+    @Override
+    public Higher<F, Unit> write(Packet packet) {
+        return write(Chunk.singleton(packet));
+    }
+
+    private Higher<F, Unit> write(Chunk<Packet> packets) {
+        return shifted(F.async(cb -> group.write(registration, packets, cb)));
+    }
+
+    @Override
+    public Function1<Stream<F, Packet>, Stream<F, Unit>> writes() {
+        return in -> in.chunks().evalMap(this::write);
+    }
+
+    @Override
+    public Higher<F, InetSocketAddress> localAddress() {
+        Task<InetSocketAddress> address = () -> (InetSocketAddress) channel.getLocalAddress();
+        return F.delay(address::runUnsafe);
+    }
+
+    @Override
+    public Higher<F, Unit> close() {
+        return F.async(cb -> group.close(registration, cb));
+    }
+}
@@ -0,0 +1,62 @@
+package io.mitallast.stream.io.udp;
+
+import io.mitallast.concurrent.Task;
+import io.mitallast.higher.Higher;
+import io.mitallast.io.Concurrent;
+import io.mitallast.io.ContextShift;
+import io.mitallast.stream.Stream;
+
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.channels.DatagramChannel;
+
+/**
+ * Streams of UDP [[Socket]]s, over non-blocking datagram channels
+ * registered to the selector of an [[AsynchronousSocketGroup]].
+ * <p>
+ * Every socket is a resource of the scope of its stream, it is closed when
+ * the scope is closed.
+ */
+public final class UdpStreams {
+    private UdpStreams() {
+    }
+
+    /**
+     * Opens a socket bound to the address, emits it.
+     *
+     * @param receiveBufferSize the size of the receive buffer of the socket,
+     *                          the datagrams received when it is full are dropped
+     */
+    public static <F extends Higher> Stream<F, Socket<F>> open(
+        InetSocketAddress bindAddress,
+        int receiveBufferSize,
+        AsynchronousSocketGroup group,
+        Concurrent<F> F,
+        ContextShift<F> cs
+    ) {
+        Task<Socket<F>> open = () -> {
+            var channel = DatagramChannel.open();
+            try {
+                channel.configureBlocking(false);
+                channel.setOption(StandardSocketOptions.SO_RCVBUF, receiveBufferSize);
+                channel.bind(bindAddress);
+                return new SelectorSocket<>(channel, group, F, cs);
+            } catch (Throwable e) {
+                channel.close();
+                throw e;
+            }
+        };
+        return Stream.bracket(F.delay(open::runUnsafe), Socket::close);
+    }
+
+    /**
+     * Opens a socket bound to an ephemeral port of the wildcard address.
+     */
+    public static <F extends Higher> Stream<F, Socket<F>> open(
+        AsynchronousSocketGroup group,
+        Concurrent<F> F,
+        ContextShift<F> cs
+    ) {
+        return open(new InetSocketAddress(0), 1024 * 1024, group, F, cs);
+    }
+}
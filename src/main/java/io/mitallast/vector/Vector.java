@@ -1,6 +1,11 @@
 package io.mitallast.vector;
 
+import io.mitallast.categories.Applicative;
+import io.mitallast.categories.Traverse;
 import io.mitallast.higher.Higher;
+import io.mitallast.kernel.Eval;
+import io.mitallast.lambda.Function1;
+import io.mitallast.lambda.Function2;
 import io.mitallast.product.Tuple;
 import io.mitallast.product.Tuple2;
 
@@ -26,7 +31,7 @@ public final class Vector<A> extends VectorPointer<A> implements Iterable<A>, Hi
     }
 
     public boolean isEmpty() {
-        return endIndex > startIndex;
+        return endIndex <= startIndex;
     }
 
     <B extends A> void initIterator(VectorIterator<B> s) {
@@ -554,4 +559,59 @@ public final class Vector<A> extends VectorPointer<A> implements Iterable<A>, Hi
     public static <A> VectorBuilder<A> builder() {
         return new VectorBuilder<>();
     }
+
+    public static VectorInstances instances() {
+        return VectorInstances.instance;
+    }
+
+    public static class VectorInstances implements Traverse<Vector> {
+        private final static VectorInstances instance = new VectorInstances();
+
+        @Override
+        public <G extends Higher, A, B> Higher<G, Higher<Vector, B>> traverse(
+            final Higher<Vector, A> fa,
+            final Function1<A, Higher<G, B>> f,
+            final Applicative<G> G
+        ) {
+            var acc = G.pure(Vector.<B>empty());
+            for (A a : (Vector<A>) fa) {
+                acc = G.map2(acc, f.apply(a), (vb, b) -> vb.append(b));
+            }
+            @SuppressWarnings("unchecked")
+            var result = (Higher<G, Higher<Vector, B>>) (Higher) acc;
+            return result;
+        }
+
+        @Override
+        public <A, B> B foldLeft(final Higher<Vector, A> fa, final B b, final Function2<B, A, B> f) {
+            var acc = b;
+            for (A a : (Vector<A>) fa) {
+                acc = f.apply(acc, a);
+            }
+            return acc;
+        }
+
+        @Override
+        public <A, B> Eval<B> foldRight(final Higher<Vector, A> fa, final Eval<B> lb, final Function2<A, Eval<B>, Eval<B>> f) {
+            return Eval.defer(() -> {
+                var acc = lb;
+                var it = ((Vector<A>) fa).reverseIterator();
+                while (it.hasNext()) {
+                    var a = it.next();
+                    var lbe = acc;
+                    acc = Eval.defer(() -> f.apply(a, lbe));
+                }
+                return acc;
+            });
+        }
+
+        @Override
+        public <A, B> Higher<Vector, B> map(final Higher<Vector, A> fa, final Function1<A, B> fn) {
+            var builder = Vector.<B>builder();
+            for (A a : (Vector<A>) fa) {
+                builder.append(fn.apply(a));
+            }
+            return builder.result();
+        }
+    }
 }
@@ -0,0 +1,55 @@
+package io.mitallast.concurrent;
+
+import io.mitallast.io.ConcurrentEffect;
+import io.mitallast.io.ContextShift;
+import io.mitallast.io.IO;
+import io.mitallast.kernel.Unit;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Readers of a deferred canceled below live ones, as with readers timing
+ * out one after the other, are swept without losing the live readers.
+ */
+public class DeferredTest {
+    private static final int readers = 10000;
+
+    private ConcurrentEffect<IO> F;
+
+    @Before
+    public void setUp() {
+        ContextShift<IO> cs = IO.contextShift(ExecutionContext.workStealing(4));
+        F = IO.concurrentEffect(cs);
+    }
+
+    @Test(timeout = 30000)
+    public void completeReachesTheReadersLeftAfterCancels() throws Exception {
+        var d = Deferred.<IO, Integer>unsafe(F);
+        var canceled = new AtomicInteger();
+        var live = new CountDownLatch(1);
+        ((IO<Integer>) d.get()).unsafeRunCancelable(e -> live.countDown());
+
+        // every reader is canceled once the next one is waiting on top of it
+        IO<Unit> previous = null;
+        for (int i = 0; i < readers; i++) {
+            var cancel = ((IO<Integer>) d.get()).unsafeRunCancelable(e -> canceled.incrementAndGet());
+            if (previous != null) previous.unsafeRunSync();
+            previous = cancel;
+        }
+        var last = new CountDownLatch(1);
+        ((IO<Integer>) d.get()).unsafeRunCancelable(e -> last.countDown());
+        previous.unsafeRunSync();
+
+        ((IO<Unit>) d.complete(1)).unsafeRunSync();
+        assertTrue(live.await(10, TimeUnit.SECONDS));
+        assertTrue(last.await(10, TimeUnit.SECONDS));
+        assertEquals(0, canceled.get());
+    }
+}
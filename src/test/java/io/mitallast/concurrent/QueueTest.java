@@ -0,0 +1,208 @@
+package io.mitallast.concurrent;
+
+import io.mitallast.io.ConcurrentEffect;
+import io.mitallast.io.ContextShift;
+import io.mitallast.io.IO;
+import io.mitallast.kernel.Unit;
+import io.mitallast.maybe.Maybe;
+import io.mitallast.stream.Chunk;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Cancellation of waiting takes and offers racing with the operations
+ * waking them up: no element may be lost nor duplicated.
+ */
+public class QueueTest {
+    private static final int rounds = 2000;
+
+    private ConcurrentEffect<IO> F;
+
+    @Before
+    public void setUp() {
+        ContextShift<IO> cs = IO.contextShift(ExecutionContext.workStealing(4));
+        F = IO.concurrentEffect(cs);
+    }
+
+    @Test(timeout = 30000)
+    public void cancelTakeWhileAnElementIsOffered() throws Exception {
+        for (int round = 0; round < rounds; round++) {
+            Queue<IO, Integer> queue = Queue.unsafeUnbounded(F);
+            var received = new AtomicInteger();
+            var cancel = ((IO<Integer>) queue.take()).unsafeRunCancelable(e -> received.incrementAndGet());
+
+            race(() -> ((IO<Unit>) queue.offer(1)).unsafeRunSync(), cancel::unsafeRunSync);
+
+            var left = ((IO<Maybe<Integer>>) queue.tryTake()).unsafeRunSync();
+            assertEquals(1, received.get() + (left.isEmpty() ? 0 : 1));
+        }
+    }
+
+    @Test(timeout = 30000)
+    public void cancelTakeBatchWhileElementsAreOffered() throws Exception {
+        for (int round = 0; round < rounds; round++) {
+            Queue<IO, Integer> queue = Queue.unsafeUnbounded(F);
+            var received = new AtomicInteger();
+            var cancel = ((IO<?>) queue.takeBatch(2)).unsafeRunCancelable(e -> received.incrementAndGet());
+
+            race(() -> {
+                ((IO<Unit>) queue.offer(1)).unsafeRunSync();
+                ((IO<Unit>) queue.offer(2)).unsafeRunSync();
+            }, cancel::unsafeRunSync);
+
+            var left = ((IO<Integer>) queue.size()).unsafeRunSync();
+            if (received.get() == 0) {
+                assertEquals(2, (int) left);
+                // given back in order, ahead of the buffer
+                assertEquals(1, (int) ((IO<Integer>) queue.take()).unsafeRunSync());
+            } else {
+                assertTrue(left < 2);
+            }
+        }
+    }
+
+    @Test(timeout = 30000)
+    public void cancelOfferWhileAnElementIsTaken() throws Exception {
+        for (int round = 0; round < rounds; round++) {
+            Queue<IO, Integer> queue = Queue.unsafeBounded(1, F);
+            ((IO<Unit>) queue.offer(0)).unsafeRunSync();
+            var offered = new AtomicInteger();
+            var cancel = ((IO<Unit>) queue.offer(1)).unsafeRunCancelable(e -> offered.incrementAndGet());
+
+            var taken = new AtomicInteger(-1);
+            race(() -> taken.set(((IO<Integer>) queue.take()).unsafeRunSync()), cancel::unsafeRunSync);
+
+            assertEquals(0, taken.get());
+            var left = ((IO<Maybe<Integer>>) queue.tryTake()).unsafeRunSync();
+            if (offered.get() == 1) {
+                assertEquals(1, (int) left.get());
+            }
+            assertTrue(((IO<Maybe<Integer>>) queue.tryTake()).unsafeRunSync().isEmpty());
+        }
+    }
+
+    @Test(timeout = 30000)
+    public void canceledOfferDoesNotEnqueue() {
+        Queue<IO, Integer> queue = Queue.unsafeBounded(1, F);
+        ((IO<Unit>) queue.offer(0)).unsafeRunSync();
+        var offered = new AtomicInteger();
+        ((IO<Unit>) queue.offer(1)).unsafeRunCancelable(e -> offered.incrementAndGet()).unsafeRunSync();
+
+        assertEquals(0, (int) ((IO<Integer>) queue.take()).unsafeRunSync());
+        assertTrue(((IO<Maybe<Integer>>) queue.tryTake()).unsafeRunSync().isEmpty());
+        assertEquals(0, offered.get());
+    }
+
+    @Test(timeout = 30000)
+    public void everyElementReachesATakeNotCanceled() throws Exception {
+        var elements = 10000;
+        Queue<IO, Integer> queue = Queue.unsafeBounded(16, F);
+        var received = ConcurrentHashMap.<Integer>newKeySet();
+        var duplicates = new AtomicInteger();
+
+        var producer = new Thread(() -> {
+            for (int i = 0; i < elements; i++) {
+                ((IO<Unit>) queue.offer(i)).unsafeRunSync();
+            }
+        });
+        producer.start();
+        // every third take is canceled right away, racing with the producer
+        for (int taken = 0; taken < elements; ) {
+            var cancel = ((IO<Integer>) queue.take()).unsafeRunCancelable(e -> e.foreach(
+                err -> duplicates.incrementAndGet(),
+                a -> {
+                    if (!received.add(a)) duplicates.incrementAndGet();
+                }
+            ));
+            if (ThreadLocalRandom.current().nextInt(3) == 0) {
+                cancel.unsafeRunSync();
+            } else {
+                taken++;
+            }
+        }
+        producer.join();
+        while (received.size() < elements) {
+            Thread.sleep(1);
+        }
+        assertEquals(0, duplicates.get());
+        assertTrue(((IO<Maybe<Integer>>) queue.tryTake()).unsafeRunSync().isEmpty());
+    }
+
+    @Test(timeout = 30000)
+    public void circularBufferKeepsTheLastOfferedElements() {
+        Queue<IO, Integer> queue = Queue.unsafeCircularBuffer(3, F);
+        for (int i = 0; i < 10; i++) {
+            ((IO<Unit>) queue.offer(i)).unsafeRunSync();
+        }
+        var batch = ((IO<Chunk<Integer>>) queue.takeBatch(10)).unsafeRunSync();
+        assertEquals(3, batch.size());
+        assertEquals(7, (int) batch.apply(0));
+        assertEquals(8, (int) batch.apply(1));
+        assertEquals(9, (int) batch.apply(2));
+    }
+
+    @Test(timeout = 30000)
+    public void circularBufferOverwritesUnderContention() throws Exception {
+        var producers = 4;
+        var elements = 20000;
+        var capacity = 16;
+        Queue<IO, Integer> queue = Queue.unsafeCircularBuffer(capacity, F);
+        var threads = new ArrayList<Thread>();
+        for (int p = 0; p < producers; p++) {
+            var producer = p;
+            var thread = new Thread(() -> {
+                for (int i = 0; i < elements; i++) {
+                    ((IO<Unit>) queue.offer(producer * elements + i)).unsafeRunSync();
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        // a consumer racing with the overwrites sees every producer in order
+        var last = new int[producers];
+        Arrays.fill(last, -1);
+        var running = true;
+        while (running) {
+            running = threads.stream().anyMatch(Thread::isAlive);
+            var taken = ((IO<Maybe<Integer>>) queue.tryTake()).unsafeRunSync();
+            if (taken.isDefined()) {
+                int a = taken.get();
+                assertTrue(a % elements > last[a / elements]);
+                last[a / elements] = a % elements;
+            }
+        }
+        for (var thread : threads) thread.join();
+
+        var left = 0;
+        while (((IO<Maybe<Integer>>) queue.tryTake()).unsafeRunSync().isDefined()) {
+            left++;
+        }
+        assertTrue(left <= capacity);
+    }
+
+    private static void race(Runnable left, Runnable right) throws InterruptedException {
+        var start = new CountDownLatch(1);
+        var thread = new Thread(() -> {
+            try {
+                start.await();
+            } catch (InterruptedException e) {
+                return;
+            }
+            left.run();
+        });
+        thread.start();
+        start.countDown();
+        right.run();
+        thread.join();
+    }
+}
@@ -0,0 +1,124 @@
+package io.mitallast.concurrent;
+
+import io.mitallast.io.ConcurrentEffect;
+import io.mitallast.io.ContextShift;
+import io.mitallast.io.IO;
+import io.mitallast.kernel.Unit;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Acquire, release and cancel ordering of the semaphore, including
+ * cancellations racing with the release granting the permits.
+ */
+public class SemaphoreTest {
+    private static final int rounds = 2000;
+
+    private ConcurrentEffect<IO> F;
+
+    @Before
+    public void setUp() {
+        ContextShift<IO> cs = IO.contextShift(ExecutionContext.workStealing(4));
+        F = IO.concurrentEffect(cs);
+    }
+
+    @Test(timeout = 30000)
+    public void acquireAndReleaseUpdateThePermits() {
+        var s = Semaphore.unsafe(2, F);
+        ((IO<Unit>) s.acquireN(2)).unsafeRunSync();
+        assertEquals(0L, (long) ((IO<Long>) s.available()).unsafeRunSync());
+        assertFalse(((IO<Boolean>) s.tryAcquire()).unsafeRunSync());
+
+        ((IO<Unit>) s.release()).unsafeRunSync();
+        assertEquals(1L, (long) ((IO<Long>) s.available()).unsafeRunSync());
+        assertTrue(((IO<Boolean>) s.tryAcquire()).unsafeRunSync());
+        assertEquals(0L, (long) ((IO<Long>) s.count()).unsafeRunSync());
+    }
+
+    @Test(timeout = 30000)
+    public void blockedAcquiresAreGrantedInOrder() {
+        var s = Semaphore.unsafe(0, F);
+        var granted = Collections.synchronizedList(new ArrayList<String>());
+        ((IO<Unit>) s.acquireN(3)).unsafeRunCancelable(e -> granted.add("first"));
+        ((IO<Unit>) s.acquireN(1)).unsafeRunCancelable(e -> granted.add("second"));
+        assertEquals(-4L, (long) ((IO<Long>) s.count()).unsafeRunSync());
+
+        // the first waiter holds back the second one
+        ((IO<Unit>) s.releaseN(1)).unsafeRunSync();
+        assertEquals(List.of(), granted);
+        assertEquals(1L, (long) ((IO<Long>) s.available()).unsafeRunSync());
+
+        ((IO<Unit>) s.releaseN(2)).unsafeRunSync();
+        assertEquals(List.of("first"), granted);
+
+        ((IO<Unit>) s.release()).unsafeRunSync();
+        assertEquals(List.of("first", "second"), granted);
+        assertEquals(0L, (long) ((IO<Long>) s.count()).unsafeRunSync());
+    }
+
+    @Test(timeout = 30000)
+    public void canceledAcquireLeavesTheQueue() {
+        var s = Semaphore.unsafe(0, F);
+        var granted = Collections.synchronizedList(new ArrayList<String>());
+        var cancel = ((IO<Unit>) s.acquireN(2)).unsafeRunCancelable(e -> granted.add("first"));
+        ((IO<Unit>) s.acquire()).unsafeRunCancelable(e -> granted.add("second"));
+
+        cancel.unsafeRunSync();
+        assertEquals(-1L, (long) ((IO<Long>) s.count()).unsafeRunSync());
+
+        ((IO<Unit>) s.release()).unsafeRunSync();
+        assertEquals(List.of("second"), granted);
+        assertEquals(0L, (long) ((IO<Long>) s.count()).unsafeRunSync());
+    }
+
+    @Test(timeout = 30000)
+    public void cancelRacingWithReleaseDoesNotLeakPermits() throws Exception {
+        for (int round = 0; round < rounds; round++) {
+            var s = Semaphore.unsafe(0, F);
+            var granted = new AtomicInteger();
+            var cancel = ((IO<Unit>) s.acquire()).unsafeRunCancelable(e -> granted.incrementAndGet());
+
+            race(() -> ((IO<Unit>) s.release()).unsafeRunSync(), cancel::unsafeRunSync);
+
+            // a permit is either held by the granted acquire or available again
+            var available = ((IO<Long>) s.available()).unsafeRunSync();
+            assertEquals(1L, available + granted.get());
+        }
+    }
+
+    @Test(timeout = 30000)
+    public void withPermitReleasesOnError() {
+        var s = Semaphore.unsafe(1, F);
+        var result = ((IO<Integer>) s.withPermit(IO.<Integer>raiseError(new IllegalStateException("boom"))))
+            .attempt()
+            .unsafeRunSync();
+        assertTrue(result.isLeft());
+        assertEquals(1L, (long) ((IO<Long>) s.available()).unsafeRunSync());
+    }
+
+    private static void race(Runnable left, Runnable right) throws InterruptedException {
+        var start = new CountDownLatch(1);
+        var thread = new Thread(() -> {
+            try {
+                start.await();
+            } catch (InterruptedException e) {
+                return;
+            }
+            left.run();
+        });
+        thread.start();
+        start.countDown();
+        right.run();
+        thread.join();
+    }
+}
@@ -0,0 +1,118 @@
+package io.mitallast.stream;
+
+import io.mitallast.concurrent.ExecutionContext;
+import io.mitallast.either.Either;
+import io.mitallast.io.ConcurrentEffect;
+import io.mitallast.io.ContextShift;
+import io.mitallast.io.ExitCase;
+import io.mitallast.io.IO;
+import io.mitallast.kernel.Unit;
+import io.mitallast.list.List;
+import io.mitallast.maybe.Maybe;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * The inner streams of a `parJoin` open their scopes under the same lazy
+ * scope, materializing it concurrently from their own fibers.
+ */
+public class ParJoinScopeTest {
+    private static final int streams = 1000;
+
+    private ContextShift<IO> cs;
+    private ConcurrentEffect<IO> F;
+
+    @Before
+    public void setUp() {
+        cs = IO.contextShift(ExecutionContext.workStealing(4));
+        F = IO.concurrentEffect(cs);
+    }
+
+    @Test(timeout = 30000)
+    public void releaseTheBracketOfEveryInnerStream() {
+        var acquired = new AtomicInteger();
+        var released = new AtomicInteger();
+
+        Stream<IO, Integer> joined = Stream.<IO>range(0, streams)
+            .map(i -> Stream.<IO, Integer>bracket(
+                IO.delay(acquired::incrementAndGet),
+                r -> IO.delay(() -> {
+                    released.incrementAndGet();
+                    return Unit.unit();
+                })
+            ).flatMap(r -> Stream.<IO, Integer>emit(i).append(() -> Stream.never(F).drain())))
+            .parJoin(Integer.MAX_VALUE, F);
+
+        var count = ((IO<List<Integer>>) joined.take(streams).compile(Stream.Compiler.io()).toList())
+            .unsafeRunSync()
+            .size();
+
+        assertEquals(streams, count);
+        assertEquals(acquired.get(), released.get());
+    }
+
+    @Test(timeout = 30000)
+    public void releaseTheBracketsOfCompletedInnerStreams() {
+        var acquired = new AtomicInteger();
+        var released = new AtomicInteger();
+
+        Stream<IO, Unit> joined = Stream.<IO>range(0, streams)
+            .map(i -> Stream.<IO, Integer>bracket(
+                IO.delay(acquired::incrementAndGet),
+                r -> IO.delay(() -> {
+                    released.incrementAndGet();
+                    return Unit.unit();
+                })
+            ).evalMap(r -> IO.shift(cs)))
+            .parJoin(Integer.MAX_VALUE, F);
+
+        ((IO<Unit>) joined.compile(Stream.Compiler.io()).drain()).unsafeRunSync();
+
+        assertEquals(streams, acquired.get());
+        assertEquals(streams, released.get());
+    }
+
+    // children of a lazy root acquire their first resources at once, every
+    // child has to be registered in the single state the root ends up with
+    @Test(timeout = 30000)
+    public void registerTheChildrenMaterializingALazyRootConcurrently() throws Exception {
+        var threads = 8;
+        for (int round = 0; round < 200; round++) {
+            var root = ((IO<CompileScope<IO>>) CompileScope.newRoot(F)).unsafeRunSync();
+            var children = new ArrayList<CompileScope<IO>>();
+            for (int i = 0; i < threads; i++) {
+                var child = ((IO<Either<Throwable, CompileScope<IO>>>) root.open(Maybe.none())).unsafeRunSync();
+                children.add(child.fold(e -> null, c -> c));
+            }
+            var released = new AtomicInteger();
+            var start = new CountDownLatch(1);
+            var workers = new ArrayList<Thread>();
+            for (var child : children) {
+                var worker = new Thread(() -> {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    ((IO<?>) child.acquireResource(IO.pure(Unit.unit()), (r, ec) -> IO.delay(() -> {
+                        released.incrementAndGet();
+                        return Unit.unit();
+                    }))).unsafeRunSync();
+                });
+                worker.start();
+                workers.add(worker);
+            }
+            start.countDown();
+            for (var worker : workers) worker.join();
+
+            ((IO<?>) root.close(ExitCase.complete())).unsafeRunSync();
+            assertEquals(threads, released.get());
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package io.mitallast.stream.io.tcp;
+
+import io.mitallast.concurrent.Deferred;
+import io.mitallast.concurrent.ExecutionContext;
+import io.mitallast.io.ConcurrentEffect;
+import io.mitallast.io.ContextShift;
+import io.mitallast.io.Fiber;
+import io.mitallast.io.IO;
+import io.mitallast.kernel.Unit;
+import io.mitallast.list.List;
+import io.mitallast.stream.Chunk;
+import io.mitallast.stream.Stream;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.ConnectException;
+import java.net.InetSocketAddress;
+import java.nio.channels.AsynchronousChannelGroup;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.fail;
+
+/**
+ * Loopback echo between a server served with `parJoin` and thousands of
+ * clients, all the connections open at once on a group of two threads.
+ */
+public class TcpStreamsTest {
+    private static final int clients = 2000;
+
+    private AsynchronousChannelGroup group;
+    private ContextShift<IO> cs;
+    private ConcurrentEffect<IO> F;
+    private Stream.Compiler<IO, IO> compiler;
+
+    @Before
+    public void setUp() throws Exception {
+        group = AsynchronousChannelGroup.withFixedThreadPool(2, r -> {
+            var thread = new Thread(r, "tcp-test-group");
+            thread.setDaemon(true);
+            return thread;
+        });
+        cs = IO.contextShift(ExecutionContext.workStealing(4));
+        F = IO.concurrentEffect(cs);
+        compiler = Stream.Compiler.io();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        group.shutdownNow();
+        group.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    // every accepted connection opens and closes a child scope of the server,
+    // unregistering them must not get slower with the number of siblings
+    @Test(timeout = 30000)
+    public void echoThousandsOfConcurrentConnections() throws Exception {
+        var open = new AtomicInteger();
+        var maxOpen = new AtomicInteger();
+        var address = new AtomicReference<InetSocketAddress>();
+        var bound = Deferred.<IO, Unit>unsafe(F);
+        var allOpen = Deferred.<IO, Unit>unsafe(F);
+
+        // every connection is served by its own inner stream, which holds a
+        // lease on the scope of the accepted channel until it terminates
+        Stream<IO, Unit> server = TcpStreams.serverWithLocalAddress(new InetSocketAddress("127.0.0.1", 0), clients, group, F)
+            .flatMap(e -> e.fold(
+                local -> Stream.<IO, Unit>eval(IO.delay(() -> {
+                    address.set(local);
+                    return Unit.unit();
+                }).flatMap(u -> (IO<Unit>) bound.complete(Unit.unit()))).<Stream<IO, Unit>>drain(),
+                connection -> Stream.<IO, Stream<IO, Unit>>emit(connection.flatMap(socket -> echo(socket, open, maxOpen, allOpen)))
+            ))
+            .parJoin(Integer.MAX_VALUE, F);
+
+        var serverFiber = ((IO<Fiber<IO, Unit>>) ((IO<Unit>) server.compile(compiler).drain()).start(cs)).unsafeRunSync();
+        ((IO<Unit>) bound.get()).unsafeRunSync();
+        assertNotNull(address.get());
+
+        // the clients write only once the server serves all of them at once
+        var echoed = new AtomicInteger();
+        Stream<IO, Unit> run = Stream.<IO>range(0, clients)
+            .map(i -> TcpStreams.client(address.get(), group, F).flatMap(socket -> {
+                var message = ("hello " + i + " ").repeat(1 + i % 20);
+                var bytes = message.getBytes(StandardCharsets.UTF_8);
+                var exchange = ((IO<Unit>) allOpen.get())
+                    .flatMap(u -> (IO<Unit>) socket.write(Chunk.bytes(bytes)))
+                    .flatMap(u -> (IO<Unit>) socket.endOfOutput())
+                    .flatMap(u -> (IO<String>) socket.reads(1024).utf8Decode().compile(compiler).fold("", String::concat))
+                    .map(reply -> {
+                        if (reply.equals(message)) echoed.incrementAndGet();
+                        return Unit.unit();
+                    });
+                return Stream.<IO, Unit>eval(exchange);
+            }))
+            .parJoin(clients, F);
+        ((IO<Unit>) run.compile(compiler).drain()).unsafeRunSync();
+
+        assertEquals(clients, echoed.get());
+        assertEquals(clients, maxOpen.get());
+
+        // the inner streams gave their leases back, so interrupting the
+        // server releases the outer resources and closes the listening socket
+        ((IO<Unit>) serverFiber.cancel()).unsafeRunSync();
+        try (var socket = new java.net.Socket()) {
+            socket.connect(address.get(), 1000);
+            fail("the server socket is still open");
+        } catch (ConnectException expected) {
+            // closed
+        }
+        assertEquals(0, open.get());
+    }
+
+    @Test(timeout = 30000)
+    public void rejectNonPositiveReadSizes() throws Exception {
+        try (var server = ServerSocketChannel.open()) {
+            server.bind(new InetSocketAddress("127.0.0.1", 0));
+            Stream<IO, Integer> rejected = TcpStreams.client((InetSocketAddress) server.getLocalAddress(), group, F)
+                .map(socket -> rejects(() -> socket.read(0))
+                    + rejects(() -> socket.readN(-1))
+                    + rejects(() -> socket.reads(0)));
+            var counts = ((IO<List<Integer>>) rejected.compile(compiler).toList()).unsafeRunSync();
+            assertEquals(1, counts.size());
+            assertEquals(3, (int) counts.head());
+        }
+    }
+
+    private static int rejects(Runnable read) {
+        try {
+            read.run();
+            return 0;
+        } catch (IllegalArgumentException expected) {
+            return 1;
+        }
+    }
+
+    private Stream<IO, Unit> echo(Socket<IO> socket, AtomicInteger open, AtomicInteger maxOpen, Deferred<IO, Unit> allOpen) {
+        var opened = Stream.<IO, Unit>bracket(
+            IO.suspend(() -> {
+                var now = open.incrementAndGet();
+                maxOpen.accumulateAndGet(now, Math::max);
+                return now == clients ? (IO<Unit>) allOpen.complete(Unit.unit()) : IO.unit();
+            }),
+            u -> IO.delay(() -> {
+                open.decrementAndGet();
+                return Unit.unit();
+            })
+        );
+        return opened.flatMap(u -> socket.reads(1024)
+            .through(socket.writes())
+            .append(() -> Stream.eval(socket.endOfOutput())));
+    }
+}
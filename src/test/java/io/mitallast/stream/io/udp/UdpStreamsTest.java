@@ -0,0 +1,112 @@
+package io.mitallast.stream.io.udp;
+
+import io.mitallast.concurrent.ExecutionContext;
+import io.mitallast.concurrent.Task;
+import io.mitallast.io.ConcurrentEffect;
+import io.mitallast.io.ContextShift;
+import io.mitallast.io.IO;
+import io.mitallast.kernel.Unit;
+import io.mitallast.stream.Chunk;
+import io.mitallast.stream.Stream;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Round trips between UDP sockets on localhost.
+ */
+public class UdpStreamsTest {
+    private static final int packets = 100;
+    private static final InetSocketAddress localhost = new InetSocketAddress("127.0.0.1", 0);
+
+    private AsynchronousSocketGroup group;
+    private ContextShift<IO> cs;
+    private ConcurrentEffect<IO> F;
+    private Stream.Compiler<IO, IO> compiler;
+
+    @Before
+    public void setUp() throws Exception {
+        group = AsynchronousSocketGroup.open();
+        cs = IO.contextShift(ExecutionContext.workStealing(4));
+        F = IO.concurrentEffect(cs);
+        compiler = Stream.Compiler.io();
+    }
+
+    @After
+    public void tearDown() {
+        group.close();
+    }
+
+    @Test(timeout = 30000)
+    public void echo() {
+        var run = UdpStreams.open(localhost, 1 << 20, group, F, cs).flatMap(server ->
+            UdpStreams.open(localhost, 1 << 20, group, F, cs).flatMap(client ->
+                Stream.<IO, InetSocketAddress>eval((IO<InetSocketAddress>) server.localAddress()).flatMap(address -> {
+                    var requests = Stream.<IO>range(0, packets)
+                        .map(i -> new Packet(address, Chunk.bytes(("packet " + i).getBytes(StandardCharsets.UTF_8))))
+                        .through(client.writes())
+                        .<String>drain();
+                    var replies = client.reads()
+                        .map(p -> StandardCharsets.UTF_8.decode(Chunk.asByteBuffer(p.bytes())).toString())
+                        .take(packets);
+                    var echo = server.reads().through(server.writes()).<String>drain();
+                    return replies.mergeHaltL(requests.merge(echo, F), F);
+                })
+            )
+        );
+        var received = ((IO<ArrayList<String>>) run.compile(compiler).fold(new ArrayList<String>(), (l, s) -> {
+            l.add(s);
+            return l;
+        })).unsafeRunSync();
+
+        var expected = new HashSet<String>();
+        for (int i = 0; i < packets; i++) {
+            expected.add("packet " + i);
+        }
+        assertEquals(packets, received.size());
+        assertEquals(expected, new HashSet<>(received));
+    }
+
+    @Test(timeout = 30000)
+    public void readsTheAvailablePacketsInOneChunk() throws Exception {
+        var sizes = new ArrayList<Integer>();
+        var received = new AtomicInteger();
+        try (var sender = DatagramChannel.open()) {
+            sender.bind(localhost);
+            var run = UdpStreams.open(localhost, 1 << 20, group, F, cs).flatMap(socket ->
+                Stream.<IO, InetSocketAddress>eval((IO<InetSocketAddress>) socket.localAddress())
+                    .evalMap(address -> {
+                        // all the datagrams are waiting in the receive buffer
+                        // of the socket before its first read
+                        Task<InetSocketAddress> send = () -> {
+                            for (int i = 0; i < packets; i++) {
+                                sender.send(ByteBuffer.wrap(new byte[]{(byte) i}), address);
+                            }
+                            return address;
+                        };
+                        return IO.delay(send::runUnsafe);
+                    })
+                    .flatMap(address -> socket.reads().chunks())
+                    .map(chunk -> {
+                        sizes.add(chunk.size());
+                        return received.addAndGet(chunk.size());
+                    })
+                    .takeThrough(n -> n < packets)
+            );
+            ((IO<Unit>) run.compile(compiler).drain()).unsafeRunSync();
+        }
+        assertEquals(packets, received.get());
+        assertTrue("first read returned " + sizes.get(0) + " packet", sizes.get(0) > 1);
+    }
+}